@@ -0,0 +1,256 @@
+package top.tobyprime.mcedia.harness;
+
+import com.google.gson.GsonBuilder;
+import com.sun.management.OperatingSystemMXBean;
+import org.bytedeco.javacpp.Pointer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.core.Media;
+import top.tobyprime.mcedia.core.MediaInfo;
+import top.tobyprime.mcedia.decoders.DecoderConfiguration;
+import top.tobyprime.mcedia.metrics.MetricsRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不启动 Minecraft，测量一台机器能同时流畅播放多少个播放器。
+ * 对每种测试媒体，依次同时运行 N 个 {@link Media}，由模拟的渲染线程以 60Hz 上传到 {@link StubTexture}，
+ * 音频交给按实时速度消费的 {@link StubAudioSource}，统计解码帧率、丢帧、音画偏差、音频欠载、CPU 与本地内存。
+ * <p>
+ * 参数：--media 1280x720:h264,1920x1080:h264 --players 1,2,4,8 --seconds 20 --warmup 5 --out 目录 --no-hwaccel
+ */
+public class ScalabilityHarness {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScalabilityHarness.class);
+    private static final long RENDER_INTERVAL_NANOS = 1_000_000_000L / 60;
+    private static final double SOURCE_FPS = 30;
+    // 解码帧率低于源帧率的这个比例即认为跟不上
+    private static final double SUSTAINED_RATIO = 0.95;
+
+    private List<SyntheticMedia> media = List.of(new SyntheticMedia("1280x720:h264"), new SyntheticMedia("1920x1080:h264"));
+    private int[] players = {1, 2, 4, 8};
+    private int seconds = 20;
+    private int warmup = 5;
+    private Path out = Path.of("build", "reports", "harness");
+    private boolean hardwareDecoding = true;
+
+    public static void main(String[] args) throws Exception {
+        var harness = new ScalabilityHarness();
+        harness.parse(args);
+        harness.run();
+        System.exit(0);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--media" -> media = Arrays.stream(args[++i].split(",")).map(SyntheticMedia::new).toList();
+                case "--players" -> players = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--out" -> out = Path.of(args[++i]);
+                case "--no-hwaccel" -> hardwareDecoding = false;
+                default -> throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        var results = new ArrayList<Map<String, Object>>();
+        for (var spec : media) {
+            // 留出打开与预热的时间，循环播放避免测量期间到达结尾
+            var path = spec.generate(out.resolve("media"), seconds + warmup + 10);
+            int maxSustained = 0;
+            for (int n : players) {
+                var result = measure(spec, path, n);
+                results.add(result);
+                if ((boolean) result.get("sustained")) {
+                    maxSustained = Math.max(maxSustained, n);
+                }
+            }
+            System.out.printf("%s: 最多 %d 个播放器可以保持 %.0f%% 以上的源帧率%n", spec, maxSustained, SUSTAINED_RATIO * 100);
+        }
+
+        var report = new LinkedHashMap<String, Object>();
+        report.put("time", LocalDateTime.now().toString());
+        report.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        report.put("java", System.getProperty("java.version"));
+        report.put("cores", Runtime.getRuntime().availableProcessors());
+        report.put("hardware_decoding", hardwareDecoding);
+        report.put("seconds", seconds);
+        report.put("results", results);
+        Files.createDirectories(out);
+        var file = out.resolve("harness-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        Files.writeString(file, new GsonBuilder().setPrettyPrinting().create().toJson(report));
+        System.out.println("结果已写入 " + file.toAbsolutePath());
+    }
+
+    private Map<String, Object> measure(SyntheticMedia spec, Path path, int n) throws Exception {
+        LOGGER.info("{}: 启动 {} 个播放器", spec, n);
+        var builder = new DecoderConfiguration.Builder();
+        if (!hardwareDecoding) {
+            builder.disableHardwareDecoding();
+        }
+        var config = new DecoderConfiguration(builder);
+        var instances = new ArrayList<Instance>();
+        try {
+            for (int i = 0; i < n; i++) {
+                var info = new MediaInfo();
+                info.streamUrl = path.toAbsolutePath().toString();
+                info.title = spec + " #" + i;
+                instances.add(new Instance(new Media(info, config)));
+            }
+            for (var instance : instances) {
+                instance.media.setLooping(true);
+                instance.media.play();
+            }
+
+            render(instances, warmup * 1_000_000_000L, false);
+            instances.forEach(Instance::mark);
+            var cpu = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            long cpuStart = cpu.getProcessCpuTime();
+            long wallStart = System.nanoTime();
+            long peakPhysical = render(instances, seconds * 1_000_000_000L, true);
+            double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+            double cpuCores = (cpu.getProcessCpuTime() - cpuStart) / 1e9 / wallSeconds;
+
+            double minFps = Double.MAX_VALUE, sumFps = 0, sumPresented = 0, minAudio = Double.MAX_VALUE;
+            long dropped = 0, underruns = 0;
+            double sumDrift = 0, maxDrift = 0;
+            long driftSamples = 0;
+            var perPlayer = new ArrayList<Map<String, Object>>();
+            for (var instance : instances) {
+                var metrics = instance.media.getMetrics();
+                double fps = (metrics.decodedVideoFrames.sum() - instance.decodedStart) / wallSeconds;
+                double presented = (instance.texture.getFrames() - instance.presentedStart) / wallSeconds;
+                double audio = (instance.audio.getReceivedNanos() - instance.audioStart) / 1e9 / wallSeconds;
+                long instanceDropped = metrics.droppedVideoFrames.sum() - instance.droppedStart;
+                long instanceUnderruns = instance.audio.getUnderrunCount() - instance.underrunsStart;
+                minFps = Math.min(minFps, fps);
+                sumFps += fps;
+                sumPresented += presented;
+                minAudio = Math.min(minAudio, audio);
+                dropped += instanceDropped;
+                underruns += instanceUnderruns;
+                sumDrift += instance.driftSumUs;
+                driftSamples += instance.driftSamples;
+                maxDrift = Math.max(maxDrift, instance.driftMaxUs);
+
+                var player = new LinkedHashMap<String, Object>();
+                player.put("decode_fps", fps);
+                player.put("presented_fps", presented);
+                player.put("audio_realtime", audio);
+                player.put("dropped", instanceDropped);
+                player.put("underruns", instanceUnderruns);
+                player.put("drift_mean_ms", instance.driftSamples > 0 ? instance.driftSumUs / instance.driftSamples / 1000.0 : 0);
+                player.put("drift_max_ms", instance.driftMaxUs / 1000.0);
+                perPlayer.add(player);
+            }
+
+            var result = new LinkedHashMap<String, Object>();
+            result.put("media", spec.toString());
+            result.put("players", n);
+            result.put("decode_fps_mean", sumFps / n);
+            result.put("decode_fps_min", minFps);
+            result.put("presented_fps_mean", sumPresented / n);
+            result.put("audio_realtime_min", minAudio);
+            result.put("dropped_per_second", dropped / wallSeconds);
+            result.put("underruns", underruns);
+            result.put("drift_mean_ms", driftSamples > 0 ? sumDrift / driftSamples / 1000.0 : 0);
+            result.put("drift_max_ms", maxDrift / 1000.0);
+            result.put("cpu_cores", cpuCores);
+            result.put("cpu_percent", cpuCores / Runtime.getRuntime().availableProcessors() * 100);
+            result.put("physical_mb_peak", peakPhysical / 1024.0 / 1024.0);
+            result.put("javacpp_mb", Pointer.totalBytes() / 1024.0 / 1024.0);
+            result.put("frame_mb", MetricsRegistry.getInstance().frameBytes.sum() / 1024.0 / 1024.0);
+            result.put("sustained", minFps >= SOURCE_FPS * SUSTAINED_RATIO && minAudio >= SUSTAINED_RATIO);
+            result.put("per_player", perPlayer);
+
+            System.out.printf("%-16s N=%-3d 解码 %.1f/%.1ffps(均/最低) 上传 %.1ffps 丢帧 %.1f/s 欠载 %d 偏差 %.0f/%.0fms(均/最大) CPU %.2f 核 进程内存 %.0fMB 视频帧 %.0fMB%n",
+                    spec, n, sumFps / n, minFps, sumPresented / n, dropped / wallSeconds, underruns,
+                    result.get("drift_mean_ms"), result.get("drift_max_ms"), cpuCores,
+                    result.get("physical_mb_peak"), result.get("frame_mb"));
+            return result;
+        } finally {
+            for (var instance : instances) {
+                instance.media.close();
+            }
+            System.gc();
+            Thread.sleep(1000);
+        }
+    }
+
+    /**
+     * 模拟渲染线程：按 60Hz 上传各播放器的当前帧，并驱动指标采样
+     *
+     * @return 期间进程物理内存的峰值
+     */
+    private long render(List<Instance> instances, long durationNanos, boolean measure) throws InterruptedException {
+        long start = System.nanoTime();
+        long next = start;
+        long peakPhysical = 0;
+        while (System.nanoTime() - start < durationNanos) {
+            for (var instance : instances) {
+                instance.media.uploadVideo();
+                if (measure) {
+                    instance.sampleDrift();
+                }
+            }
+            MetricsRegistry.getInstance().update();
+            peakPhysical = Math.max(peakPhysical, Pointer.physicalBytes());
+            next += RENDER_INTERVAL_NANOS;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+            }
+        }
+        return peakPhysical;
+    }
+
+    private static class Instance {
+        final Media media;
+        final StubTexture texture = new StubTexture();
+        final StubAudioSource audio = new StubAudioSource();
+        long decodedStart, droppedStart, presentedStart, audioStart, underrunsStart;
+        long driftSumUs, driftMaxUs, driftSamples;
+        long lastPresented = -1;
+
+        Instance(Media media) {
+            this.media = media;
+            media.bindTexture(texture);
+            media.bindAudioSource(audio);
+        }
+
+        void mark() {
+            var metrics = media.getMetrics();
+            decodedStart = metrics.decodedVideoFrames.sum();
+            droppedStart = metrics.droppedVideoFrames.sum();
+            presentedStart = texture.getFrames();
+            audioStart = audio.getReceivedNanos();
+            underrunsStart = audio.getUnderrunCount();
+        }
+
+        /**
+         * 每上传一帧记录一次偏差
+         */
+        void sampleDrift() {
+            long presented = texture.getFrames();
+            if (presented == lastPresented) {
+                return;
+            }
+            lastPresented = presented;
+            long drift = Math.abs(media.getMetrics().getAvDriftUs());
+            driftSumUs += drift;
+            driftMaxUs = Math.max(driftMaxUs, drift);
+            driftSamples++;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package top.tobyprime.mcedia.harness;
+
+import org.jetbrains.annotations.Nullable;
+import top.tobyprime.mcedia.decoders.AudioBufferData;
+import top.tobyprime.mcedia.interfaces.IAudioSource;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不输出声音的音频源，按实时速度模拟 OpenAL 播放队列：
+ * 缓冲到达时队列里的音频已经播完则计为一次欠载，与 AL 源停止的情况相对应
+ */
+public class StubAudioSource implements IAudioSource {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    // 队列短暂为空但没有超过这个时间的不算欠载，对应 AL 的最后一个缓冲仍在播放
+    private static final long UNDERRUN_TOLERANCE_NANOS = 20_000_000;
+
+    private final int id = NEXT_ID.incrementAndGet();
+    private long queuedUntilNanos = 0;
+    private long receivedNanos = 0;
+    private long underruns = 0;
+    private float pitch = 1;
+
+    @Override
+    public float getLastX() {
+        return 0;
+    }
+
+    @Override
+    public float getLastY() {
+        return 0;
+    }
+
+    @Override
+    public float getLastZ() {
+        return 0;
+    }
+
+    @Override
+    public synchronized void upload(@Nullable AudioBufferData buffer) {
+        if (buffer == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        int count = buffer.pcm != null ? buffer.pcm.remaining() / Math.max(1, buffer.channels) : 0;
+        if (queuedUntilNanos != 0 && now - queuedUntilNanos > UNDERRUN_TOLERANCE_NANOS) {
+            underruns++;
+        }
+        long duration = buffer.sampleRate > 0 ? (long) (count * 1_000_000_000L / buffer.sampleRate / pitch) : 0;
+        queuedUntilNanos = Math.max(queuedUntilNanos, now) + duration;
+        receivedNanos += duration;
+        buffer.close();
+    }
+
+    @Override
+    public synchronized void setPitch(float pitch) {
+        this.pitch = pitch > 0 ? pitch : 1;
+    }
+
+    @Override
+    public synchronized void clearBuffer() {
+        queuedUntilNanos = 0;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public synchronized long getUnderrunCount() {
+        return underruns;
+    }
+
+    /**
+     * 收到的音频按播放速度折算的总时长
+     */
+    public synchronized long getReceivedNanos() {
+        return receivedNanos;
+    }
+}
@@ -0,0 +1,38 @@
+package top.tobyprime.mcedia.harness;
+
+import org.jetbrains.annotations.Nullable;
+import top.tobyprime.mcedia.decoders.VideoFrame;
+import top.tobyprime.mcedia.interfaces.ITexture;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 不上传到 GPU 的纹理，只记录收到的帧数与像素字节数
+ */
+public class StubTexture implements ITexture {
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long lastUploadNanos = 0;
+
+    @Override
+    public void upload(@Nullable VideoFrame frame) {
+        if (frame == null) {
+            return;
+        }
+        frames.incrementAndGet();
+        bytes.addAndGet(frame.buffer.capacity());
+        lastUploadNanos = System.nanoTime();
+    }
+
+    public long getFrames() {
+        return frames.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getLastUploadNanos() {
+        return lastUploadNanos;
+    }
+}
@@ -0,0 +1,129 @@
+package top.tobyprime.mcedia.harness;
+
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 在本地生成测试用的音视频文件：移动的彩条加一块噪声区域（避免画面过于简单，解码负载偏低），以及 440Hz 正弦波。
+ * 不使用 lavfi 的 testsrc/sine，libavdevice 在没有 X11 库的机器上无法加载
+ */
+public class SyntheticMedia {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyntheticMedia.class);
+    private static final int FRAME_RATE = 30;
+    private static final int SAMPLE_RATE = 48000;
+    private static final int CHANNELS = 2;
+
+    public final int width;
+    public final int height;
+    public final String codec;
+
+    /**
+     * @param spec 形如 1920x1080:h264，编码器可选 h264 (libopenh264)、mpeg4、vp9 (libvpx-vp9)
+     */
+    public SyntheticMedia(String spec) {
+        var parts = spec.split(":");
+        var size = parts[0].split("x");
+        this.width = Integer.parseInt(size[0]);
+        this.height = Integer.parseInt(size[1]);
+        this.codec = parts.length > 1 ? parts[1] : "h264";
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + ":" + codec;
+    }
+
+    /**
+     * 生成文件，已经存在时直接返回
+     */
+    public Path generate(Path dir, int seconds) throws Exception {
+        var path = dir.resolve(String.format("synthetic-%dx%d-%s-%ds.%s", width, height, codec, seconds, codec.equals("vp9") ? "webm" : "mp4"));
+        if (Files.exists(path)) {
+            return path;
+        }
+        Files.createDirectories(dir);
+        LOGGER.info("生成测试媒体 {}", path);
+        var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var recorder = new FFmpegFrameRecorder(temp.toFile(), width, height, CHANNELS)) {
+            recorder.setFormat(codec.equals("vp9") ? "webm" : "mp4");
+            switch (codec) {
+                case "h264" -> recorder.setVideoCodecName("libopenh264");
+                case "mpeg4" -> recorder.setVideoCodec(avcodec.AV_CODEC_ID_MPEG4);
+                case "vp9" -> recorder.setVideoCodecName("libvpx-vp9");
+                default -> throw new IllegalArgumentException("不支持的编码: " + codec);
+            }
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_YUV420P);
+            recorder.setFrameRate(FRAME_RATE);
+            recorder.setGopSize(FRAME_RATE * 2);
+            // 约为 B 站同分辨率的码率
+            recorder.setVideoBitrate((int) Math.min(20_000_000L, (long) width * height * 2));
+            recorder.setAudioCodec(codec.equals("vp9") ? avcodec.AV_CODEC_ID_OPUS : avcodec.AV_CODEC_ID_AAC);
+            recorder.setSampleRate(SAMPLE_RATE);
+            recorder.setAudioBitrate(128_000);
+            recorder.start();
+
+            var frame = new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+            var pixels = (ByteBuffer) frame.image[0];
+            byte[] row = new byte[frame.imageStride];
+            int samplesPerFrame = SAMPLE_RATE / FRAME_RATE;
+            var samples = ShortBuffer.allocate(samplesPerFrame * CHANNELS);
+            long sampleIndex = 0;
+            for (int i = 0; i < seconds * FRAME_RATE; i++) {
+                drawFrame(pixels, row, frame.imageStride, i);
+                recorder.record(frame, avutil.AV_PIX_FMT_BGR24);
+
+                samples.clear();
+                for (int s = 0; s < samplesPerFrame; s++, sampleIndex++) {
+                    short value = (short) (Math.sin(2 * Math.PI * 440 * sampleIndex / SAMPLE_RATE) * 8000);
+                    for (int c = 0; c < CHANNELS; c++) {
+                        samples.put(value);
+                    }
+                }
+                samples.flip();
+                recorder.recordSamples(SAMPLE_RATE, CHANNELS, samples);
+            }
+            recorder.stop();
+        }
+        Files.move(temp, path);
+        return path;
+    }
+
+    private void drawFrame(ByteBuffer pixels, byte[] row, int stride, int index) {
+        int offset = index * 8;
+        int noiseLeft = width / 4, noiseRight = width * 3 / 4;
+        int noiseTop = height / 4, noiseBottom = height * 3 / 4;
+        int seed = index * 0x9E3779B9;
+        for (int y = 0; y < height; y++) {
+            boolean noiseRow = y >= noiseTop && y < noiseBottom;
+            for (int x = 0; x < width; x++) {
+                int b, g, r;
+                if (noiseRow && x >= noiseLeft && x < noiseRight) {
+                    seed ^= seed << 13;
+                    seed ^= seed >>> 17;
+                    seed ^= seed << 5;
+                    b = seed & 0xff;
+                    g = (seed >>> 8) & 0xff;
+                    r = (seed >>> 16) & 0xff;
+                } else {
+                    int bar = ((x + offset) * 8 / width) % 8;
+                    b = (bar & 1) != 0 ? 0xff : 0;
+                    g = (bar & 2) != 0 ? 0xff : 0;
+                    r = (bar & 4) != 0 ? 0xff : (y * 255 / height);
+                }
+                row[x * 3] = (byte) b;
+                row[x * 3 + 1] = (byte) g;
+                row[x * 3 + 2] = (byte) r;
+            }
+            pixels.put(y * stride, row, 0, width * 3);
+        }
+    }
+}
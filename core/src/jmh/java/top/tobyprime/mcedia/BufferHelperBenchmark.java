@@ -0,0 +1,61 @@
+package top.tobyprime.mcedia;
+
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单声道音频直接复制时的缓冲克隆
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BufferHelperBenchmark {
+    @Param({"byte", "short", "float"})
+    public String type;
+
+    @Param({"1024", "8192"})
+    public int samples;
+
+    private ByteBuffer memory;
+    private Buffer src;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        memory = MemoryUtil.memAlloc(samples * Float.BYTES);
+        for (int i = 0; i < memory.capacity(); i++) {
+            memory.put(i, (byte) i);
+        }
+        src = switch (type) {
+            case "byte" -> memory.slice(0, samples);
+            case "short" -> memory.asShortBuffer().slice(0, samples);
+            case "float" -> memory.asFloatBuffer().slice(0, samples);
+            default -> throw new IllegalArgumentException(type);
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MemoryUtil.memFree(memory);
+    }
+
+    @Benchmark
+    public int cloneBuffer() {
+        var copy = BufferHelper.cloneBuffer(src);
+        int remaining = copy.remaining();
+        MemoryUtil.memFree(copy);
+        return remaining;
+    }
+}
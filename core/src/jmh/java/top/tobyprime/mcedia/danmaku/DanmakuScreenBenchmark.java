@@ -0,0 +1,53 @@
+package top.tobyprime.mcedia.danmaku;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个渲染帧一次的弹幕更新，弹幕均匀分布在 10 分钟的视频中，播放到结尾后从头开始
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class DanmakuScreenBenchmark {
+    private static final float VIDEO_SECONDS = 600;
+    private static final float FRAME_SECONDS = 1 / 60f;
+
+    @Param({"10000", "100000"})
+    public int count;
+
+    private DanmakuScreen screen;
+    private float secs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var random = new Random(42);
+        var danmakus = new ArrayList<Danmaku>(count);
+        for (int i = 0; i < count; i++) {
+            danmakus.add(new Danmaku(random.nextFloat() * VIDEO_SECONDS, "弹幕 " + i, 0xFFFFFF, Danmaku.DanmakuType.SCROLLING));
+        }
+        screen = new DanmakuScreen(danmakus);
+        screen.setWidthPredictor(danmaku -> 0.02f + danmaku.text.length() * 0.01f);
+        secs = 0;
+    }
+
+    @Benchmark
+    public int update() {
+        secs += FRAME_SECONDS;
+        if (secs > VIDEO_SECONDS) {
+            secs = 0;
+        }
+        return screen.update(secs).size();
+    }
+}
@@ -0,0 +1,78 @@
+package top.tobyprime.mcedia.decoders.ffmpeg;
+
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多声道平面音频混合为单声道，每个缓冲为一个 AAC 帧的采样数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FfmpegAudioBufferDataConverterBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"byte", "short", "float", "double"})
+    public String type;
+
+    @Param({"2", "6"})
+    public int channels;
+
+    private ByteBuffer[] memory;
+    private Buffer[] samples;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        memory = new ByteBuffer[channels];
+        samples = switch (type) {
+            case "byte" -> new ByteBuffer[channels];
+            case "short" -> new ShortBuffer[channels];
+            case "float" -> new FloatBuffer[channels];
+            case "double" -> new DoubleBuffer[channels];
+            default -> throw new IllegalArgumentException(type);
+        };
+        for (int ch = 0; ch < channels; ch++) {
+            memory[ch] = MemoryUtil.memAlloc(SAMPLES * Double.BYTES);
+            for (int i = 0; i < memory[ch].capacity(); i++) {
+                memory[ch].put(i, (byte) (i * 31 + ch));
+            }
+            samples[ch] = switch (type) {
+                case "byte" -> memory[ch].slice(0, SAMPLES);
+                case "short" -> memory[ch].asShortBuffer().slice(0, SAMPLES);
+                case "float" -> memory[ch].asFloatBuffer().slice(0, SAMPLES);
+                default -> memory[ch].asDoubleBuffer().slice(0, SAMPLES);
+            };
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (var buffer : memory) {
+            MemoryUtil.memFree(buffer);
+        }
+    }
+
+    @Benchmark
+    public int mergeToMono() {
+        var mono = FfmpegAudioBufferDataConverter.mergeToMono(samples);
+        int remaining = mono.remaining();
+        MemoryUtil.memFree(mono);
+        return remaining;
+    }
+}
@@ -0,0 +1,64 @@
+package top.tobyprime.mcedia.decoders.ffmpeg;
+
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解码后 RGBA 帧去除行填充，compact 为 stride 等于行宽，padded 为 FFmpeg 按 64 字节对齐后再多出一段填充
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class FfmpegVideoDataConverterBenchmark {
+    private static final int CHANNELS = 4;
+
+    @Param({"1280x720", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    @Param({"compact", "padded"})
+    public String layout;
+
+    private ByteBuffer src;
+    private int width;
+    private int height;
+    private int stride;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        int rowBytes = width * CHANNELS;
+        stride = layout.equals("compact") ? rowBytes : ((rowBytes + 63) & ~63) + 64;
+        src = MemoryUtil.memAlloc(stride * height);
+        for (int i = 0; i < src.capacity(); i++) {
+            src.put(i, (byte) i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MemoryUtil.memFree(src);
+    }
+
+    @Benchmark
+    public int removeStride() {
+        src.clear();
+        var dst = FfmpegVideoDataConverter.removeStride(src, height, width, stride, CHANNELS);
+        int capacity = dst.capacity();
+        MemoryUtil.memFree(dst);
+        return capacity;
+    }
+}
@@ -0,0 +1,57 @@
+package top.tobyprime.mcedia.decoders.ffmpeg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import top.tobyprime.mcedia.Configs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 视频帧队列 {@link FrameQueue} 在解码线程、播放线程与渲染线程之间的交接，与 {@link FfmpegMediaDecoder} 使用同一个实现：
+ * 解码线程放入，播放线程取出过期帧，渲染线程查看当前帧。
+ * 放入与取出都不阻塞，避免迭代结束时某一方停在空队列或满队列上
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Group)
+public class FrameQueueHandoffBenchmark {
+    private FrameQueue<Long> videoQueue;
+    // 只由解码线程写入
+    private volatile long timestamp;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        videoQueue = new FrameQueue<>(Configs.DECODER_MAX_VIDEO_FRAMES);
+        timestamp = 0;
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean decode() {
+        return videoQueue.offer(timestamp++);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Long play() {
+        long now = timestamp;
+        return videoQueue.pollIf(frame -> frame < now);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Long render() {
+        return videoQueue.peek();
+    }
+}
@@ -0,0 +1,34 @@
+package top.tobyprime.mcedia.media_play_resolvers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按地址选择解析器。resolve 会创建媒体并开始请求，这里只测量匹配部分；
+ * 直链与无法解析的地址要遍历全部解析器
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MediaPlayFactoryBenchmark {
+    @Param({
+            "https://www.bilibili.com/video/BV1GJ411x7h7",
+            "https://live.bilibili.com/21452505",
+            "https://b23.tv/abc1234",
+            "https://v.douyin.com/iRNBho5m/",
+            "https://example.com/video.mp4"
+    })
+    public String url;
+
+    @Benchmark
+    public boolean isSupported() {
+        return MediaPlayFactory.isSupported(url);
+    }
+}
@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.interfaces.IAudioSource;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Properties;
 import java.util.function.Consumer;
@@ -16,6 +17,14 @@ public class Configs {
     public static boolean SHOW_LOAD_INFO = true;
     public static int MAX_PLAYER_COUNT = 5;
     public static int MAX_NON_LOW_OVERHEAD_PLAYER_COUNT = 1;
+    // 超出播放数量或距离后进入休眠的播放器最多保留多少个
+    public static int MAX_HIBERNATED_PLAYER_COUNT = 16;
+    // 超过该距离的播放器进入休眠
+    public static int HIBERNATE_DISTANCE = 64;
+    // 解码预算，1 相当于一路 1080p 完整解码
+    public static float DECODE_BUDGET = 2f;
+    // 视频帧队列的内存预算 (MB)
+    public static int VIDEO_MEMORY_BUDGET_MB = 2048;
     public static List<String> ARMOR_STAND_PLAYER_NAME_PATTERNS = List.of("mcedia", "mcdia");
     // 3: 允许 8k
     // 2: 允许 4k
@@ -40,6 +49,65 @@ public class Configs {
     public static int DECODER_MAX_AUDIO_FRAMES = 512;
     public static int DECODER_MAX_VIDEO_FRAMES = 120;
     public static int DECODER_LOW_OVERHEAD_VIDEO_FRAMES = 20;
+    // 帧时间控制：帧率低于目标时逐步降低播放器负载
+    public static boolean FRAME_TIME_CONTROL = true;
+    // 帧率上限为无限制时的目标帧率
+    public static int TARGET_FPS = 60;
+    // 屏幕不可见超过该时间后视频只解码关键帧 (毫秒)
+    public static int INVISIBLE_GRACE_MS = 2000;
+    // 屏幕不可见超过该时间后完全停止视频解码，只播放音频 (毫秒)
+    public static int VIDEO_DISABLE_DELAY_MS = 10000;
+
+    // 根据网速与解码速度在 DASH 清晰度之间自动切换
+    public static boolean ABR_ENABLED = true;
+    // 自适应码率起播时的最高分辨率（高度）
+    public static int ABR_START_HEIGHT = 720;
+    // 后台测试本机各编码的解码速度，选择能实时解码的视频流
+    public static boolean CODEC_BENCHMARK = true;
+
+    // 同时打开媒体的线程数
+    public static int MEDIA_OPEN_THREADS = 4;
+    // 每个主机同时进行的解析数
+    public static int RESOLVE_MAX_PER_HOST = 4;
+    // 同时允许多少个播放器打开媒体，其余按距离与注视排队
+    public static int MAX_CONCURRENT_OPENS = 2;
+    // 排队中的打开逐个放行的间隔 (毫秒)
+    public static int OPEN_RAMP_INTERVAL_MS = 300;
+    // 未指定超时的 HTTP 请求的超时 (毫秒)
+    public static int HTTP_REQUEST_TIMEOUT_MS = 15000;
+    // 每个主机同时进行的 HTTP 请求数
+    public static int HTTP_MAX_PER_HOST = 6;
+    // 解析出播放地址后立即与 CDN 建立连接
+    public static boolean CONNECTION_PREWARM = true;
+    // 每个 B 站接口每秒最多请求次数，触发风控后自动降低
+    public static float BILIBILI_API_MAX_RATE = 4f;
+    // 触发风控后最多重试次数
+    public static int BILIBILI_API_MAX_RETRIES = 5;
+    // 探测 CDN 镜像时等待首个响应的时间 (毫秒)，0 为不探测
+    public static int MIRROR_PROBE_TIMEOUT_MS = 1500;
+    // 播放中单次读取超过该时间时切换到备用镜像 (毫秒)，0 为不切换
+    public static int MIRROR_STALL_TIMEOUT_MS = 5000;
+    // 点播流同时使用的 HTTP 连接数，1 为不使用多连接读取
+    public static int RANGE_CONNECTIONS = 4;
+    // 多连接读取时预读的块数，每块 1MB
+    public static int RANGE_READ_AHEAD_CHUNKS = 8;
+    // HLS 同时下载的分片数，0 为由 FFmpeg 逐个下载
+    public static int HLS_PREFETCH_SEGMENTS = 3;
+    // HLS 已下载未播放的分片占用的内存上限 (MB)
+    public static int HLS_BUFFER_MB = 32;
+    // 所有播放器共享的下载带宽上限 (kbps)，0 为不限制
+    public static int BANDWIDTH_LIMIT_KBPS = 0;
+    // 限制带宽时距离最近的播放器至少分到的带宽 (kbps)
+    public static int BANDWIDTH_MIN_KBPS = 4000;
+    // 媒体信息缓存的条目数，0 为关闭缓存
+    public static int MEDIA_INFO_CACHE_SIZE = 128;
+    // 播放地址不带过期参数时缓存的有效期 (秒)
+    public static int MEDIA_INFO_CACHE_DEFAULT_TTL_SECONDS = 1800;
+    // 流探测结果缓存的条目数，命中时用最小探测打开，0 为关闭
+    public static int PROBE_CACHE_SIZE = 256;
+    // 运行指标以 JSON 行导出的间隔 (秒)，0 为不导出
+    public static int METRICS_EXPORT_INTERVAL_SECONDS = 0;
+    public static String METRICS_EXPORT_PATH = Path.of(System.getProperty("user.home"), ".mcedia", "metrics.jsonl").toString();
 
     public static boolean ALLOW_DIRECT_LINK = false;
     public static boolean ALLOW_YHDM = false;
@@ -53,6 +121,10 @@ public class Configs {
 
         Configs.MAX_PLAYER_COUNT = Integer.parseInt(props.getProperty("MAX_PLAYER_COUNT", String.valueOf(Configs.MAX_PLAYER_COUNT)));
         Configs.MAX_NON_LOW_OVERHEAD_PLAYER_COUNT = Integer.parseInt(props.getProperty("MAX_NON_LOW_OVERHEAD_PLAYER_COUNT", String.valueOf(Configs.MAX_NON_LOW_OVERHEAD_PLAYER_COUNT)));
+        Configs.MAX_HIBERNATED_PLAYER_COUNT = Integer.parseInt(props.getProperty("MAX_HIBERNATED_PLAYER_COUNT", String.valueOf(Configs.MAX_HIBERNATED_PLAYER_COUNT)));
+        Configs.HIBERNATE_DISTANCE = Integer.parseInt(props.getProperty("HIBERNATE_DISTANCE", String.valueOf(Configs.HIBERNATE_DISTANCE)));
+        Configs.DECODE_BUDGET = Float.parseFloat(props.getProperty("DECODE_BUDGET", String.valueOf(Configs.DECODE_BUDGET)));
+        Configs.VIDEO_MEMORY_BUDGET_MB = Integer.parseInt(props.getProperty("VIDEO_MEMORY_BUDGET_MB", String.valueOf(Configs.VIDEO_MEMORY_BUDGET_MB)));
         Configs.SHOW_LOAD_INFO = Boolean.parseBoolean(props.getProperty("SHOW_LOAD_INFO", String.valueOf(Configs.SHOW_LOAD_INFO)));
         Configs.VOLUME_FACTOR = Float.parseFloat(props.getProperty("VOLUME_FACTOR", String.valueOf(Configs.VOLUME_FACTOR)));
         Configs.ARMOR_STAND_PLAYER_NAME_PATTERNS = List.of(props.getProperty("ARMOR_STAND_PLAYER_NAME_PATTERNS", String.join(";", ARMOR_STAND_PLAYER_NAME_PATTERNS)).split(";"));
@@ -64,6 +136,38 @@ public class Configs {
         Configs.DANMAKU_TRACKS = Integer.parseInt(props.getProperty("DANMAKU_TRACKS", String.valueOf(Configs.DANMAKU_TRACKS)));
         Configs.DANMAKU_OPACITY = Float.parseFloat(props.getProperty("DANMAKU_OPACITY", String.valueOf(Configs.DANMAKU_OPACITY)));
 
+        Configs.FRAME_TIME_CONTROL = Boolean.parseBoolean(props.getProperty("FRAME_TIME_CONTROL", String.valueOf(Configs.FRAME_TIME_CONTROL)));
+        Configs.TARGET_FPS = Integer.parseInt(props.getProperty("TARGET_FPS", String.valueOf(Configs.TARGET_FPS)));
+        Configs.INVISIBLE_GRACE_MS = Integer.parseInt(props.getProperty("INVISIBLE_GRACE_MS", String.valueOf(Configs.INVISIBLE_GRACE_MS)));
+        Configs.VIDEO_DISABLE_DELAY_MS = Integer.parseInt(props.getProperty("VIDEO_DISABLE_DELAY_MS", String.valueOf(Configs.VIDEO_DISABLE_DELAY_MS)));
+
+        Configs.ABR_ENABLED = Boolean.parseBoolean(props.getProperty("ABR_ENABLED", String.valueOf(Configs.ABR_ENABLED)));
+        Configs.ABR_START_HEIGHT = Integer.parseInt(props.getProperty("ABR_START_HEIGHT", String.valueOf(Configs.ABR_START_HEIGHT)));
+        Configs.CODEC_BENCHMARK = Boolean.parseBoolean(props.getProperty("CODEC_BENCHMARK", String.valueOf(Configs.CODEC_BENCHMARK)));
+
+        Configs.MEDIA_OPEN_THREADS = Integer.parseInt(props.getProperty("MEDIA_OPEN_THREADS", String.valueOf(Configs.MEDIA_OPEN_THREADS)));
+        Configs.RESOLVE_MAX_PER_HOST = Integer.parseInt(props.getProperty("RESOLVE_MAX_PER_HOST", String.valueOf(Configs.RESOLVE_MAX_PER_HOST)));
+        Configs.MAX_CONCURRENT_OPENS = Integer.parseInt(props.getProperty("MAX_CONCURRENT_OPENS", String.valueOf(Configs.MAX_CONCURRENT_OPENS)));
+        Configs.OPEN_RAMP_INTERVAL_MS = Integer.parseInt(props.getProperty("OPEN_RAMP_INTERVAL_MS", String.valueOf(Configs.OPEN_RAMP_INTERVAL_MS)));
+        Configs.HTTP_REQUEST_TIMEOUT_MS = Integer.parseInt(props.getProperty("HTTP_REQUEST_TIMEOUT_MS", String.valueOf(Configs.HTTP_REQUEST_TIMEOUT_MS)));
+        Configs.HTTP_MAX_PER_HOST = Integer.parseInt(props.getProperty("HTTP_MAX_PER_HOST", String.valueOf(Configs.HTTP_MAX_PER_HOST)));
+        Configs.CONNECTION_PREWARM = Boolean.parseBoolean(props.getProperty("CONNECTION_PREWARM", String.valueOf(Configs.CONNECTION_PREWARM)));
+        Configs.BILIBILI_API_MAX_RATE = Float.parseFloat(props.getProperty("BILIBILI_API_MAX_RATE", String.valueOf(Configs.BILIBILI_API_MAX_RATE)));
+        Configs.BILIBILI_API_MAX_RETRIES = Integer.parseInt(props.getProperty("BILIBILI_API_MAX_RETRIES", String.valueOf(Configs.BILIBILI_API_MAX_RETRIES)));
+        Configs.MIRROR_PROBE_TIMEOUT_MS = Integer.parseInt(props.getProperty("MIRROR_PROBE_TIMEOUT_MS", String.valueOf(Configs.MIRROR_PROBE_TIMEOUT_MS)));
+        Configs.MIRROR_STALL_TIMEOUT_MS = Integer.parseInt(props.getProperty("MIRROR_STALL_TIMEOUT_MS", String.valueOf(Configs.MIRROR_STALL_TIMEOUT_MS)));
+        Configs.RANGE_CONNECTIONS = Integer.parseInt(props.getProperty("RANGE_CONNECTIONS", String.valueOf(Configs.RANGE_CONNECTIONS)));
+        Configs.RANGE_READ_AHEAD_CHUNKS = Integer.parseInt(props.getProperty("RANGE_READ_AHEAD_CHUNKS", String.valueOf(Configs.RANGE_READ_AHEAD_CHUNKS)));
+        Configs.HLS_PREFETCH_SEGMENTS = Integer.parseInt(props.getProperty("HLS_PREFETCH_SEGMENTS", String.valueOf(Configs.HLS_PREFETCH_SEGMENTS)));
+        Configs.HLS_BUFFER_MB = Integer.parseInt(props.getProperty("HLS_BUFFER_MB", String.valueOf(Configs.HLS_BUFFER_MB)));
+        Configs.BANDWIDTH_LIMIT_KBPS = Integer.parseInt(props.getProperty("BANDWIDTH_LIMIT_KBPS", String.valueOf(Configs.BANDWIDTH_LIMIT_KBPS)));
+        Configs.BANDWIDTH_MIN_KBPS = Integer.parseInt(props.getProperty("BANDWIDTH_MIN_KBPS", String.valueOf(Configs.BANDWIDTH_MIN_KBPS)));
+        Configs.MEDIA_INFO_CACHE_SIZE = Integer.parseInt(props.getProperty("MEDIA_INFO_CACHE_SIZE", String.valueOf(Configs.MEDIA_INFO_CACHE_SIZE)));
+        Configs.MEDIA_INFO_CACHE_DEFAULT_TTL_SECONDS = Integer.parseInt(props.getProperty("MEDIA_INFO_CACHE_DEFAULT_TTL_SECONDS", String.valueOf(Configs.MEDIA_INFO_CACHE_DEFAULT_TTL_SECONDS)));
+        Configs.PROBE_CACHE_SIZE = Integer.parseInt(props.getProperty("PROBE_CACHE_SIZE", String.valueOf(Configs.PROBE_CACHE_SIZE)));
+        Configs.METRICS_EXPORT_INTERVAL_SECONDS = Integer.parseInt(props.getProperty("METRICS_EXPORT_INTERVAL_SECONDS", String.valueOf(Configs.METRICS_EXPORT_INTERVAL_SECONDS)));
+        Configs.METRICS_EXPORT_PATH = props.getProperty("METRICS_EXPORT_PATH", Configs.METRICS_EXPORT_PATH);
+
         Configs.ALLOW_DIRECT_LINK = Boolean.parseBoolean(props.getProperty("ALLOW_DIRECT_LINK", String.valueOf(Configs.ALLOW_DIRECT_LINK)));
         Configs.ALLOW_YHDM = Boolean.parseBoolean(props.getProperty("ALLOW_YHDM", String.valueOf(Configs.ALLOW_YHDM)));
     }
@@ -71,6 +175,10 @@ public class Configs {
     public static void writeToProperties(Properties props) {
         props.setProperty("MAX_PLAYER_COUNT", String.valueOf(Configs.MAX_PLAYER_COUNT));
         props.setProperty("MAX_NON_LOW_OVERHEAD_PLAYER_COUNT", String.valueOf(Configs.MAX_NON_LOW_OVERHEAD_PLAYER_COUNT));
+        props.setProperty("MAX_HIBERNATED_PLAYER_COUNT", String.valueOf(Configs.MAX_HIBERNATED_PLAYER_COUNT));
+        props.setProperty("HIBERNATE_DISTANCE", String.valueOf(Configs.HIBERNATE_DISTANCE));
+        props.setProperty("DECODE_BUDGET", String.valueOf(Configs.DECODE_BUDGET));
+        props.setProperty("VIDEO_MEMORY_BUDGET_MB", String.valueOf(Configs.VIDEO_MEMORY_BUDGET_MB));
         props.setProperty("SHOW_LOAD_INFO", String.valueOf(Configs.SHOW_LOAD_INFO));
         props.setProperty("VOLUME_FACTOR", String.valueOf(Configs.VOLUME_FACTOR));
         props.setProperty("ARMOR_STAND_PLAYER_NAME_PATTERNS", String.join(";", Configs.ARMOR_STAND_PLAYER_NAME_PATTERNS));
@@ -82,6 +190,38 @@ public class Configs {
         props.setProperty("DANMAKU_TRACKS", String.valueOf(Configs.DANMAKU_TRACKS));
         props.setProperty("DANMAKU_OPACITY", String.valueOf(Configs.DANMAKU_OPACITY));
 
+        props.setProperty("FRAME_TIME_CONTROL", String.valueOf(Configs.FRAME_TIME_CONTROL));
+        props.setProperty("TARGET_FPS", String.valueOf(Configs.TARGET_FPS));
+        props.setProperty("INVISIBLE_GRACE_MS", String.valueOf(Configs.INVISIBLE_GRACE_MS));
+        props.setProperty("VIDEO_DISABLE_DELAY_MS", String.valueOf(Configs.VIDEO_DISABLE_DELAY_MS));
+
+        props.setProperty("ABR_ENABLED", String.valueOf(Configs.ABR_ENABLED));
+        props.setProperty("ABR_START_HEIGHT", String.valueOf(Configs.ABR_START_HEIGHT));
+        props.setProperty("CODEC_BENCHMARK", String.valueOf(Configs.CODEC_BENCHMARK));
+
+        props.setProperty("MEDIA_OPEN_THREADS", String.valueOf(Configs.MEDIA_OPEN_THREADS));
+        props.setProperty("RESOLVE_MAX_PER_HOST", String.valueOf(Configs.RESOLVE_MAX_PER_HOST));
+        props.setProperty("MAX_CONCURRENT_OPENS", String.valueOf(Configs.MAX_CONCURRENT_OPENS));
+        props.setProperty("OPEN_RAMP_INTERVAL_MS", String.valueOf(Configs.OPEN_RAMP_INTERVAL_MS));
+        props.setProperty("HTTP_REQUEST_TIMEOUT_MS", String.valueOf(Configs.HTTP_REQUEST_TIMEOUT_MS));
+        props.setProperty("HTTP_MAX_PER_HOST", String.valueOf(Configs.HTTP_MAX_PER_HOST));
+        props.setProperty("CONNECTION_PREWARM", String.valueOf(Configs.CONNECTION_PREWARM));
+        props.setProperty("BILIBILI_API_MAX_RATE", String.valueOf(Configs.BILIBILI_API_MAX_RATE));
+        props.setProperty("BILIBILI_API_MAX_RETRIES", String.valueOf(Configs.BILIBILI_API_MAX_RETRIES));
+        props.setProperty("MIRROR_PROBE_TIMEOUT_MS", String.valueOf(Configs.MIRROR_PROBE_TIMEOUT_MS));
+        props.setProperty("MIRROR_STALL_TIMEOUT_MS", String.valueOf(Configs.MIRROR_STALL_TIMEOUT_MS));
+        props.setProperty("RANGE_CONNECTIONS", String.valueOf(Configs.RANGE_CONNECTIONS));
+        props.setProperty("RANGE_READ_AHEAD_CHUNKS", String.valueOf(Configs.RANGE_READ_AHEAD_CHUNKS));
+        props.setProperty("HLS_PREFETCH_SEGMENTS", String.valueOf(Configs.HLS_PREFETCH_SEGMENTS));
+        props.setProperty("HLS_BUFFER_MB", String.valueOf(Configs.HLS_BUFFER_MB));
+        props.setProperty("BANDWIDTH_LIMIT_KBPS", String.valueOf(Configs.BANDWIDTH_LIMIT_KBPS));
+        props.setProperty("BANDWIDTH_MIN_KBPS", String.valueOf(Configs.BANDWIDTH_MIN_KBPS));
+        props.setProperty("MEDIA_INFO_CACHE_SIZE", String.valueOf(Configs.MEDIA_INFO_CACHE_SIZE));
+        props.setProperty("MEDIA_INFO_CACHE_DEFAULT_TTL_SECONDS", String.valueOf(Configs.MEDIA_INFO_CACHE_DEFAULT_TTL_SECONDS));
+        props.setProperty("PROBE_CACHE_SIZE", String.valueOf(Configs.PROBE_CACHE_SIZE));
+        props.setProperty("METRICS_EXPORT_INTERVAL_SECONDS", String.valueOf(Configs.METRICS_EXPORT_INTERVAL_SECONDS));
+        props.setProperty("METRICS_EXPORT_PATH", Configs.METRICS_EXPORT_PATH);
+
         props.setProperty("ALLOW_DIRECT_LINK", String.valueOf(Configs.ALLOW_DIRECT_LINK));
         props.setProperty("ALLOW_YHDM", String.valueOf(Configs.ALLOW_YHDM));
     }
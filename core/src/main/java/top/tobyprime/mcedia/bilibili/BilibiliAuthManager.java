@@ -4,10 +4,10 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.net.HttpService;
 
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -24,7 +24,6 @@ import java.util.stream.Collectors;
 public class BilibiliAuthManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(BilibiliAuthManager.class);
     private static final BilibiliAuthManager INSTANCE = new BilibiliAuthManager();
-    private final HttpClient httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
     private final Gson gson = new Gson();
 
     private volatile BilibiliAccountStatus accountStatus = new BilibiliAccountStatus(false, false, "游客");
@@ -71,7 +70,7 @@ public class BilibiliAuthManager {
 
         HttpRequest request = HttpRequest.newBuilder().uri(URI.create("https://api.bilibili.com/x/web-interface/nav")).header("User-Agent", "Mozilla/5.0").header("Cookie", cookie).build();
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(HttpResponse::body).handle((body, err) -> {
+        return HttpService.getInstance().sendAsync(request, HttpResponse.BodyHandlers.ofString(), false).thenApply(HttpResponse::body).handle((body, err) -> {
             // 网络错误
             if (err != null) {
                 setAccountStatus(new BilibiliAccountStatus(false, false, ""));
@@ -118,7 +117,7 @@ public class BilibiliAuthManager {
         // 请求二维码
         HttpRequest request = HttpRequest.newBuilder().uri(URI.create("https://passport.bilibili.com/x/passport-login/web/qrcode/generate?source=main-fe-header")).header("User-Agent", "Mozilla/5.0").GET().build();
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(HttpResponse::body).thenCompose(body -> {
+        return HttpService.getInstance().sendAsync(request, HttpResponse.BodyHandlers.ofString(), false).thenApply(HttpResponse::body).thenCompose(body -> {
                     try {
                         JsonObject json = gson.fromJson(body, JsonObject.class);
 
@@ -178,7 +177,7 @@ public class BilibiliAuthManager {
 
                 HttpRequest request = HttpRequest.newBuilder().uri(URI.create("https://passport.bilibili.com/x/passport-login/web/qrcode/poll?qrcode_key=" + qrcodeKey + "&source=main-fe-header")).header("User-Agent", "Mozilla/5.0").GET().build();
 
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                HttpResponse<String> response = HttpService.getInstance().send(request, HttpResponse.BodyHandlers.ofString(), false);
                 JsonObject json = gson.fromJson(response.body(), JsonObject.class);
                 JsonObject data = json.getAsJsonObject("data");
                 int code = data.get("code").getAsInt();
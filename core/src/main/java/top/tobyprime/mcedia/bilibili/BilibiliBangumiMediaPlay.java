@@ -6,21 +6,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.core.BaseMediaPlay;
 import top.tobyprime.mcedia.core.MediaInfo;
+import top.tobyprime.mcedia.core.MediaInfoCache;
 import top.tobyprime.mcedia.media_play_resolvers.MediaPlayFactory;
+import top.tobyprime.mcedia.media_play_resolvers.MediaResolveException;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.HashMap;
-import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class BilibiliBangumiMediaPlay extends BaseMediaPlay implements BilibiliAccountStatusUpdateEventHandler {
 
-    private static final HttpClient client = HttpClient.newHttpClient();
     private static final Logger LOGGER = LoggerFactory.getLogger(BilibiliBangumiMediaPlay.class);
 
     private final String bangumiUrl;
@@ -29,7 +28,7 @@ public class BilibiliBangumiMediaPlay extends BaseMediaPlay implements BilibiliA
     public BilibiliBangumiMediaPlay(String bangumiUrl) {
         BilibiliAuthManager.getInstance().AddStatusUpdateHandler(this);
         this.bangumiUrl = bangumiUrl;
-        CompletableFuture.runAsync(this::load, MediaPlayFactory.EXECUTOR);
+        load();
     }
 
     private static int parsePNumberFromUrl(String url) {
@@ -46,150 +45,176 @@ public class BilibiliBangumiMediaPlay extends BaseMediaPlay implements BilibiliA
 
     public void load() {
         loading = true;
-        try {
-            String epId = null;
-            String ssId = null;
-
-            Pattern epPattern = Pattern.compile("/ep(\\d+)");
-            Matcher epMatcher = epPattern.matcher(bangumiUrl);
-            if (epMatcher.find()) {
-                epId = epMatcher.group(1);
+        MediaPlayFactory.resolveShared("bilibili-bangumi", "api.bilibili.com", "bilibili-bangumi:" + bangumiUrl, () -> fetchMediaInfo(false)).whenComplete((info, e) -> {
+            try {
+                if (e == null) {
+                    setMediaInfo(info);
+                    setStatus("加载完成");
+                    return;
+                }
+                var cause = MediaPlayFactory.unwrap(e);
+                if (cause instanceof MediaResolveException resolveException) {
+                    if (resolveException.requireLogin) {
+                        waitForLoginStatusUpdate = true;
+                    }
+                    setStatus(resolveException.getMessage());
+                    return;
+                }
+                setStatus("加载失败");
+            } finally {
+                loading = false;
             }
+        });
+    }
 
-            Pattern ssPattern = Pattern.compile("/ss(\\d+)");
-            Matcher ssMatcher = ssPattern.matcher(bangumiUrl);
-            if (ssMatcher.find()) {
-                ssId = ssMatcher.group(1);
-            }
-            if (epId == null && ssId == null) {
-                setStatus("链接中未找到ep号或ss号");
-                return;
-            }
+    @Override
+    public MediaInfo refreshMediaInfo() {
+        return MediaPlayFactory.resolveShared("bilibili-bangumi", "api.bilibili.com", "bilibili-bangumi-refresh:" + bangumiUrl, () -> fetchMediaInfo(true)).join();
+    }
 
-            String viewApi = (epId != null)
-                    ? "https://api.bilibili.com/pgc/view/web/season?ep_id=" + epId
-                    : "https://api.bilibili.com/pgc/view/web/season?season_id=" + ssId;
+    private MediaInfo fetchMediaInfo(boolean refresh) throws Exception {
+        String epId = null;
+        String ssId = null;
 
-            HttpRequest viewRequest = HttpRequest.newBuilder().uri(URI.create(viewApi)).header("User-Agent", "Mozilla/5.0").build();
-            HttpResponse<String> viewResponse = client.send(viewRequest, HttpResponse.BodyHandlers.ofString());
-            JSONObject viewJson = new JSONObject(viewResponse.body());
+        Pattern epPattern = Pattern.compile("/ep(\\d+)");
+        Matcher epMatcher = epPattern.matcher(bangumiUrl);
+        if (epMatcher.find()) {
+            epId = epMatcher.group(1);
+        }
 
-            if (viewJson.optInt("code") != 0) {
-                throw new RuntimeException("获取番剧信息失败: " + viewJson.optString("message"));
-            }
+        Pattern ssPattern = Pattern.compile("/ss(\\d+)");
+        Matcher ssMatcher = ssPattern.matcher(bangumiUrl);
+        if (ssMatcher.find()) {
+            ssId = ssMatcher.group(1);
+        }
+        if (epId == null && ssId == null) {
+            throw new MediaResolveException("链接中未找到ep号或ss号");
+        }
 
-            JSONObject resultData = viewJson.getJSONObject("result");
-
-            int pNumFromUrl = parsePNumberFromUrl(bangumiUrl);
-            if (epId == null) {
-                JSONArray episodes = resultData.getJSONArray("episodes");
-                int targetIndex = (pNumFromUrl > 0 && pNumFromUrl <= episodes.length()) ? pNumFromUrl - 1 : 0;
-                if (!episodes.isEmpty()) {
-                    epId = String.valueOf(episodes.getJSONObject(targetIndex).getInt("id"));
-                    LOGGER.info("检测到 ssId 链接，从第 {} 集 (ep{}) 开始播放。", targetIndex + 1, epId);
-                } else {
-                    setStatus("该番剧系列下没有找到任何剧集。");
-                    return;
-                }
-            }
+        String cacheKey = "bilibili-bangumi:" + (epId != null ? "ep" + epId : "ss" + ssId + ":p" + parsePNumberFromUrl(bangumiUrl)) + BilibiliHelper.cacheKeySuffix();
+        if (refresh) {
+            MediaInfoCache.getInstance().invalidate(cacheKey);
+        }
+        var cached = MediaInfoCache.getInstance().get(cacheKey);
+        if (cached != null) {
+            cached.cookie = BilibiliCookie.getCookie();
+            return cached;
+        }
+        var info = requestMediaInfo(epId, ssId);
+        MediaInfoCache.getInstance().put(cacheKey, info);
+        return info;
+    }
 
-            BilibiliBangumiInfo bangumiInfo = BilibiliBangumiInfo.fromJson(resultData, epId);
-            String cid = bangumiInfo.getCurrentEpisode().cid;
+    private MediaInfo requestMediaInfo(String epId, String ssId) throws Exception {
+        String viewApi = (epId != null)
+                ? "https://api.bilibili.com/pgc/view/web/season?ep_id=" + epId
+                : "https://api.bilibili.com/pgc/view/web/season?season_id=" + ssId;
 
-            String playApi = "https://api.bilibili.com/pgc/player/web/playurl?ep_id=" + epId +
-                    "&cid=" + cid + "&fnval=4048";
+        HttpRequest viewRequest = HttpRequest.newBuilder().uri(URI.create(viewApi)).header("User-Agent", "Mozilla/5.0").build();
+        HttpResponse<String> viewResponse = BilibiliRateLimiter.getInstance().send(viewRequest);
+        JSONObject viewJson = new JSONObject(viewResponse.body());
 
-            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                    .uri(URI.create(playApi))
-                    .header("User-Agent", "Mozilla/5.0")
-                    .header("Referer", "https://www.bilibili.com/");
-            var cookie = BilibiliCookie.getCookie();
-            if (cookie != null && !cookie.isEmpty()) {
-                requestBuilder.header("Cookie", cookie);
+        if (viewJson.optInt("code") != 0) {
+            throw new RuntimeException("获取番剧信息失败: " + viewJson.optString("message"));
+        }
+
+        JSONObject resultData = viewJson.getJSONObject("result");
+
+        int pNumFromUrl = parsePNumberFromUrl(bangumiUrl);
+        if (epId == null) {
+            JSONArray episodes = resultData.getJSONArray("episodes");
+            int targetIndex = (pNumFromUrl > 0 && pNumFromUrl <= episodes.length()) ? pNumFromUrl - 1 : 0;
+            if (!episodes.isEmpty()) {
+                epId = String.valueOf(episodes.getJSONObject(targetIndex).getInt("id"));
+                LOGGER.info("检测到 ssId 链接，从第 {} 集 (ep{}) 开始播放。", targetIndex + 1, epId);
+            } else {
+                throw new MediaResolveException("该番剧系列下没有找到任何剧集。");
             }
+        }
 
-            HttpResponse<String> response = client.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
-            String responseBody = response.body();
-            JSONObject responseJson = new JSONObject(responseBody);
+        BilibiliBangumiInfo bangumiInfo = BilibiliBangumiInfo.fromJson(resultData, epId);
+        String cid = bangumiInfo.getCurrentEpisode().cid;
 
-            if (responseJson.getInt("code") != 0) {
-                setStatus("获取番剧播放地址失败: " + responseJson.optString("message"));
-                return;
-            }
+        String playApi = "https://api.bilibili.com/pgc/player/web/playurl?ep_id=" + epId +
+                "&cid=" + cid + "&fnval=4048";
 
-            JSONObject result = responseJson.optJSONObject("result");
-            if (result == null) {
-                setStatus("B站API未返回有效的 result 数据：" + responseJson.optString("message", "未知错误"));
-                return;
-            }
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(URI.create(playApi))
+                .header("User-Agent", "Mozilla/5.0")
+                .header("Referer", "https://www.bilibili.com/");
+        var cookie = BilibiliCookie.getCookie();
+        if (cookie != null && !cookie.isEmpty()) {
+            requestBuilder.header("Cookie", cookie);
+        }
 
-            if (result.has("is_preview") && result.getInt("is_preview") == 1) {
-                setStatus("该内容可能需要登录或大会员。尝试 /mcedia bilibili login");
-                waitForLoginStatusUpdate = true;
-                return;
-            }
-            if (result.has("code") && result.getInt("code") == -10403) {
-                setStatus("B该内容可能需要登录或大会员。尝试 /mcedia bilibili login");
-                waitForLoginStatusUpdate = true;
-                return;
-            }
+        HttpResponse<String> response = BilibiliRateLimiter.getInstance().send(requestBuilder.build());
+        String responseBody = response.body();
+        JSONObject responseJson = new JSONObject(responseBody);
 
-            JSONArray supportFormats = result.optJSONArray("support_formats");
+        if (responseJson.getInt("code") != 0) {
+            throw new MediaResolveException("获取番剧播放地址失败: " + responseJson.optString("message"));
+        }
 
-            var mediaInfo = new MediaInfo();
+        JSONObject result = responseJson.optJSONObject("result");
+        if (result == null) {
+            throw new MediaResolveException("B站API未返回有效的 result 数据：" + responseJson.optString("message", "未知错误"));
+        }
 
-            mediaInfo.title = bangumiInfo.title + " - " + bangumiInfo.getCurrentEpisode().title;
-            mediaInfo.platform = "Bilibili Bangumi";
-            mediaInfo.cookie = BilibiliCookie.getCookie();
-            mediaInfo.author = "Bilibili";
-            mediaInfo.rawUrl = this.bangumiUrl;
-            var headers = new HashMap<String, String>();
-            headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
-            headers.put("Referer", "https://www.bilibili.com/");
-            headers.put("Origin", "https://www.bilibili.com");
-            mediaInfo.headers = headers;
+        if (result.has("is_preview") && result.getInt("is_preview") == 1) {
+            throw new MediaResolveException("该内容可能需要登录或大会员。尝试 /mcedia bilibili login", true);
+        }
+        if (result.has("code") && result.getInt("code") == -10403) {
+            throw new MediaResolveException("B该内容可能需要登录或大会员。尝试 /mcedia bilibili login", true);
+        }
 
+        JSONArray supportFormats = result.optJSONArray("support_formats");
 
-            if (result.has("dash")) {
-                JSONObject dash = result.getJSONObject("dash");
-                if (dash.has("video") && dash.has("audio") && !dash.getJSONArray("video").isEmpty() && !dash.getJSONArray("audio").isEmpty()) {
-                    BilibiliStreamSelection videoSelection = BilibiliHelper.findBestStream(dash.getJSONArray("video"), supportFormats);
-                    BilibiliStreamSelection audioSelection = BilibiliHelper.findBestStream(dash.getJSONArray("audio"), null);
+        var mediaInfo = new MediaInfo();
 
-                    if (videoSelection != null && videoSelection.stream != null && audioSelection != null) {
-                        String videoBaseUrl = videoSelection.stream.getString("baseUrl");
-                        String audioBaseUrl = audioSelection.stream.getString("baseUrl");
-                        mediaInfo.streamUrl = videoBaseUrl;
-                        mediaInfo.audioUrl = audioBaseUrl;
+        mediaInfo.title = bangumiInfo.title + " - " + bangumiInfo.getCurrentEpisode().title;
+        mediaInfo.platform = "Bilibili Bangumi";
+        mediaInfo.cookie = BilibiliCookie.getCookie();
+        mediaInfo.author = "Bilibili";
+        mediaInfo.rawUrl = this.bangumiUrl;
+        mediaInfo.seekable = true;
+        var headers = new HashMap<String, String>();
+        headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+        headers.put("Referer", "https://www.bilibili.com/");
+        headers.put("Origin", "https://www.bilibili.com");
+        mediaInfo.headers = headers;
 
 
-                        setStatus("加载完成");
-                        setMediaInfo(mediaInfo);
-                        return;
-                    }
+        if (result.has("dash")) {
+            JSONObject dash = result.getJSONObject("dash");
+            if (dash.has("video") && dash.has("audio") && !dash.getJSONArray("video").isEmpty() && !dash.getJSONArray("audio").isEmpty()) {
+                BilibiliStreamSelection videoSelection = BilibiliHelper.findBestStream(dash.getJSONArray("video"), supportFormats);
+                BilibiliStreamSelection audioSelection = BilibiliHelper.findBestStream(dash.getJSONArray("audio"), null);
+
+                if (videoSelection != null && videoSelection.stream != null && audioSelection != null) {
+                    BilibiliHelper.applyVideoStreams(mediaInfo, dash.getJSONArray("video"), supportFormats, videoSelection);
+                    BilibiliHelper.applyAudioStream(mediaInfo, audioSelection);
+                    BilibiliHelper.raceMirrors(mediaInfo);
+
+
+                    return mediaInfo;
                 }
             }
+        }
 
-            if (result.has("durl")) {
-                JSONArray durlArray = result.getJSONArray("durl");
-                if (!durlArray.isEmpty()) {
-                    if (supportFormats != null && !supportFormats.isEmpty()) {
-                        supportFormats.getJSONObject(0).getString("new_description");
-                    }
-                    String playableUrl = durlArray.getJSONObject(0).getString("url");
-                    LOGGER.warn("未找到DASH流，可能为会员内容。正在尝试播放DURL流。");
-                    mediaInfo.streamUrl = playableUrl;
-                    setMediaInfo(mediaInfo);
-                    return;
+        if (result.has("durl")) {
+            JSONArray durlArray = result.getJSONArray("durl");
+            if (!durlArray.isEmpty()) {
+                if (supportFormats != null && !supportFormats.isEmpty()) {
+                    supportFormats.getJSONObject(0).getString("new_description");
                 }
+                String playableUrl = durlArray.getJSONObject(0).getString("url");
+                LOGGER.warn("未找到DASH流，可能为会员内容。正在尝试播放DURL流。");
+                mediaInfo.streamUrl = playableUrl;
+                return mediaInfo;
             }
-
-            throw new RuntimeException("未能从番剧API响应中找到可用的视频流。API Response: " + responseBody);
-        } catch (Throwable e) {
-            setStatus("加载失败");
-        } finally {
-            loading = false;
         }
+
+        throw new RuntimeException("未能从番剧API响应中找到可用的视频流。API Response: " + responseBody);
     }
 
     @Override
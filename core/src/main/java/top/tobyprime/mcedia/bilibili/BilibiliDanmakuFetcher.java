@@ -5,21 +5,15 @@ import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.danmaku.Danmaku;
 import top.tobyprime.mcedia.danmaku.Danmaku.DanmakuType;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
 
 /**
  * 用于获取指定 cid 的弹幕列表
@@ -27,7 +21,6 @@ import java.util.zip.InflaterInputStream;
 public class BilibiliDanmakuFetcher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BilibiliDanmakuFetcher.class);
-    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder().build();
     private static final Pattern DANMAKU_PATTERN = Pattern.compile("<d p=\"([^\"]*)\">([^<]*)</d>");
 
     public static CompletableFuture<List<Danmaku>> fetchDanmakuAsync(long cid) {
@@ -39,31 +32,18 @@ public class BilibiliDanmakuFetcher {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create("https://api.bilibili.com/x/v1/dm/list.so?oid=" + cid))
                 .header("User-Agent", "Mozilla/5.0")
-                .header("Accept-Encoding", "deflate")
                 .GET()
                 .build();
 
-        // 异步请求 + 手动解压
-        return HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+        // 响应为 deflate 压缩，由 HttpService 解压
+        return BilibiliRateLimiter.getInstance().sendAsync(request)
                 .<List<Danmaku>>thenApply(response -> {
                     if (response.statusCode() != 200) {
                         LOGGER.warn("弹幕请求失败，HTTP {}", response.statusCode());
                         return Collections.emptyList();
                     }
 
-                    byte[] compressedBytes = response.body();
-                    String xmlContent;
-
-                    try {
-                        Inflater inflater = new Inflater(true);
-                        try (InputStream decompressed =
-                                     new InflaterInputStream(new ByteArrayInputStream(compressedBytes), inflater)) {
-                            xmlContent = new String(decompressed.readAllBytes(), StandardCharsets.UTF_8);
-                        }
-                    } catch (Exception e) {
-                        LOGGER.error("[DANMAKU-DEBUG] 解压失败，cid {}", cid, e);
-                        return Collections.emptyList();
-                    }
+                    String xmlContent = response.body();
 
                     LOGGER.info("[DANMAKU-DEBUG] XML 解压成功 (前500字符): {}",
                             xmlContent.substring(0, Math.min(xmlContent.length(), 500)));
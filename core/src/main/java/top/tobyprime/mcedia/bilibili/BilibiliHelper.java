@@ -6,16 +6,25 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.core.MediaInfo;
+import top.tobyprime.mcedia.core.VideoRepresentation;
+import top.tobyprime.mcedia.decoders.ffmpeg.CodecBenchmark;
+import top.tobyprime.mcedia.media_play_resolvers.MediaPlayFactory;
+import top.tobyprime.mcedia.net.HttpService;
+import top.tobyprime.mcedia.net.MirrorSelector;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class BilibiliHelper {
     public static Logger LOGGER = LoggerFactory.getLogger(BilibiliHelper.class);
 
     // 辅助方法，用于根据ID查找流并选择最佳编码
+    // 已知本机能实时解码的编码优先，所有编码都已知无法实时解码时返回 null，让调用方尝试更低的清晰度
     private static JSONObject findStreamByIdAndCodec(JSONArray streams, int targetId) {
         JSONObject bestStream = null;
-        int bestCodecScore = -1; // -1: 未找到, 1: AV1, 2: HEVC, 3: AVC (H.264)
+        int bestCodecScore = Integer.MIN_VALUE; // 1: AV1, 2: HEVC, 3: AVC (H.264)，能否实时解码 ±10
+        boolean allTooSlow = true;
 
         for (int i = 0; i < streams.length(); i++) {
             JSONObject stream = streams.getJSONObject(i);
@@ -27,15 +36,192 @@ public class BilibiliHelper {
                 else if (codecs.contains("av01")) currentCodecScore = 1;
                 else currentCodecScore = 0; // 未知编码
 
+                Boolean realtime = canDecodeRealtime(stream);
+                if (realtime == null || realtime) {
+                    allTooSlow = false;
+                }
+                if (Boolean.TRUE.equals(realtime)) {
+                    currentCodecScore += 10;
+                } else if (Boolean.FALSE.equals(realtime)) {
+                    currentCodecScore -= 10;
+                }
+
                 if (currentCodecScore > bestCodecScore) {
                     bestStream = stream;
                     bestCodecScore = currentCodecScore;
                 }
             }
         }
+        if (bestStream != null && allTooSlow) {
+            LOGGER.info("清晰度 {} 的所有编码都无法实时解码，跳过", targetId);
+            return null;
+        }
         return bestStream;
     }
 
+    /**
+     * @return 根据解码测试结果判断能否实时解码，结果未知时返回 null
+     */
+    private static @Nullable Boolean canDecodeRealtime(JSONObject stream) {
+        var codec = CodecBenchmark.Codec.fromCodecs(stream.optString("codecs", ""));
+        if (codec == null) {
+            return null;
+        }
+        double frameRate;
+        try {
+            frameRate = Double.parseDouble(stream.optString("frameRate", stream.optString("frame_rate", "30")));
+        } catch (NumberFormatException e) {
+            frameRate = 30;
+        }
+        return CodecBenchmark.getInstance().canDecodeRealtime(codec, stream.optInt("width", 1920), stream.optInt("height", 1080), frameRate);
+    }
+
+    /**
+     * 媒体信息缓存键的后缀，画质设置与登录状态不同时选出的流也不同
+     */
+    public static String cacheKeySuffix() {
+        var cookie = BilibiliCookie.getCookie();
+        return ":q" + Configs.QUALITY + (cookie != null && !cookie.isEmpty() ? ":login" : "");
+    }
+
+    /**
+     * 列出不高于所选清晰度的全部视频流（每个清晰度选最佳编码），按码率从低到高排列，用于自适应码率
+     */
+    public static List<VideoRepresentation> findRepresentations(JSONArray streams, @Nullable JSONArray formats, JSONObject selected) {
+        Map<Integer, String> descriptions = new HashMap<>();
+        if (formats != null) {
+            for (int i = 0; i < formats.length(); i++) {
+                JSONObject format = formats.getJSONObject(i);
+                descriptions.put(format.getInt("quality"), format.optString("new_description", String.valueOf(format.getInt("quality"))));
+            }
+        }
+
+        int maxId = selected.getInt("id");
+        Set<Integer> ids = new TreeSet<>();
+        for (int i = 0; i < streams.length(); i++) {
+            int id = streams.getJSONObject(i).getInt("id");
+            if (id <= maxId) {
+                ids.add(id);
+            }
+        }
+
+        List<VideoRepresentation> representations = new ArrayList<>();
+        for (int id : ids) {
+            JSONObject stream = id == maxId ? selected : findStreamByIdAndCodec(streams, id);
+            if (stream == null) {
+                continue;
+            }
+            var representation = new VideoRepresentation();
+            representation.url = stream.getString("baseUrl");
+            representation.backupUrls = getBackupUrls(stream);
+            representation.qualityId = id;
+            representation.description = descriptions.getOrDefault(id, String.valueOf(id));
+            representation.bandwidth = stream.optLong("bandwidth");
+            representation.width = stream.optInt("width");
+            representation.height = stream.optInt("height");
+            representations.add(representation);
+        }
+        representations.sort(Comparator.comparingLong(r -> r.bandwidth));
+        return representations;
+    }
+
+    /**
+     * 设置 DASH 视频流，开启自适应码率时先从较低的清晰度起播以加快打开
+     */
+    public static void applyVideoStreams(MediaInfo info, JSONArray streams, @Nullable JSONArray formats, BilibiliStreamSelection selection) {
+        info.streamUrl = selection.stream.getString("baseUrl");
+        info.streamMirrors = getBackupUrls(selection.stream);
+        if (!Configs.ABR_ENABLED) {
+            return;
+        }
+        var representations = findRepresentations(streams, formats, selection.stream);
+        if (representations.size() <= 1) {
+            return;
+        }
+        info.videoRepresentations = representations;
+        VideoRepresentation start = representations.getFirst();
+        for (var representation : representations) {
+            if (representation.height <= Configs.ABR_START_HEIGHT && representation.bandwidth >= start.bandwidth) {
+                start = representation;
+            }
+        }
+        info.streamUrl = start.url;
+        info.streamMirrors = start.backupUrls;
+        LOGGER.info("自适应码率: 可选 {} 种清晰度，从 {} 起播", representations.size(), start);
+    }
+
+    public static void applyAudioStream(MediaInfo info, BilibiliStreamSelection selection) {
+        info.audioUrl = selection.stream.getString("baseUrl");
+        info.audioMirrors = getBackupUrls(selection.stream);
+    }
+
+    /**
+     * DASH 流的备用 CDN 地址，不同接口分别使用 backupUrl 与 backup_url
+     */
+    public static List<String> getBackupUrls(JSONObject stream) {
+        var urls = new LinkedHashSet<String>();
+        for (String key : List.of("backupUrl", "backup_url")) {
+            JSONArray array = stream.optJSONArray(key);
+            if (array == null) {
+                continue;
+            }
+            for (int i = 0; i < array.length(); i++) {
+                String url = array.optString(i, "");
+                if (!url.isEmpty()) {
+                    urls.add(url);
+                }
+            }
+        }
+        urls.remove(stream.optString("baseUrl"));
+        return List.copyOf(urls);
+    }
+
+    /**
+     * 同时探测视频与音频的主地址和备用地址，换用首字节最快的镜像
+     */
+    public static void raceMirrors(MediaInfo info) {
+        // 探测镜像期间先与主地址建立连接，大多数情况下主地址就是最终使用的地址
+        prewarm(info);
+        var video = CompletableFuture.supplyAsync(() -> race(info.streamUrl, info.streamMirrors, info.headers), MediaPlayFactory.EXECUTOR);
+        var audio = CompletableFuture.supplyAsync(() -> race(info.audioUrl, info.audioMirrors, info.headers), MediaPlayFactory.EXECUTOR);
+        var videoUrls = video.join();
+        var audioUrls = audio.join();
+
+        if (info.videoRepresentations != null) {
+            for (var representation : info.videoRepresentations) {
+                if (representation.url.equals(info.streamUrl)) {
+                    representation.url = videoUrls.getFirst();
+                    representation.backupUrls = videoUrls.subList(1, videoUrls.size());
+                }
+            }
+        }
+        info.streamUrl = videoUrls.getFirst();
+        info.streamMirrors = videoUrls.subList(1, videoUrls.size());
+        if (info.audioUrl != null) {
+            info.audioUrl = audioUrls.getFirst();
+            info.audioMirrors = audioUrls.subList(1, audioUrls.size());
+        }
+        prewarm(info);
+    }
+
+    private static void prewarm(MediaInfo info) {
+        int connections = Math.max(1, Configs.RANGE_CONNECTIONS);
+        HttpService.getInstance().prewarm(info.streamUrl, info.headers, connections);
+        HttpService.getInstance().prewarm(info.audioUrl, info.headers, connections);
+    }
+
+    private static List<String> race(@Nullable String url, @Nullable List<String> mirrors, @Nullable Map<String, String> headers) {
+        if (url == null) {
+            return List.of();
+        }
+        var urls = new ArrayList<String>();
+        urls.add(url);
+        if (mirrors != null) {
+            urls.addAll(mirrors);
+        }
+        return List.copyOf(MirrorSelector.getInstance().race(urls, headers));
+    }
+
     public static BilibiliStreamSelection findBestStream(JSONArray streams, @Nullable JSONArray formats) {
         if (streams == null || streams.isEmpty()) {
             return null;
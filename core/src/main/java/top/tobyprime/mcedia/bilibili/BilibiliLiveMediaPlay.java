@@ -7,30 +7,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.core.BaseMediaPlay;
 import top.tobyprime.mcedia.core.MediaInfo;
+import top.tobyprime.mcedia.core.MediaInfoCache;
 import top.tobyprime.mcedia.media_play_resolvers.MediaPlayFactory;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class BilibiliLiveMediaPlay extends BaseMediaPlay {
 
-    private static final HttpClient client = HttpClient.newHttpClient();
     private static final Logger LOGGER = LoggerFactory.getLogger(BilibiliLiveMediaPlay.class);
     private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
     private final String liveUrl;
 
     public BilibiliLiveMediaPlay(String liveUrl) {
         this.liveUrl = liveUrl;
-        CompletableFuture.runAsync(this::load, MediaPlayFactory.EXECUTOR);
+        load();
     }
 
     private static BilibiliLiveQualitySelection findBestQualityNumber(@Nullable JSONArray qualityOptions) {
@@ -56,115 +54,141 @@ public class BilibiliLiveMediaPlay extends BaseMediaPlay {
 
     public void load() {
         loading = true;
-        try {
-            String roomId = extractRoomId(liveUrl);
-            if (roomId == null) throw new IllegalArgumentException("无法从链接中提取房间号");
-
-            // 获取直播间真ID
-            String playInfoApiUrl = "https://api.live.bilibili.com/xlive/web-room/v2/index/getRoomPlayInfo?room_id=" + roomId +
-                    "&no_playurl=0&mask=1&qn=0&platform=web&protocol=0,1&format=0,1,2&codec=0,1,2";
-            HttpRequest initRequest = HttpRequest.newBuilder().uri(URI.create(playInfoApiUrl)).header("User-Agent", USER_AGENT).build();
-            HttpResponse<String> initResponse = client.send(initRequest, HttpResponse.BodyHandlers.ofString());
-            JSONObject initJson = new JSONObject(initResponse.body());
-            if (initJson.optInt("code") != 0 || !initJson.has("data")) {
-                throw new RuntimeException("直播间不存在或API错误: " + initJson.optString("message"));
-            }
-            JSONObject initData = initJson.getJSONObject("data");
-            if (initData.optInt("live_status") != 1) {
-                throw new RuntimeException("直播未开启");
-            }
-            String realRoomId = String.valueOf(initData.getInt("room_id"));
-            long uid;
-
-            // 获取直播间详细信息 (标题和主播UID)
-            String title = "Bilibili 直播";
-            String author = "未知主播";
-            uid = initData.optLong("uid", 0);
-
+        MediaPlayFactory.resolveShared("bilibili-live", "api.live.bilibili.com", "bilibili-live:" + liveUrl, () -> fetchMediaInfo(false)).whenComplete((info, e) -> {
             try {
-                String roomInfoApi = "https://api.live.bilibili.com/room/v1/Room/get_info?room_id=" + realRoomId;
-                HttpRequest roomInfoRequest = HttpRequest.newBuilder().uri(URI.create(roomInfoApi)).build();
-                HttpResponse<String> roomInfoResponse = client.send(roomInfoRequest, HttpResponse.BodyHandlers.ofString());
-                JSONObject roomInfoJson = new JSONObject(roomInfoResponse.body());
-                if (roomInfoJson.optInt("code") == 0) {
-                    JSONObject roomData = roomInfoJson.getJSONObject("data");
-                    title = roomData.optString("title", "未知直播间");
-                    uid = roomData.optLong("uid", 0);
+                if (e == null) {
+                    setMediaInfo(info);
+                    setStatus("加载直播信息完成");
+                    return;
                 }
-            } catch (Exception e) {
-                LOGGER.warn("获取直播间标题失败，使用默认值。");
+                LOGGER.error("获取直播流失败", MediaPlayFactory.unwrap(e));
+                setStatus("获取直播流失败");
+            } finally {
+                loading = false;
             }
+        });
+    }
 
-            // 如果获取到了 UID, 则通过新 API 获取主播名字
-            if (uid > 0) {
-                try {
-                    String userInfoApi = "https://api.bilibili.com/x/space/acc/info?mid=" + uid;
-                    HttpRequest userInfoRequest = HttpRequest.newBuilder().uri(URI.create(userInfoApi)).build();
-                    HttpResponse<String> userInfoResponse = client.send(userInfoRequest, HttpResponse.BodyHandlers.ofString());
-                    JSONObject userInfoJson = new JSONObject(userInfoResponse.body());
-                    if (userInfoJson.optInt("code") == 0) {
-                        author = userInfoJson.getJSONObject("data").optString("name", "未知主播");
-                        LOGGER.info("成功获取到主播昵称: {}", author);
-                    }
-                } catch (Exception e) {
-                    LOGGER.warn("根据UID获取B站用户名失败，将使用默认值。", e);
-                }
-            }
+    @Override
+    public MediaInfo refreshMediaInfo() {
+        return MediaPlayFactory.resolveShared("bilibili-live", "api.live.bilibili.com", "bilibili-live-refresh:" + liveUrl, () -> fetchMediaInfo(true)).join();
+    }
+
+    private MediaInfo fetchMediaInfo(boolean refresh) throws Exception {
+        String roomId = extractRoomId(liveUrl);
+        if (roomId == null) throw new IllegalArgumentException("无法从链接中提取房间号");
+
+        String cacheKey = "bilibili-live:" + roomId;
+        if (refresh) {
+            MediaInfoCache.getInstance().invalidate(cacheKey);
+        }
+        var cached = MediaInfoCache.getInstance().get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        var info = requestMediaInfo(roomId);
+        MediaInfoCache.getInstance().put(cacheKey, info);
+        return info;
+    }
+
+    private MediaInfo requestMediaInfo(String roomId) throws Exception {
+        // 获取直播间真ID
+        String playInfoApiUrl = "https://api.live.bilibili.com/xlive/web-room/v2/index/getRoomPlayInfo?room_id=" + roomId +
+                "&no_playurl=0&mask=1&qn=0&platform=web&protocol=0,1&format=0,1,2&codec=0,1,2";
+        HttpRequest initRequest = HttpRequest.newBuilder().uri(URI.create(playInfoApiUrl)).header("User-Agent", USER_AGENT).build();
+        HttpResponse<String> initResponse = BilibiliRateLimiter.getInstance().send(initRequest);
+        JSONObject initJson = new JSONObject(initResponse.body());
+        if (initJson.optInt("code") != 0 || !initJson.has("data")) {
+            throw new RuntimeException("直播间不存在或API错误: " + initJson.optString("message"));
+        }
+        JSONObject initData = initJson.getJSONObject("data");
+        if (initData.optInt("live_status") != 1) {
+            throw new RuntimeException("直播未开启");
+        }
+        String realRoomId = String.valueOf(initData.getInt("room_id"));
+        long uid;
 
-            // 获取可用的清晰度列表
-            String infoApiUrl = "https://api.live.bilibili.com/xlive/web-room/v1/playUrl/playUrl?cid=" + realRoomId + "&platform=h5&qn=10000";
-            HttpRequest infoRequest = HttpRequest.newBuilder().uri(URI.create(infoApiUrl)).header("User-Agent", USER_AGENT).build();
-            HttpResponse<String> infoResponse = client.send(infoRequest, HttpResponse.BodyHandlers.ofString());
-            JSONObject infoJson = new JSONObject(infoResponse.body());
-            if (infoJson.optInt("code") != 0) {
-                throw new RuntimeException("获取直播清晰度列表失败: " + infoJson.optString("message"));
+        // 获取直播间详细信息 (标题和主播UID)
+        String title = "Bilibili 直播";
+        String author = "未知主播";
+        uid = initData.optLong("uid", 0);
+
+        try {
+            String roomInfoApi = "https://api.live.bilibili.com/room/v1/Room/get_info?room_id=" + realRoomId;
+            HttpRequest roomInfoRequest = HttpRequest.newBuilder().uri(URI.create(roomInfoApi)).build();
+            HttpResponse<String> roomInfoResponse = BilibiliRateLimiter.getInstance().send(roomInfoRequest);
+            JSONObject roomInfoJson = new JSONObject(roomInfoResponse.body());
+            if (roomInfoJson.optInt("code") == 0) {
+                JSONObject roomData = roomInfoJson.getJSONObject("data");
+                title = roomData.optString("title", "未知直播间");
+                uid = roomData.optLong("uid", 0);
             }
-            JSONArray qualityOptions = infoJson.getJSONObject("data").optJSONArray("quality_description");
-
-            List<QualityInfo> availableQualities = new ArrayList<>();
-            if (qualityOptions != null) {
-                for (int i = 0; i < qualityOptions.length(); i++) {
-                    JSONObject quality = qualityOptions.getJSONObject(i);
-                    int qn = quality.getInt("qn");
-                    String desc = quality.getString("desc");
-                    availableQualities.add(new QualityInfo(desc));
+        } catch (Exception e) {
+            LOGGER.warn("获取直播间标题失败，使用默认值。");
+        }
+
+        // 如果获取到了 UID, 则通过新 API 获取主播名字
+        if (uid > 0) {
+            try {
+                String userInfoApi = "https://api.bilibili.com/x/space/acc/info?mid=" + uid;
+                HttpRequest userInfoRequest = HttpRequest.newBuilder().uri(URI.create(userInfoApi)).build();
+                HttpResponse<String> userInfoResponse = BilibiliRateLimiter.getInstance().send(userInfoRequest);
+                JSONObject userInfoJson = new JSONObject(userInfoResponse.body());
+                if (userInfoJson.optInt("code") == 0) {
+                    author = userInfoJson.getJSONObject("data").optString("name", "未知主播");
+                    LOGGER.info("成功获取到主播昵称: {}", author);
                 }
+            } catch (Exception e) {
+                LOGGER.warn("根据UID获取B站用户名失败，将使用默认值。", e);
             }
+        }
 
-            // 根据期望选择清晰度 qn
-            BilibiliLiveQualitySelection selection = findBestQualityNumber(qualityOptions);
-
-            // 使用计算出的 targetQn 请求最终的流
-            String finalApiUrl = "https://api.live.bilibili.com/xlive/web-room/v1/playUrl/playUrl?cid=" + realRoomId +
-                    "&platform=h5&qn=" + selection.qn;
-            HttpRequest finalRequest = HttpRequest.newBuilder().uri(URI.create(finalApiUrl)).header("User-Agent", USER_AGENT).build();
-            HttpResponse<String> finalResponse = client.send(finalRequest, HttpResponse.BodyHandlers.ofString());
-            JSONObject finalJson = new JSONObject(finalResponse.body());
-            if (finalJson.optInt("code") != 0) {
-                throw new RuntimeException("获取目标清晰度直播流失败: " + finalJson.optString("message"));
-            }
-            JSONArray durlArray = finalJson.getJSONObject("data").optJSONArray("durl");
-            if (durlArray != null && durlArray.length() > 0) {
-                String finalUrl = durlArray.getJSONObject(0).getString("url");
-                var info = new MediaInfo();
-                info.streamUrl = finalUrl;
-                info.title = title;
-                info.author = author;
-                info.platform = "Bilibili 直播";
-                info.rawUrl = liveUrl;
-
-                setMediaInfo(info);
-                setStatus("加载直播信息完成");
-                return;
+        // 获取可用的清晰度列表
+        String infoApiUrl = "https://api.live.bilibili.com/xlive/web-room/v1/playUrl/playUrl?cid=" + realRoomId + "&platform=h5&qn=10000";
+        HttpRequest infoRequest = HttpRequest.newBuilder().uri(URI.create(infoApiUrl)).header("User-Agent", USER_AGENT).build();
+        HttpResponse<String> infoResponse = BilibiliRateLimiter.getInstance().send(infoRequest);
+        JSONObject infoJson = new JSONObject(infoResponse.body());
+        if (infoJson.optInt("code") != 0) {
+            throw new RuntimeException("获取直播清晰度列表失败: " + infoJson.optString("message"));
+        }
+        JSONArray qualityOptions = infoJson.getJSONObject("data").optJSONArray("quality_description");
+
+        List<QualityInfo> availableQualities = new ArrayList<>();
+        if (qualityOptions != null) {
+            for (int i = 0; i < qualityOptions.length(); i++) {
+                JSONObject quality = qualityOptions.getJSONObject(i);
+                int qn = quality.getInt("qn");
+                String desc = quality.getString("desc");
+                availableQualities.add(new QualityInfo(desc));
             }
+        }
 
-            throw new RuntimeException("API响应中未找到任何可用的直播流 (durl is empty or null)");
-        } catch (Exception e) {
-            LOGGER.error("获取直播流失败", e);
-            setStatus("获取直播流失败");
-        } finally {
-            loading = false;
+        // 根据期望选择清晰度 qn
+        BilibiliLiveQualitySelection selection = findBestQualityNumber(qualityOptions);
+
+        // 使用计算出的 targetQn 请求最终的流
+        String finalApiUrl = "https://api.live.bilibili.com/xlive/web-room/v1/playUrl/playUrl?cid=" + realRoomId +
+                "&platform=h5&qn=" + selection.qn;
+        HttpRequest finalRequest = HttpRequest.newBuilder().uri(URI.create(finalApiUrl)).header("User-Agent", USER_AGENT).build();
+        HttpResponse<String> finalResponse = BilibiliRateLimiter.getInstance().send(finalRequest);
+        JSONObject finalJson = new JSONObject(finalResponse.body());
+        if (finalJson.optInt("code") != 0) {
+            throw new RuntimeException("获取目标清晰度直播流失败: " + finalJson.optString("message"));
         }
+        JSONArray durlArray = finalJson.getJSONObject("data").optJSONArray("durl");
+        if (durlArray != null && durlArray.length() > 0) {
+            String finalUrl = durlArray.getJSONObject(0).getString("url");
+            var info = new MediaInfo();
+            info.streamUrl = finalUrl;
+            info.title = title;
+            info.author = author;
+            info.platform = "Bilibili 直播";
+            info.rawUrl = liveUrl;
+
+            return info;
+        }
+
+        throw new RuntimeException("API响应中未找到任何可用的直播流 (durl is empty or null)");
     }
 
     private record BilibiliLiveQualitySelection(int qn, String description) {
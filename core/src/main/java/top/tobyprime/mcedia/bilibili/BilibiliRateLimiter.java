@@ -0,0 +1,140 @@
+package top.tobyprime.mcedia.bilibili;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.media_play_resolvers.MediaPlayFactory;
+import top.tobyprime.mcedia.net.HttpService;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * B 站 API 的限流器，每个接口一个令牌桶。
+ * 遇到风控（-412/-352）时速率减半并按指数退避重试，正常响应后速率逐步恢复
+ */
+public class BilibiliRateLimiter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BilibiliRateLimiter.class);
+    private static final BilibiliRateLimiter INSTANCE = new BilibiliRateLimiter();
+    // 风控后速率的下限 (次/秒)
+    private static final double MIN_RATE = 0.2;
+    // 每次成功后速率的增量 (次/秒)
+    private static final double RATE_INCREASE = 0.2;
+    private static final long BASE_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private BilibiliRateLimiter() {
+    }
+
+    public static BilibiliRateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 是否为风控响应，风控可能以 HTTP 412 或 JSON 中的 code 返回
+     */
+    public static boolean isThrottled(HttpResponse<String> response) {
+        if (response.statusCode() == 412) {
+            return true;
+        }
+        try {
+            int code = new JSONObject(response.body()).optInt("code");
+            return code == -412 || code == -352;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 排队等待令牌后发送请求，被风控时退避并重试，重试次数用尽后返回最后一次响应
+     */
+    public HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        var bucket = buckets.computeIfAbsent(request.uri().getHost() + request.uri().getPath(), Bucket::new);
+        for (int attempt = 0; ; attempt++) {
+            long wait = bucket.reserve();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+            var response = HttpService.getInstance().send(request, HttpResponse.BodyHandlers.ofString());
+            if (!isThrottled(response)) {
+                bucket.onSuccess();
+                return response;
+            }
+            if (attempt >= Configs.BILIBILI_API_MAX_RETRIES) {
+                LOGGER.warn("{} 多次触发风控，放弃重试", bucket.endpoint);
+                return response;
+            }
+            long backoff = backoff(attempt);
+            bucket.onThrottled(backoff);
+            LOGGER.warn("{} 触发风控，{}ms 后第 {} 次重试，速率降为 {}/s", bucket.endpoint, backoff, attempt + 1, String.format("%.1f", bucket.rate));
+        }
+    }
+
+    /**
+     * 第 attempt 次重试前的退避时间，指数增长并带 ±50% 的抖动，避免多个等待中的请求同时重试
+     */
+    static long backoff(int attempt) {
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt, 30));
+        return (long) (backoff * ThreadLocalRandom.current().nextDouble(0.5, 1.5));
+    }
+
+    public CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(request);
+            } catch (IOException | InterruptedException e) {
+                throw new CompletionException(e);
+            }
+        }, MediaPlayFactory.EXECUTOR);
+    }
+
+    static class Bucket {
+        final String endpoint;
+        double rate;
+        double tokens;
+        long lastRefill = System.currentTimeMillis();
+        long blockedUntil = 0;
+
+        Bucket(String endpoint) {
+            this.endpoint = endpoint;
+            this.rate = maxRate();
+            this.tokens = rate;
+        }
+
+        static double maxRate() {
+            return Math.max(MIN_RATE, Configs.BILIBILI_API_MAX_RATE);
+        }
+
+        /**
+         * 预占一个令牌，令牌可以透支，返回需要等待的毫秒数
+         */
+        synchronized long reserve() {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1000);
+            lastRefill = now;
+            tokens -= 1;
+            long wait = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate * 1000);
+            // 退避期间排队的请求在退避结束后按速率依次放行
+            return Math.max(0, blockedUntil - now) + wait;
+        }
+
+        synchronized void onSuccess() {
+            rate = Math.min(maxRate(), rate + RATE_INCREASE);
+        }
+
+        synchronized void onThrottled(long backoff) {
+            rate = Math.max(MIN_RATE, rate / 2);
+            tokens = Math.min(tokens, 0);
+            blockedUntil = Math.max(blockedUntil, System.currentTimeMillis() + backoff);
+        }
+    }
+}
@@ -6,21 +6,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.core.BaseMediaPlay;
 import top.tobyprime.mcedia.core.MediaInfo;
+import top.tobyprime.mcedia.core.MediaInfoCache;
 import top.tobyprime.mcedia.interfaces.IMediaPlay;
 import top.tobyprime.mcedia.media_play_resolvers.MediaPlayFactory;
+import top.tobyprime.mcedia.media_play_resolvers.MediaResolveException;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.HashMap;
-import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class BilibiliVideoMediaPlay extends BaseMediaPlay implements IMediaPlay, BilibiliAccountStatusUpdateEventHandler {
 
-    private static final HttpClient client = HttpClient.newHttpClient();
     private static final Logger LOGGER = LoggerFactory.getLogger(BilibiliVideoMediaPlay.class);
     private final String videoUrl;
     private volatile boolean waitForLoginStatusUpdate = false;
@@ -28,7 +27,7 @@ public class BilibiliVideoMediaPlay extends BaseMediaPlay implements IMediaPlay,
     public BilibiliVideoMediaPlay(String videoUrl) {
         BilibiliAuthManager.getInstance().AddStatusUpdateHandler(this);
         this.videoUrl = videoUrl;
-        CompletableFuture.runAsync(this::load, MediaPlayFactory.EXECUTOR);
+        load();
     }
 
     private static int parsePNumberFromUrl(String url) {
@@ -53,151 +52,209 @@ public class BilibiliVideoMediaPlay extends BaseMediaPlay implements IMediaPlay,
 
     public void load() {
         loading = true;
-        try {
-            String bvid = parseBvidFromUrl(videoUrl);
-            if (bvid == null) {
-                throw new IllegalArgumentException("未找到BV号，请检查视频链接");
+        MediaPlayFactory.resolveShared("bilibili", "api.bilibili.com", "bilibili:" + videoUrl, () -> fetchMediaInfo(false)).whenComplete((info, e) -> {
+            try {
+                if (e == null) {
+                    setStatus("获取播放地址成功");
+                    setMediaInfo(info);
+                    return;
+                }
+                var cause = MediaPlayFactory.unwrap(e);
+                if (cause instanceof MediaResolveException resolveException) {
+                    if (resolveException.requireLogin) {
+                        waitForLoginStatusUpdate = true;
+                    }
+                    if (resolveException.getMessage() != null) {
+                        setStatus(resolveException.getMessage());
+                    }
+                    return;
+                }
+                LOGGER.warn("记载失败", cause);
+                setStatus("加载失败" + cause.getMessage());
+            } finally {
+                loading = false;
+            }
+        });
+    }
+
+    @Override
+    public MediaInfo refreshMediaInfo() {
+        return MediaPlayFactory.resolveShared("bilibili", "api.bilibili.com", "bilibili-refresh:" + videoUrl, () -> fetchMediaInfo(true)).join();
+    }
+
+    private MediaInfo fetchMediaInfo(boolean refresh) throws Exception {
+        String bvid = parseBvidFromUrl(videoUrl);
+        if (bvid == null) {
+            throw new IllegalArgumentException("未找到BV号，请检查视频链接");
+        }
+        int page = parsePNumberFromUrl(videoUrl);
+
+        String cacheKey = "bilibili:" + bvid + ":p" + page + BilibiliHelper.cacheKeySuffix();
+        if (refresh) {
+            MediaInfoCache.getInstance().invalidate(cacheKey);
+        }
+        var cached = MediaInfoCache.getInstance().get(cacheKey);
+        if (cached != null) {
+            cached.cookie = BilibiliCookie.getCookie();
+            if (cached.danmakus == null) {
+                // 从磁盘载入的缓存不含弹幕，后台补充
+                MediaPlayFactory.EXECUTOR.execute(() -> fetchDanmaku(bvid, page, cached));
             }
-            int page = parsePNumberFromUrl(videoUrl);
+            return cached;
+        }
+        var info = requestMediaInfo(bvid, page);
+        MediaInfoCache.getInstance().put(cacheKey, info);
+        return info;
+    }
 
+    private static void fetchDanmaku(String bvid, int page, MediaInfo info) {
+        try {
             String viewApi = "https://api.bilibili.com/x/web-interface/view?bvid=" + bvid;
             HttpRequest viewRequest = HttpRequest.newBuilder().uri(URI.create(viewApi)).header("User-Agent", "Mozilla/5.0").build();
-            HttpResponse<String> viewResponse = client.send(viewRequest, HttpResponse.BodyHandlers.ofString());
-            JSONObject viewJson = new JSONObject(viewResponse.body());
+            JSONObject viewJson = new JSONObject(BilibiliRateLimiter.getInstance().send(viewRequest).body());
+            if (viewJson.optInt("code") != 0) {
+                return;
+            }
+            JSONObject viewData = viewJson.getJSONObject("data");
+            JSONArray pagesArray = viewData.optJSONArray("pages");
+            long cid = viewData.optLong("cid");
+            if (pagesArray != null && pagesArray.length() > 1) {
+                cid = pagesArray.getJSONObject(page > 0 && page <= pagesArray.length() ? page - 1 : 0).getLong("cid");
+            }
+            BilibiliDanmakuFetcher.fetchDanmakuAsync(cid).thenAccept(dmk -> {
+                info.danmakus = dmk;
+                LOGGER.info("加载了 {} 条弹幕", dmk.size());
+            });
+        } catch (Exception e) {
+            LOGGER.warn("获取弹幕失败", e);
+        }
+    }
+
+    private MediaInfo requestMediaInfo(String bvid, int page) throws Exception {
+        String viewApi = "https://api.bilibili.com/x/web-interface/view?bvid=" + bvid;
+        HttpRequest viewRequest = HttpRequest.newBuilder().uri(URI.create(viewApi)).header("User-Agent", "Mozilla/5.0").build();
+        HttpResponse<String> viewResponse = BilibiliRateLimiter.getInstance().send(viewRequest);
+        JSONObject viewJson = new JSONObject(viewResponse.body());
 
-            String mainTitle;
-            String author;
-            String partName = null;
-            long cid;
+        String mainTitle;
+        String author;
+        String partName = null;
+        long cid;
 //        boolean isMultiPart = false;
 
-            if (viewJson.optInt("code") == 0) {
-                JSONObject viewData = viewJson.getJSONObject("data");
-                mainTitle = viewData.getString("title");
-                author = viewData.getJSONObject("owner").getString("name");
+        if (viewJson.optInt("code") == 0) {
+            JSONObject viewData = viewJson.getJSONObject("data");
+            mainTitle = viewData.getString("title");
+            author = viewData.getJSONObject("owner").getString("name");
 
-                JSONArray pagesArray = viewData.optJSONArray("pages");
-                if (pagesArray != null && pagesArray.length() > 1) {
+            JSONArray pagesArray = viewData.optJSONArray("pages");
+            if (pagesArray != null && pagesArray.length() > 1) {
 //                isMultiPart = true;
-                    if (page > 0 && page <= pagesArray.length()) {
-                        JSONObject currentPageData = pagesArray.getJSONObject(page - 1);
-                        cid = currentPageData.getLong("cid");
-                        partName = currentPageData.getString("part");
-                        if (partName.equals(mainTitle)) {
-                            partName = null;
-                        }
-                    } else {
-//                    page = 1;
-                        JSONObject currentPageData = pagesArray.getJSONObject(0);
-                        cid = currentPageData.getLong("cid");
-                        partName = currentPageData.getString("part");
+                if (page > 0 && page <= pagesArray.length()) {
+                    JSONObject currentPageData = pagesArray.getJSONObject(page - 1);
+                    cid = currentPageData.getLong("cid");
+                    partName = currentPageData.getString("part");
+                    if (partName.equals(mainTitle)) {
+                        partName = null;
                     }
                 } else {
-                    cid = viewData.getLong("cid");
-//                page = 1;
+//                    page = 1;
+                    JSONObject currentPageData = pagesArray.getJSONObject(0);
+                    cid = currentPageData.getLong("cid");
+                    partName = currentPageData.getString("part");
                 }
             } else {
-                setStatus("获取视频信息失败:" + viewJson.optString("message"));
-                return;
+                cid = viewData.getLong("cid");
+//                page = 1;
             }
+        } else {
+            throw new MediaResolveException("获取视频信息失败:" + viewJson.optString("message"));
+        }
 
-            if (cid == 0) {
-                setStatus("无法确定视频的CID，可能是分P号错误或API已更改。");
-                return;
-            }
+        if (cid == 0) {
+            throw new MediaResolveException("无法确定视频的CID，可能是分P号错误或API已更改。");
+        }
 
-            String playApi = "https://api.bilibili.com/x/player/playurl?bvid=" + bvid +
-                    "&cid=" + cid + "&fnval=4048";
-            HttpRequest.Builder playRequestBuilder = HttpRequest.newBuilder()
-                    .uri(URI.create(playApi))
-                    .header("User-Agent", "Mozilla/5.0")
-                    .header("Referer", "https://www.bilibili.com/");
-            var cookie = BilibiliCookie.getCookie();
-            if (cookie != null && !cookie.isEmpty()) {
-                playRequestBuilder.header("Cookie", cookie);
-            }
+        String playApi = "https://api.bilibili.com/x/player/playurl?bvid=" + bvid +
+                "&cid=" + cid + "&fnval=4048";
+        HttpRequest.Builder playRequestBuilder = HttpRequest.newBuilder()
+                .uri(URI.create(playApi))
+                .header("User-Agent", "Mozilla/5.0")
+                .header("Referer", "https://www.bilibili.com/");
+        var cookie = BilibiliCookie.getCookie();
+        if (cookie != null && !cookie.isEmpty()) {
+            playRequestBuilder.header("Cookie", cookie);
+        }
 
-            HttpResponse<String> playResponse = client.send(playRequestBuilder.build(), HttpResponse.BodyHandlers.ofString());
-            JSONObject playJson = new JSONObject(playResponse.body());
+        HttpResponse<String> playResponse = BilibiliRateLimiter.getInstance().send(playRequestBuilder.build());
+        JSONObject playJson = new JSONObject(playResponse.body());
 
-            var info = new MediaInfo();
+        var info = new MediaInfo();
 
-            if (partName != null && !partName.isEmpty()) {
-                info.title = mainTitle + " - " + partName;
-            } else {
-                info.title = mainTitle;
-            }
-            info.rawUrl = this.videoUrl;
-
-            info.author = author;
-            info.platform = "bilibili";
-            info.cookie = BilibiliCookie.getCookie();
-            var headers = new HashMap<String, String>();
-            headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
-            headers.put("Referer", "https://www.bilibili.com/");
-            headers.put("Origin", "https://www.bilibili.com");
-            info.headers = headers;
-            BilibiliDanmakuFetcher.fetchDanmakuAsync(cid).thenAccept(dmk -> {
-                info.danmakus = dmk;
-                LOGGER.info("加载了 {} 条弹幕", dmk.size());
-            });
-            if (playJson.getInt("code") != 0) {
-                String message = playJson.optString("message");
-                if (playJson.getInt("code") == -10403) {
-                    waitForLoginStatusUpdate = true;
-                    return;
-                }
-                setStatus("获取视频播放地址失败: " + message);
-                return;
+        if (partName != null && !partName.isEmpty()) {
+            info.title = mainTitle + " - " + partName;
+        } else {
+            info.title = mainTitle;
+        }
+        info.rawUrl = this.videoUrl;
+        info.seekable = true;
+
+        info.author = author;
+        info.platform = "bilibili";
+        info.cookie = BilibiliCookie.getCookie();
+        var headers = new HashMap<String, String>();
+        headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+        headers.put("Referer", "https://www.bilibili.com/");
+        headers.put("Origin", "https://www.bilibili.com");
+        info.headers = headers;
+        BilibiliDanmakuFetcher.fetchDanmakuAsync(cid).thenAccept(dmk -> {
+            info.danmakus = dmk;
+            LOGGER.info("加载了 {} 条弹幕", dmk.size());
+        });
+        if (playJson.getInt("code") != 0) {
+            String message = playJson.optString("message");
+            if (playJson.getInt("code") == -10403) {
+                throw new MediaResolveException(null, true);
             }
+            throw new MediaResolveException("获取视频播放地址失败: " + message);
+        }
 
-            JSONObject data = playJson.getJSONObject("data");
+        JSONObject data = playJson.getJSONObject("data");
 
-            JSONArray supportFormats = data.optJSONArray("support_formats");
+        JSONArray supportFormats = data.optJSONArray("support_formats");
 //        String finalCurrentQuality = null;
 
 
-            if (data.has("dash")) {
-                JSONObject dash = data.getJSONObject("dash");
-                if (dash.has("video") && dash.has("audio") && !dash.getJSONArray("video").isEmpty() && !dash.getJSONArray("audio").isEmpty()) {
-                    BilibiliStreamSelection videoSelection = BilibiliHelper.findBestStream(dash.getJSONArray("video"), supportFormats);
-                    BilibiliStreamSelection audioSelection = BilibiliHelper.findBestStream(dash.getJSONArray("audio"), null);
+        if (data.has("dash")) {
+            JSONObject dash = data.getJSONObject("dash");
+            if (dash.has("video") && dash.has("audio") && !dash.getJSONArray("video").isEmpty() && !dash.getJSONArray("audio").isEmpty()) {
+                BilibiliStreamSelection videoSelection = BilibiliHelper.findBestStream(dash.getJSONArray("video"), supportFormats);
+                BilibiliStreamSelection audioSelection = BilibiliHelper.findBestStream(dash.getJSONArray("audio"), null);
 
-                    if (videoSelection != null && videoSelection.stream != null && audioSelection != null) {
+                if (videoSelection != null && videoSelection.stream != null && audioSelection != null) {
 //                    finalCurrentQuality = videoSelection.qualityDescription;
-                        String videoBaseUrl = videoSelection.stream.getString("baseUrl");
-                        String audioBaseUrl = audioSelection.stream.getString("baseUrl");
-
-                        info.streamUrl = videoBaseUrl;
-                        info.audioUrl = audioBaseUrl;
-                        setStatus("获取播放地址成功");
-                        setMediaInfo(info);
-                        return;
-                    }
+                    BilibiliHelper.applyVideoStreams(info, dash.getJSONArray("video"), supportFormats, videoSelection);
+                    BilibiliHelper.applyAudioStream(info, audioSelection);
+                    BilibiliHelper.raceMirrors(info);
+                    return info;
                 }
             }
+        }
 
-            if (data.has("durl")) {
-                JSONArray durlArray = data.getJSONArray("durl");
-                if (!durlArray.isEmpty()) {
+        if (data.has("durl")) {
+            JSONArray durlArray = data.getJSONArray("durl");
+            if (!durlArray.isEmpty()) {
 //                if (supportFormats != null && !supportFormats.isEmpty()) {
 //                    finalCurrentQuality = supportFormats.getJSONObject(0).getString("new_description");
 //                }
-                    String url = durlArray.getJSONObject(0).getString("url");
-                    LOGGER.warn("未找到DASH流，可能为会员内容。正在尝试播放试看片段 (DURL)。");
-                    setStatus("获取试看地址成功");
-                    info.streamUrl = url;
-                    return;
-                }
+                String url = durlArray.getJSONObject(0).getString("url");
+                LOGGER.warn("未找到DASH流，可能为会员内容。正在尝试播放试看片段 (DURL)。");
+                info.streamUrl = url;
+                return info;
             }
-
-            waitForLoginStatusUpdate = true;
-        } catch (Exception e) {
-            LOGGER.warn("记载失败", e);
-            setStatus("加载失败" + e.getMessage());
-        } finally {
-            loading = false;
         }
+
+        throw new MediaResolveException(null, true);
     }
 
     @Override
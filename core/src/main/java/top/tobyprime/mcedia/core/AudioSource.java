@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.Configs;
 import top.tobyprime.mcedia.decoders.AudioBufferData;
 import top.tobyprime.mcedia.interfaces.IAudioSource;
+import top.tobyprime.mcedia.metrics.MediaEvents;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -27,6 +28,13 @@ public class AudioSource implements IAudioSource {
     private int[] alBuffers = null;
     private volatile int alSource = -1;
     private boolean isClosed = false;
+    // 已释放资源，直到下一次上传前不重新初始化
+    private volatile boolean released = false;
+    private volatile long underruns = 0;
+    // 释放期间设置的参数，重新初始化时恢复
+    private volatile float pitch = 1;
+    private volatile float minDistance = 1;
+    private volatile float maxDistance = 500;
 
     public AudioSource(Consumer<Runnable> alThreadExecutor) {
         this.alThreadExecutor = alThreadExecutor;
@@ -65,13 +73,14 @@ public class AudioSource implements IAudioSource {
                 return;
             }
             AL10.alSourcef(alSource, AL10.AL_GAIN, 1);
-            AL10.alSourcef(alSource, AL10.AL_MAX_DISTANCE, 500);
-            AL10.alSourcef(alSource, AL10.AL_REFERENCE_DISTANCE, 1.0f);
+            AL10.alSourcef(alSource, AL10.AL_MAX_DISTANCE, maxDistance);
+            AL10.alSourcef(alSource, AL10.AL_REFERENCE_DISTANCE, minDistance);
+            AL10.alSourcef(alSource, AL10.AL_PITCH, pitch);
             AL10.alSourcef(alSource, AL10.AL_ROLLOFF_FACTOR, 1.0f);
             AL10.alSourcei(alSource, AL10.AL_SOURCE_RELATIVE, AL10.AL_FALSE);
             AL10.alSourcei(alSource, AL10.AL_LOOPING, AL10.AL_FALSE);
             AL10.alDistanceModel(AL10.AL_INVERSE_DISTANCE_CLAMPED);
-            AL10.alSource3f(alSource, AL10.AL_POSITION, 0, 0, 0);
+            AL10.alSource3f(alSource, AL10.AL_POSITION, x, y, z);
 
             error = AL10.alGetError();
             if (error != AL10.AL_NO_ERROR) {
@@ -170,10 +179,17 @@ public class AudioSource implements IAudioSource {
     private void alRestartIfNeed() {
         int state = AL10.alGetSourcei(alSource, AL10.AL_SOURCE_STATE);
         if (state == AL10.AL_STOPPED) {
+            // 只有队列中的缓冲区全部播放完才会停止
+            underruns++;
             AL10.alSourcePlay(alSource);
         }
     }
 
+    @Override
+    public long getUnderrunCount() {
+        return underruns;
+    }
+
     private void alUpload(AudioBufferData bufferData) {
         synchronized (alLock) {
             if (isClosed) return;
@@ -184,6 +200,10 @@ public class AudioSource implements IAudioSource {
             if (bufferId == null) {
                 return;
             }
+            var event = new MediaEvents.AudioUpload();
+            event.begin();
+            event.mediaId = bufferData.mediaId;
+            event.samples = bufferData.pcm != null ? bufferData.pcm.remaining() : 0;
             alSetVolume(volume * Configs.VOLUME_FACTOR);
             switch (bufferData.pcm) {
                 case ByteBuffer bb -> AL10.alBufferData(bufferId, AL10.AL_FORMAT_MONO16, bb, bufferData.sampleRate);
@@ -202,6 +222,7 @@ public class AudioSource implements IAudioSource {
             }
 
             AL10.alSourceQueueBuffers(alSource, bufferId);
+            event.commit();
             error = AL10.alGetError();
             if (error != AL10.AL_NO_ERROR) {
                 LOGGER.error("buffer 加入队列失败: {}", error);
@@ -294,6 +315,7 @@ public class AudioSource implements IAudioSource {
         if (audioFrame == null) {
             return;
         }
+        released = false;
 
         try {
             alThreadExecutor.accept(() -> alUpload(audioFrame));
@@ -316,9 +338,19 @@ public class AudioSource implements IAudioSource {
 
     @Override
     public void setPitch(float pitch) {
+        this.pitch = Math.max(pitch, 0);
+        if (released) return;
         alThreadExecutor.accept(() -> alSetPitch(pitch));
     }
 
+    @Override
+    public void release() {
+        released = true;
+        alThreadExecutor.accept(() -> {
+            if (released) alCleanAll();
+        });
+    }
+
     @Override
     public void clearBuffer() {
         alThreadExecutor.accept(() -> {
@@ -353,7 +385,12 @@ public class AudioSource implements IAudioSource {
     }
 
     public void setPos(float x, float y, float z) {
-
+        if (released) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            return;
+        }
         alThreadExecutor.accept(() -> alSetPos(x, y, z));
     }
 
@@ -364,6 +401,9 @@ public class AudioSource implements IAudioSource {
     }
 
     public void setRange(float min, float max) {
+        this.minDistance = Math.max(min, 0);
+        this.maxDistance = Math.max(max, this.minDistance);
+        if (released) return;
         alThreadExecutor.accept(() -> {
             alSetMinDistance(min);
             alSetMaxDistance(Math.max(max, min));
@@ -0,0 +1,214 @@
+package top.tobyprime.mcedia.core;
+
+import org.jetbrains.annotations.Nullable;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.interfaces.IMediaPlayerInstance;
+import top.tobyprime.mcedia.metrics.MetricsRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 全局下载带宽分配：总带宽按播放器优先级（距离、注视、画质档位）分给各媒体，距离最近的播放器保证最低带宽，
+ * 每个媒体按分到的速率用令牌桶限制读取。只作用于 Mcedia 自己下载的流，FFmpeg 直接打开的地址不受限制
+ */
+public class BandwidthGovernor {
+    private static final BandwidthGovernor INSTANCE = new BandwidthGovernor();
+    private static final double TARGETING_BOOST = 4;
+    // 档位开销为 0 的播放器仍然分到的最低权重
+    private static final double MIN_WEIGHT = 0.01;
+    private static final long SAMPLE_INTERVAL_MS = 1000;
+    private static final int SLICE_SIZE = 64 * 1024;
+
+    private final Set<Channel> channels = ConcurrentHashMap.newKeySet();
+    private long lastSampleTime = System.currentTimeMillis();
+
+    private BandwidthGovernor() {
+        MetricsRegistry.getInstance().gauge("net.download_kbps", this::getTotalUsageKbps);
+    }
+
+    public static BandwidthGovernor getInstance() {
+        return INSTANCE;
+    }
+
+    public Channel openChannel() {
+        var channel = new Channel();
+        channels.add(channel);
+        return channel;
+    }
+
+    /**
+     * 每 tick 由 {@link PlayerInstanceManagerRegistry} 调用，重新分配带宽
+     *
+     * @param rankedPlayers 按优先级从高到低排列的播放器
+     */
+    public synchronized void update(List<? extends IMediaPlayerInstance> rankedPlayers) {
+        var weights = new HashMap<Channel, Double>();
+        Channel nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
+        for (var instance : rankedPlayers) {
+            var media = instance.getPlayer().getMedia();
+            if (instance.isRemoved() || media == null) {
+                continue;
+            }
+            var channel = media.getBandwidthChannel();
+            double weight = Math.max(MIN_WEIGHT, instance.getPlayer().getQualityTier().cost) / Math.max(instance.getDistance(), 1);
+            if (instance.isTargeting() >= 0) {
+                weight *= TARGETING_BOOST;
+            }
+            weights.merge(channel, weight, Math::max);
+            if (instance.getDistance() < nearestDistance) {
+                nearestDistance = instance.getDistance();
+                nearest = channel;
+            }
+        }
+        // 还没有对应播放器的媒体（正在打开）按最低权重分配
+        for (var channel : channels) {
+            weights.putIfAbsent(channel, MIN_WEIGHT);
+        }
+        allocate(weights, nearest);
+
+        long now = System.currentTimeMillis();
+        if (now - lastSampleTime >= SAMPLE_INTERVAL_MS) {
+            channels.forEach(channel -> channel.sample(now - lastSampleTime));
+            lastSampleTime = now;
+        }
+    }
+
+    private void allocate(Map<Channel, Double> weights, Channel nearest) {
+        double total = Configs.BANDWIDTH_LIMIT_KBPS * 125.0;
+        if (total <= 0) {
+            weights.keySet().forEach(channel -> channel.rate = -1);
+            return;
+        }
+        double sum = weights.values().stream().mapToDouble(Double::doubleValue).sum();
+        double guaranteed = Math.min(total, Configs.BANDWIDTH_MIN_KBPS * 125.0);
+        if (nearest == null || total * weights.get(nearest) / sum >= guaranteed) {
+            weights.forEach((channel, weight) -> channel.rate = total * weight / sum);
+            return;
+        }
+        nearest.rate = guaranteed;
+        double rest = sum - weights.get(nearest);
+        weights.forEach((channel, weight) -> {
+            if (channel != nearest) {
+                channel.rate = rest <= 0 ? 0 : (total - guaranteed) * weight / rest;
+            }
+        });
+    }
+
+    /**
+     * @return 所有媒体最近一秒的下载速度 (kbps)
+     */
+    public double getTotalUsageKbps() {
+        return channels.stream().mapToDouble(Channel::getUsageKbps).sum();
+    }
+
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * 分片读取整个响应体，每片之间检查是否取消，channel 不为 null 时按其限速
+     */
+    public static byte[] readAll(@Nullable Channel channel, InputStream in, BooleanSupplier cancelled) throws IOException {
+        var out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[SLICE_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            if (cancelled.getAsBoolean()) {
+                throw new InterruptedIOException("读取被中断");
+            }
+            if (channel != null) {
+                channel.acquire(n, cancelled);
+            }
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 一个媒体的下载限速，由该媒体的所有读取共享
+     */
+    public static class Channel {
+        private final LongAdder transferred = new LongAdder();
+        // 字节/秒，负数为不限速
+        private volatile double rate = -1;
+        private double tokens = 0;
+        private long lastRefill = System.nanoTime();
+        private volatile double usageKbps = 0;
+
+        private Channel() {
+        }
+
+        /**
+         * 消耗令牌，令牌不足时等待；允许透支，透支部分由之后的读取等待补上
+         */
+        public void acquire(int bytes, BooleanSupplier cancelled) throws InterruptedIOException {
+            transferred.add(bytes);
+            while (true) {
+                long waitMs;
+                synchronized (this) {
+                    double rate = this.rate;
+                    if (rate < 0) {
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    // 最多积累 0.25 秒的令牌，避免空闲后瞬间占满带宽
+                    double burst = Math.max(rate / 4, SLICE_SIZE);
+                    tokens = Math.min(burst, tokens + rate * (now - lastRefill) / 1e9);
+                    lastRefill = now;
+                    if (tokens > 0) {
+                        tokens -= bytes;
+                        return;
+                    }
+                    waitMs = rate <= 0 ? 100 : (long) Math.ceil(-tokens / rate * 1000);
+                }
+                if (cancelled.getAsBoolean()) {
+                    throw new InterruptedIOException("读取被中断");
+                }
+                try {
+                    Thread.sleep(Math.max(1, Math.min(waitMs, 100)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        /**
+         * 按限速读取整个响应体
+         */
+        public byte[] readAll(InputStream in, BooleanSupplier cancelled) throws IOException {
+            return BandwidthGovernor.readAll(this, in, cancelled);
+        }
+
+        private void sample(long elapsedMs) {
+            usageKbps = transferred.sumThenReset() * 8.0 / Math.max(1, elapsedMs);
+        }
+
+        /**
+         * @return 分到的速率 (kbps)，不限速时为负数
+         */
+        public double getRateKbps() {
+            double rate = this.rate;
+            return rate < 0 ? -1 : rate / 125;
+        }
+
+        public double getUsageKbps() {
+            return usageKbps;
+        }
+
+        public void close() {
+            INSTANCE.channels.remove(this);
+        }
+    }
+}
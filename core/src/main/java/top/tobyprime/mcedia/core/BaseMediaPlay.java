@@ -3,15 +3,16 @@ package top.tobyprime.mcedia.core;
 import org.jetbrains.annotations.Nullable;
 import top.tobyprime.mcedia.interfaces.IMediaPlay;
 
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 public abstract class BaseMediaPlay implements IMediaPlay {
-    private final ArrayList<Consumer<MediaInfo>> onUpdatedListeners = new ArrayList<>();
-    private final ArrayList<Consumer<String>> onMessageListeners = new ArrayList<>();
-    protected boolean loading;
-    private MediaInfo mediaInfo;
-    private String status;
+    // 解析在多个线程中并行完成，监听器列表需要线程安全
+    private final CopyOnWriteArrayList<Consumer<MediaInfo>> onUpdatedListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<Consumer<String>> onMessageListeners = new CopyOnWriteArrayList<>();
+    protected volatile boolean loading;
+    private volatile MediaInfo mediaInfo;
+    private volatile String status;
 
     @Override
     public void registerOnMediaInfoUpdatedEvent(Consumer<@Nullable MediaInfo> onUpdate) {
@@ -0,0 +1,177 @@
+package top.tobyprime.mcedia.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.interfaces.IMediaPlayerInstance;
+import top.tobyprime.mcedia.metrics.MetricsRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 根据客户端帧时间与 Mcedia 自身开销（纹理上传、解码 CPU）逐步降低或恢复各播放器的负载
+ */
+public class FrameTimeController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FrameTimeController.class);
+    private static final FrameTimeController INSTANCE = new FrameTimeController();
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    public static final int MAX_SHED_LEVEL = 3;
+    private static final long EVALUATE_INTERVAL_MS = 1000;
+    // 连续超预算多少次后降载、连续有余量多少次后恢复
+    private static final int SHED_AFTER = 2;
+    private static final int RESTORE_AFTER = 3;
+    // Mcedia 开销占比低于该值时降载没有意义
+    private static final double MIN_MCEDIA_SHARE = 0.05;
+
+    private final LongAdder uploadNanos = new LongAdder();
+    private final LongAdder decodeCpuNanos = new LongAdder();
+
+    private volatile int fps = 0;
+    private volatile int fpsLimit = 0;
+
+    private long lastEvaluateTime = System.currentTimeMillis();
+    private int overBudgetCount = 0;
+    private int headroomCount = 0;
+
+    private volatile double frameTimeMs = 0;
+    private volatile double budgetMs = 0;
+    private volatile double uploadMsPerFrame = 0;
+    private volatile double decodeCpuCores = 0;
+    private volatile double mcediaShare = 0;
+
+    private FrameTimeController() {
+        var metrics = MetricsRegistry.getInstance();
+        metrics.gauge("render.frame_time_ms", () -> frameTimeMs);
+        metrics.gauge("render.upload_ms_per_frame", () -> uploadMsPerFrame);
+        metrics.gauge("decode.cpu_cores", () -> decodeCpuCores);
+    }
+
+    public static FrameTimeController getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 由客户端每 tick 报告当前帧率与帧率上限（上限 <= 0 或 >= 260 视为无限制）
+     */
+    public void reportFrameRate(int fps, int fpsLimit) {
+        this.fps = fps;
+        this.fpsLimit = fpsLimit;
+    }
+
+    public void recordUpload(long nanos) {
+        uploadNanos.add(nanos);
+    }
+
+    public void recordDecodeCpu(long nanos) {
+        decodeCpuNanos.add(nanos);
+    }
+
+    /**
+     * 当前线程的 CPU 时间，不支持时返回 -1
+     */
+    public static long getCurrentThreadCpuTime() {
+        if (!THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) return -1;
+        return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * @param rankedPlayers 按优先级从高到低排列的播放器
+     */
+    public void update(List<? extends IMediaPlayerInstance> rankedPlayers) {
+        long now = System.currentTimeMillis();
+        long elapsed = now - lastEvaluateTime;
+        if (elapsed < EVALUATE_INTERVAL_MS) {
+            return;
+        }
+        lastEvaluateTime = now;
+
+        int fps = Math.max(this.fps, 1);
+        int targetFps = fpsLimit <= 0 || fpsLimit >= 260 ? Configs.TARGET_FPS : Math.min(fpsLimit, Configs.TARGET_FPS);
+        double frames = fps * elapsed / 1000.0;
+
+        frameTimeMs = 1000.0 / fps;
+        budgetMs = 1000.0 / Math.max(targetFps, 1);
+        uploadMsPerFrame = uploadNanos.sumThenReset() / 1_000_000.0 / Math.max(frames, 1);
+        decodeCpuCores = decodeCpuNanos.sumThenReset() / 1_000_000.0 / elapsed;
+        mcediaShare = uploadMsPerFrame / frameTimeMs + decodeCpuCores / Runtime.getRuntime().availableProcessors();
+
+        var players = new ArrayList<MediaPlayer>();
+        for (var instance : rankedPlayers) {
+            if (!instance.isRemoved()) players.add(instance.getPlayer());
+        }
+
+        if (!Configs.FRAME_TIME_CONTROL) {
+            players.forEach(player -> player.setShedLevel(0));
+            return;
+        }
+
+        if (frameTimeMs > budgetMs * 1.1 && mcediaShare > MIN_MCEDIA_SHARE) {
+            headroomCount = 0;
+            if (++overBudgetCount >= SHED_AFTER) {
+                overBudgetCount = 0;
+                shedOneStep(players);
+            }
+        } else if (frameTimeMs < budgetMs * 0.9) {
+            overBudgetCount = 0;
+            if (++headroomCount >= RESTORE_AFTER) {
+                headroomCount = 0;
+                restoreOneStep(players);
+            }
+        } else {
+            overBudgetCount = 0;
+            headroomCount = 0;
+        }
+    }
+
+    /**
+     * 从优先级最低且仍在解码视频的播放器开始降载
+     */
+    private void shedOneStep(List<MediaPlayer> players) {
+        for (int i = players.size() - 1; i >= 0; i--) {
+            var player = players.get(i);
+            if (player.getShedLevel() < MAX_SHED_LEVEL && player.getQualityTier().isBetterThan(PlayerQualityTier.AUDIO_ONLY)) {
+                player.setShedLevel(player.getShedLevel() + 1);
+                LOGGER.info("帧时间 {}ms 超出预算 {}ms，降载等级 -> {}", String.format("%.1f", frameTimeMs), String.format("%.1f", budgetMs), player.getShedLevel());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 从优先级最高的播放器开始恢复
+     */
+    private void restoreOneStep(List<MediaPlayer> players) {
+        for (var player : players) {
+            if (player.getShedLevel() > 0) {
+                player.setShedLevel(player.getShedLevel() - 1);
+                LOGGER.info("帧时间有余量，降载等级 -> {}", player.getShedLevel());
+                return;
+            }
+        }
+    }
+
+    public double getFrameTimeMs() {
+        return frameTimeMs;
+    }
+
+    public double getBudgetMs() {
+        return budgetMs;
+    }
+
+    public double getUploadMsPerFrame() {
+        return uploadMsPerFrame;
+    }
+
+    public double getDecodeCpuCores() {
+        return decodeCpuCores;
+    }
+
+    public double getMcediaShare() {
+        return mcediaShare;
+    }
+}
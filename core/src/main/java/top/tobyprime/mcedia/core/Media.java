@@ -8,13 +8,20 @@ import top.tobyprime.mcedia.danmaku.Danmaku;
 import top.tobyprime.mcedia.danmaku.DanmakuEntity;
 import top.tobyprime.mcedia.danmaku.DanmakuScreen;
 import top.tobyprime.mcedia.decoders.DecoderConfiguration;
+import top.tobyprime.mcedia.decoders.VideoDecodeMode;
 import top.tobyprime.mcedia.decoders.VideoFrame;
 import top.tobyprime.mcedia.decoders.ffmpeg.FfmpegMediaDecoder;
 import top.tobyprime.mcedia.interfaces.*;
+import top.tobyprime.mcedia.metrics.MediaEvents;
+import top.tobyprime.mcedia.metrics.MediaMetrics;
+import top.tobyprime.mcedia.metrics.MetricsRegistry;
+import top.tobyprime.mcedia.metrics.OpenTimeline;
 
 import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 
 /**
@@ -24,10 +31,14 @@ public class Media implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(Media.class);
 
     private final IMediaDecoder decoder;
+    private final BandwidthGovernor.Channel bandwidthChannel = BandwidthGovernor.getInstance().openChannel();
     private final Thread audioThread;
     private final ArrayList<IAudioSource> audioSources = new ArrayList<>();
     private final MediaInfo mediaInfo;
     private final DanmakuScreen danmakuScreen;
+    // 打开线程绑定的时间线，用于标记首个音频缓冲与首次上传
+    private final @Nullable OpenTimeline timeline = OpenTimeline.current();
+    private final MediaMetrics metrics;
     public long lastDanmakuUpdateDurationUs = -1;
     public long lastDanmakuDurationUpdateTimeUs = -1;
     private @Nullable ITexture texture;
@@ -39,7 +50,27 @@ public class Media implements Closeable {
     // 最近上传的视频帧时间戳
     private @Nullable IVideoData currentVideoFrame;
     public Media(MediaInfo info, DecoderConfiguration config) {
-        decoder = new FfmpegMediaDecoder(info, config);
+        this(info, config, () -> false);
+    }
+
+    public Media(MediaInfo info, DecoderConfiguration config, BooleanSupplier cancelled) {
+        this(info, config, cancelled, null);
+    }
+
+    /**
+     * @param cancelled 返回 true 时中断解码器的打开与读取
+     * @param refresher 播放地址过期或失效时重新解析，解码器换用新地址继续播放
+     */
+    public Media(MediaInfo info, DecoderConfiguration config, BooleanSupplier cancelled, @Nullable Callable<@Nullable MediaInfo> refresher) {
+        metrics = MetricsRegistry.getInstance().openMedia(info.title != null ? info.title : String.valueOf(info.streamUrl));
+        try {
+            decoder = new FfmpegMediaDecoder(info, config, cancelled, refresher, bandwidthChannel, metrics);
+        } catch (RuntimeException e) {
+            bandwidthChannel.close();
+            MetricsRegistry.getInstance().closeMedia(metrics);
+            throw e;
+        }
+        metrics.setSampler(this::sampleMetrics);
 
         // 检测是否为直播流（假设duration无效或为0表示直播）
         isLiveStream = decoder.isLiveStream();
@@ -57,6 +88,22 @@ public class Media implements Closeable {
         this.decoder.setLowOverhead(lowOverhead);
     }
 
+    public void setVideoDecodeMode(VideoDecodeMode mode) {
+        this.decoder.setVideoDecodeMode(mode);
+        if (mode != VideoDecodeMode.FULL) {
+            synchronized (this) {
+                if (currentVideoFrame != null) {
+                    currentVideoFrame.close();
+                    currentVideoFrame = null;
+                }
+            }
+        }
+    }
+
+    public void setVideoScale(float scale) {
+        this.decoder.setVideoScale(scale);
+    }
+
     public @Nullable Collection<DanmakuEntity> updateAndGetDanmakus() {
         var screen = danmakuScreen;
         if (screen != null) {
@@ -76,10 +123,27 @@ public class Media implements Closeable {
         return null;
     }
 
+    public BandwidthGovernor.Channel getBandwidthChannel() {
+        return bandwidthChannel;
+    }
+
     public MediaInfo getMediaInfo() {
         return mediaInfo;
     }
 
+    public MediaMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void sampleMetrics(MediaMetrics.State state) {
+        decoder.sampleMetrics(state);
+        for (var audioSource : audioSources.toArray(IAudioSource[]::new)) {
+            if (audioSource != null) {
+                state.audioUnderruns += audioSource.getUnderrunCount();
+            }
+        }
+    }
+
     /**
      * 播放结束
      */
@@ -110,8 +174,10 @@ public class Media implements Closeable {
                         if (videoFrame == null) break;
                         // 如果视频帧的时间戳小于当前音频帧，则认为过期，消费掉
                         synchronized (this) {
-                            if (currentVideoFrame != null)
+                            if (currentVideoFrame != null) {
                                 currentVideoFrame.close();
+                                metrics.droppedVideoFrames.increment();
+                            }
                             currentVideoFrame = videoFrame;
                         }
                     }
@@ -133,6 +199,12 @@ public class Media implements Closeable {
                     if (sleepNanos > 0) {
                         Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
                     }
+                    var latenessEvent = new MediaEvents.PlaybackLateness();
+                    if (latenessEvent.isEnabled()) {
+                        latenessEvent.mediaId = metrics.id;
+                        latenessEvent.lateness = Math.max(0, System.nanoTime() - nextPlayTime);
+                        latenessEvent.commit();
+                    }
                     currFrame.close();
                 } else {
                     // 暂停时，短暂睡眠避免忙等待
@@ -212,7 +284,12 @@ public class Media implements Closeable {
             if (targetUs < 0) {
                 targetUs = 0;
             }
+            var event = new MediaEvents.Seek();
+            event.begin();
             decoder.seek(targetUs);
+            event.mediaId = metrics.id;
+            event.target = targetUs;
+            event.commit();
             lastAudioPts = targetUs;
         } catch (Exception e) {
             LOGGER.error("Seek failed", e);
@@ -248,17 +325,38 @@ public class Media implements Closeable {
         var frame = currentVideoFrame;
         currentVideoFrame = null;
         VideoFrame vf = frame.toFrame();
+        long uploadStart = System.nanoTime();
+        var event = new MediaEvents.TextureUpload();
+        event.begin();
         texture.upload(vf);
+        metrics.uploadTime.record((System.nanoTime() - uploadStart) / 1000);
+        event.mediaId = metrics.id;
+        event.width = vf.width;
+        event.height = vf.height;
+        event.commit();
+        if (lastAudioPts >= 0) {
+            metrics.setAvDrift(frame.getTimestamp() - lastAudioPts);
+        }
         frame.close();
+        if (timeline != null) {
+            timeline.mark(OpenTimeline.Phase.FIRST_UPLOAD);
+        }
     }
 
     private void uploadBuffer(IAudioData frame) {
         for (var audioSource : audioSources) {
-            audioSource.upload(frame.getMergedAudioData());
+            var data = frame.getMergedAudioData();
+            if (data != null) {
+                data.mediaId = metrics.id;
+            }
+            audioSource.upload(data);
             if (Configs.AUDIO_SOURCE_CONSUMER != null && Configs.PHYSICS){
                 Configs.AUDIO_SOURCE_CONSUMER.accept(audioSource);
             }
         }
+        if (timeline != null && !audioSources.isEmpty()) {
+            timeline.mark(OpenTimeline.Phase.FIRST_AUDIO);
+        }
     }
 
     public boolean isPlaying() {
@@ -298,6 +396,8 @@ public class Media implements Closeable {
         }
         audioSources.forEach(IAudioSource::clearBuffer);
         decoder.close();
+        bandwidthChannel.close();
+        MetricsRegistry.getInstance().closeMedia(metrics);
     }
 
     public void setDanmakuWidthPredictor(@Nullable Function<Danmaku, Float> danmakuWidthPredictor) {
@@ -8,9 +8,16 @@ import java.util.Map;
 
 public class MediaInfo {
     public String streamUrl;
+    // streamUrl 的备用镜像，播放中卡住时依次切换
+    @Nullable
+    public List<String> streamMirrors = null;
     @Nullable
     public String audioUrl;
+    @Nullable
+    public List<String> audioMirrors = null;
     public String rawUrl;
+    // 点播文件，服务器支持 Range 请求，可以多连接读取。直播与未知来源为 false
+    public boolean seekable = false;
     public String title = "Unknown";
     public String author = "Unknown";
     public String platform = "Unknown";
@@ -20,4 +27,7 @@ public class MediaInfo {
     public Map<String, String> headers = null;
     @Nullable
     public List<Danmaku> danmakus = null;
+    // DASH 视频流可切换的清晰度，按码率从低到高排列，streamUrl 为其中之一
+    @Nullable
+    public List<VideoRepresentation> videoRepresentations = null;
 }
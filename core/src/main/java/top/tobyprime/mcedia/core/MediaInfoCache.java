@@ -0,0 +1,169 @@
+package top.tobyprime.mcedia.core;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 已解析媒体信息的 LRU 缓存，按媒体本身（BV 号+分P+画质、房间号、抖音视频 ID）索引。
+ * 条目的有效期取自 CDN 签名地址中的 deadline/expires 参数，并持久化到磁盘，
+ * 重新进入服务器时在有效期内可以直接播放而不必重新请求 API
+ */
+public class MediaInfoCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MediaInfoCache.class);
+    private static final MediaInfoCache INSTANCE = new MediaInfoCache();
+    // 地址中表示过期时间（Unix 时间戳）的参数
+    private static final List<String> EXPIRY_PARAMS = List.of("deadline", "expires", "x-expires");
+    // 提前失效，避免打开过程中地址过期
+    private static final long EXPIRY_MARGIN_MS = 60_000;
+
+    private final PersistentLruCache<Entry> entries = new PersistentLruCache<>("MediaInfoCache", "媒体信息缓存", "media_info_cache.json", Entry.class,
+            entry -> entry.key, () -> Configs.MEDIA_INFO_CACHE_SIZE,
+            entry -> entry.info != null && entry.expiresAt > System.currentTimeMillis(),
+            entry -> new Entry(entry.key, entry.expiresAt, copyForDisk(entry.info)));
+
+    private MediaInfoCache() {
+    }
+
+    public static MediaInfoCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 从地址中读取签名过期时间
+     *
+     * @return 毫秒时间戳，地址不带过期参数时返回 -1
+     */
+    public static long parseUrlExpiry(@Nullable String url) {
+        if (url == null) {
+            return -1;
+        }
+        String query;
+        try {
+            query = URI.create(url).getRawQuery();
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+        if (query == null) {
+            return -1;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String name = URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8).toLowerCase();
+            if (!EXPIRY_PARAMS.contains(name)) {
+                continue;
+            }
+            try {
+                long value = Long.parseLong(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                // 部分 CDN 使用毫秒
+                return value > 100_000_000_000L ? value : value * 1000;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 媒体信息的有效期，取视频与音频地址中较早的过期时间，没有签名参数时使用默认有效期
+     */
+    public static long computeExpiry(MediaInfo info) {
+        long now = System.currentTimeMillis();
+        long expiry = Long.MAX_VALUE;
+        var urls = new ArrayList<String>();
+        urls.add(info.streamUrl);
+        urls.add(info.audioUrl);
+        if (info.videoRepresentations != null) {
+            info.videoRepresentations.forEach(representation -> urls.add(representation.url));
+        }
+        for (String url : urls) {
+            long urlExpiry = parseUrlExpiry(url);
+            if (urlExpiry > 0) {
+                expiry = Math.min(expiry, urlExpiry - EXPIRY_MARGIN_MS);
+            }
+        }
+        if (expiry == Long.MAX_VALUE) {
+            expiry = now + Configs.MEDIA_INFO_CACHE_DEFAULT_TTL_SECONDS * 1000L;
+        }
+        return expiry;
+    }
+
+    @Nullable
+    public synchronized MediaInfo get(String key) {
+        if (Configs.MEDIA_INFO_CACHE_SIZE <= 0) {
+            return null;
+        }
+        var entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        LOGGER.info("命中媒体信息缓存: {}，剩余有效期 {}s", key, (entry.expiresAt - System.currentTimeMillis()) / 1000);
+        return entry.info;
+    }
+
+    public synchronized void put(String key, MediaInfo info) {
+        if (Configs.MEDIA_INFO_CACHE_SIZE <= 0 || info.streamUrl == null) {
+            return;
+        }
+        long expiresAt = computeExpiry(info);
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        entries.put(key, new Entry(key, expiresAt, info));
+    }
+
+    public void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // 弹幕体积大且可以重新获取，cookie 不写入缓存文件
+    private static MediaInfo copyForDisk(MediaInfo info) {
+        var copy = new MediaInfo();
+        copy.streamUrl = info.streamUrl;
+        copy.streamMirrors = info.streamMirrors;
+        copy.audioUrl = info.audioUrl;
+        copy.audioMirrors = info.audioMirrors;
+        copy.rawUrl = info.rawUrl;
+        copy.seekable = info.seekable;
+        copy.title = info.title;
+        copy.author = info.author;
+        copy.platform = info.platform;
+        copy.headers = info.headers == null ? null : new HashMap<>(info.headers);
+        copy.videoRepresentations = info.videoRepresentations;
+        return copy;
+    }
+
+    private static class Entry {
+        String key;
+        long expiresAt;
+        MediaInfo info;
+
+        Entry(String key, long expiresAt, MediaInfo info) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+            this.info = info;
+        }
+    }
+}
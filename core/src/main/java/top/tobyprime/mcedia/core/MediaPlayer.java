@@ -4,13 +4,16 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
 import top.tobyprime.mcedia.danmaku.Danmaku;
 import top.tobyprime.mcedia.danmaku.DanmakuEntity;
 import top.tobyprime.mcedia.decoders.DecoderConfiguration;
+import top.tobyprime.mcedia.decoders.VideoDecodeMode;
 import top.tobyprime.mcedia.interfaces.IAudioSource;
 import top.tobyprime.mcedia.interfaces.IMediaPlay;
 import top.tobyprime.mcedia.interfaces.ITexture;
 import top.tobyprime.mcedia.media_play_resolvers.MediaPlayFactory;
+import top.tobyprime.mcedia.metrics.OpenTimeline;
 
 import java.io.Closeable;
 import java.util.ArrayList;
@@ -18,6 +21,8 @@ import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -27,8 +32,16 @@ import java.util.function.Function;
 public class MediaPlayer implements Closeable {
     public volatile PlayerStatus status;
 
-    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
-        Thread t = new Thread(r, "MediaPlayer-Async");
+    private static final AtomicInteger openThreadId = new AtomicInteger();
+    // 打开媒体（grabber 启动与探测）可能耗时数秒，多个播放器并行打开
+    private static final ExecutorService openExecutor = Executors.newFixedThreadPool(Math.max(1, Configs.MEDIA_OPEN_THREADS), r -> {
+        Thread t = new Thread(r, "MediaPlayer-Open-" + openThreadId.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    // 关闭与打开分开，避免关闭被缓慢的打开阻塞
+    private static final ExecutorService closeExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "MediaPlayer-Close");
         t.setDaemon(true);
         return t;
     });
@@ -42,7 +55,35 @@ public class MediaPlayer implements Closeable {
     @Nullable
     private Media media;
     private volatile IMediaPlay mediaPlay;
+    // 每次打开、停止或休眠都会递增，过期的打开会被中断且不会发布 Media
+    private final AtomicLong generation = new AtomicLong();
+    // 正在打开中的媒体，休眠时用于保留
+    private @Nullable MediaInfo pendingMediaInfo;
+    private @Nullable Consumer<Media> pendingAfterOpened;
+    // 当前媒体打开时的回调，休眠后唤醒时重新执行以回到同步位置
+    private @Nullable Consumer<Media> activeAfterOpened;
     private boolean lowOverhead =false;
+    // 最近一次打开的时间线
+    private volatile @Nullable OpenTimeline openTimeline;
+    private VideoDecodeMode videoDecodeMode = VideoDecodeMode.FULL;
+    private PlayerQualityTier qualityTier = PlayerQualityTier.FULL;
+    private float videoScale = 1;
+    private int shedLevel = 0;
+    private int uploadCount = 0;
+    // 由屏幕可见性决定的视频解码模式
+    private volatile VideoDecodeMode visibilityDecodeMode = VideoDecodeMode.FULL;
+    // 屏幕开始不可见的时间，-1 表示当前可见
+    private volatile long invisibleSince = -1;
+
+    // 休眠状态：释放解码器、音频源与纹理，只保留恢复播放所需的信息
+    private boolean hibernated = false;
+    private @Nullable MediaInfo hibernatedMediaInfo;
+    // 唤醒时重新执行的打开回调，为 null 时按墙钟推算位置
+    private @Nullable Consumer<Media> hibernatedAfterOpened;
+    private long hibernatedPosition;
+    private long hibernatedLength;
+    private long hibernatedAt;
+    private boolean hibernatedPlaying;
 
     private volatile DecoderConfiguration decoderConfiguration = new DecoderConfiguration(new DecoderConfiguration.Builder());
 
@@ -54,6 +95,198 @@ public class MediaPlayer implements Closeable {
         this.lowOverhead = lowOverhead;
     }
 
+    /**
+     * 由渲染端在屏幕可见性（视锥与遮挡）变化时报告，不可见超过宽限期后视频只解码关键帧，
+     * 持续不可见后完全停止视频解码只播放音频
+     */
+    public void reportVisibility(boolean visible) {
+        if (visible) {
+            invisibleSince = -1;
+        } else if (invisibleSince < 0) {
+            invisibleSince = System.currentTimeMillis();
+        }
+        updateVisibility();
+    }
+
+    /**
+     * 按不可见的时长推进解码模式，每 tick 由 {@link PlayerInstanceManagerRegistry} 调用
+     */
+    public void updateVisibility() {
+        var mode = VideoDecodeMode.FULL;
+        long since = invisibleSince;
+        if (since >= 0) {
+            long invisibleTime = System.currentTimeMillis() - since;
+            if (invisibleTime > Configs.VIDEO_DISABLE_DELAY_MS) {
+                mode = VideoDecodeMode.DISABLED;
+            } else if (invisibleTime > Configs.INVISIBLE_GRACE_MS) {
+                mode = VideoDecodeMode.KEYFRAME_ONLY;
+            }
+        }
+        if (mode != visibilityDecodeMode) {
+            visibilityDecodeMode = mode;
+            updateVideoDecodeMode();
+        }
+    }
+
+    /**
+     * 应用调度器分配的画质档位
+     */
+    public synchronized void setQualityTier(PlayerQualityTier tier) {
+        if (this.qualityTier == tier) {
+            return;
+        }
+        this.qualityTier = tier;
+        if (tier == PlayerQualityTier.HIBERNATED) {
+            hibernate();
+        } else if (hibernated) {
+            wake();
+        }
+        applyQuality();
+    }
+
+    /**
+     * 进入休眠：关闭媒体并释放音频源与纹理，保留媒体信息与播放位置
+     */
+    private synchronized void hibernate() {
+        if (hibernated) {
+            return;
+        }
+        hibernated = true;
+        status = PlayerStatus.HIBERNATED;
+        generation.incrementAndGet();
+        var preMedia = media;
+        if (preMedia != null) {
+            saveHibernatedState(preMedia, activeAfterOpened);
+            media = null;
+            activeAfterOpened = null;
+            CompletableFuture.runAsync(preMedia::close, closeExecutor);
+        } else if (pendingMediaInfo != null) {
+            // 打开中的媒体会被中断，唤醒后重新打开
+            hibernatedMediaInfo = pendingMediaInfo;
+            hibernatedAfterOpened = pendingAfterOpened;
+        }
+        pendingMediaInfo = null;
+        pendingAfterOpened = null;
+        releaseOutputs();
+        LOGGER.info("播放器进入休眠");
+    }
+
+    private synchronized void saveHibernatedState(Media media, @Nullable Consumer<Media> afterOpened) {
+        hibernatedMediaInfo = media.getMediaInfo();
+        hibernatedAfterOpened = afterOpened;
+        hibernatedPosition = media.getDuration();
+        hibernatedLength = media.getLength();
+        hibernatedAt = System.nanoTime();
+        hibernatedPlaying = media.isPlaying();
+    }
+
+    private synchronized void releaseOutputs() {
+        for (var audioSource : audioSources) {
+            audioSource.release();
+        }
+        if (texture != null) {
+            texture.release();
+        }
+    }
+
+    /**
+     * 退出休眠：不重新解析，直接打开保留的媒体并重新执行打开回调，由回调定位到同步的位置与播放状态。
+     * 没有回调时跳转到按墙钟推算的当前位置
+     */
+    private synchronized void wake() {
+        hibernated = false;
+        var mediaInfo = hibernatedMediaInfo;
+        var afterOpened = hibernatedAfterOpened;
+        hibernatedMediaInfo = null;
+        hibernatedAfterOpened = null;
+        if (mediaInfo == null) {
+            status = PlayerStatus.IDLE;
+            return;
+        }
+        status = PlayerStatus.LOADING_MEDIA;
+        LOGGER.info("播放器退出休眠");
+
+        var timeline = new OpenTimeline(mediaInfo.streamUrl);
+        timeline.mark(OpenTimeline.Phase.MEDIA_INFO);
+        openTimeline = timeline;
+        if (afterOpened != null) {
+            openMedia(mediaInfo, afterOpened, timeline);
+            return;
+        }
+
+        long position = hibernatedPosition;
+        long length = hibernatedLength;
+        boolean playing = hibernatedPlaying;
+        if (playing) {
+            position += (long) ((System.nanoTime() - hibernatedAt) / 1000 * speed);
+        }
+        if (looping && length > 0) {
+            position %= length;
+        }
+        long seekTo = position;
+        openMedia(mediaInfo, media -> {
+            // 直播没有长度，直接从最新位置开始
+            if (length > 0) {
+                media.seek(seekTo);
+            }
+            if (playing) {
+                media.play();
+            }
+        }, timeline);
+    }
+
+    public synchronized boolean isHibernated() {
+        return hibernated;
+    }
+
+    /**
+     * 帧时间控制器设置的降载等级：1 降低帧率，2 降低分辨率，3 隔帧上传
+     */
+    public synchronized void setShedLevel(int shedLevel) {
+        if (this.shedLevel == shedLevel) {
+            return;
+        }
+        this.shedLevel = shedLevel;
+        applyQuality();
+    }
+
+    public synchronized int getShedLevel() {
+        return shedLevel;
+    }
+
+    private synchronized void applyQuality() {
+        setLowOverhead(qualityTier != PlayerQualityTier.FULL || shedLevel >= 1);
+
+        float scale = qualityTier.videoScale > 0 ? qualityTier.videoScale : 1;
+        if (shedLevel >= 2) {
+            scale = Math.min(scale, 0.5f);
+        }
+        this.videoScale = scale;
+        if (media != null) {
+            media.setVideoScale(scale);
+        }
+        updateVideoDecodeMode();
+    }
+
+    public synchronized PlayerQualityTier getQualityTier() {
+        return qualityTier;
+    }
+
+    private synchronized void updateVideoDecodeMode() {
+        var mode = qualityTier == PlayerQualityTier.AUDIO_ONLY ? VideoDecodeMode.DISABLED : visibilityDecodeMode;
+        if (this.videoDecodeMode == mode) {
+            return;
+        }
+        this.videoDecodeMode = mode;
+        if (media != null) {
+            media.setVideoDecodeMode(mode);
+        }
+    }
+
+    public synchronized VideoDecodeMode getVideoDecodeMode() {
+        return videoDecodeMode;
+    }
+
     public IMediaPlay getMediaPlay() {
         return mediaPlay;
     }
@@ -122,18 +355,21 @@ public class MediaPlayer implements Closeable {
      * 关闭当前 Media
      */
     private void stopMediaInternal() {
-        Media preMedia = null;
+        Media preMedia;
         synchronized (this) {
-            if (media != null) {
-                preMedia = media;
-                media = null;
-            }
+            preMedia = media;
+            media = null;
+            activeAfterOpened = null;
         }
         if (preMedia != null) {
             preMedia.close();
         }
     }
 
+    private boolean isStale(long generation) {
+        return this.generation.get() != generation;
+    }
+
     public synchronized @Nullable Media getMedia() {
         return media;
     }
@@ -142,47 +378,123 @@ public class MediaPlayer implements Closeable {
      * 异步关闭 Media 以及 Media Play
      */
     public void stop() {
-        CompletableFuture.runAsync(this::stopMediaInternal, executor).thenAccept(x -> mediaPlay.close());
+        synchronized (this) {
+            generation.incrementAndGet();
+            hibernatedMediaInfo = null;
+            hibernatedAfterOpened = null;
+            pendingMediaInfo = null;
+            pendingAfterOpened = null;
+        }
+        var mediaPlay = this.mediaPlay;
+        CompletableFuture.runAsync(this::stopMediaInternal, closeExecutor).thenAccept(x -> {
+            if (mediaPlay != null) mediaPlay.close();
+        });
     }
 
     /**
-     * 异步打开（会先关闭当前媒体）
+     * 异步打开（会先关闭当前媒体），经过 {@link OpenAdmissionController} 排队
      */
-    private void openMedia(@NotNull MediaInfo mediaInfo, Consumer<Media> afterOpened) {
-        CompletableFuture.runAsync(() -> {
+    private void openMedia(@NotNull MediaInfo mediaInfo, Consumer<Media> afterOpened, OpenTimeline timeline) {
+        long generation;
+        Media preMedia;
+        synchronized (this) {
+            generation = this.generation.incrementAndGet();
+            if (hibernated) {
+                // 休眠中解析完成的媒体等唤醒后再打开
+                hibernatedMediaInfo = mediaInfo;
+                hibernatedAfterOpened = afterOpened;
+                return;
+            }
+            pendingMediaInfo = mediaInfo;
+            pendingAfterOpened = afterOpened;
+            preMedia = media;
+            media = null;
+            activeAfterOpened = null;
+        }
+        if (preMedia != null) {
+            CompletableFuture.runAsync(preMedia::close, closeExecutor);
+        }
+
+        long queuedAt = System.nanoTime();
+        OpenAdmissionController.getInstance().enqueue(this, () -> isStale(generation), () -> CompletableFuture.runAsync(() -> {
+            if (isStale(generation)) {
+                return;
+            }
+            long startAt = System.nanoTime();
             LOGGER.info("读取: {}", mediaInfo.streamUrl);
-            var media = openMediaInternal(mediaInfo);
+            timeline.mark(OpenTimeline.Phase.OPEN_START);
+            var previous = OpenTimeline.bind(timeline);
+            Media media;
+            try {
+                media = openMediaInternal(mediaInfo, generation);
+            } finally {
+                OpenTimeline.bind(previous);
+            }
+            if (media == null) {
+                LOGGER.info("打开 {} 已被取代，丢弃结果", mediaInfo.streamUrl);
+                return;
+            }
+            long openedAt = System.nanoTime();
+            LOGGER.info("打开 {} 耗时 {}ms（排队 {}ms）", mediaInfo.streamUrl, (openedAt - queuedAt) / 1_000_000, (startAt - queuedAt) / 1_000_000);
             if (afterOpened != null)
                 afterOpened.accept(media);
-            this.status = PlayerStatus.PLAYING;
-        }, executor).exceptionally(
+            if (!isStale(generation))
+                this.status = PlayerStatus.PLAYING;
+        }, openExecutor).exceptionally(
                 e -> {
+                    if (isStale(generation)) {
+                        LOGGER.info("打开 {} 已被取消", mediaInfo.streamUrl);
+                        return null;
+                    }
                     this.status = PlayerStatus.ERROR;
                     LOGGER.error("打开 {} 失败", mediaInfo.streamUrl, e);
                     return null;
                 }
-        );
+        ));
     }
 
     public void open(IMediaPlay mediaPlay, Consumer<Media> afterOpened) {
+        open(mediaPlay, afterOpened, new OpenTimeline(String.valueOf(mediaPlay)));
+    }
+
+    private void open(IMediaPlay mediaPlay, Consumer<Media> afterOpened, OpenTimeline timeline) {
+        openTimeline = timeline;
+        synchronized (this) {
+            hibernatedMediaInfo = null;
+            hibernatedAfterOpened = null;
+        }
         this.mediaPlay = mediaPlay;
-        this.status = PlayerStatus.LOADING_MEDIA_INFO;
+        this.status = hibernated ? PlayerStatus.HIBERNATED : PlayerStatus.LOADING_MEDIA_INFO;
 
         mediaPlay.registerOnMediaInfoUpdatedEventAndCallOnce(mediaInfo -> {
             if (this.mediaPlay != mediaPlay) {
                 return;
             }
-            this.status = PlayerStatus.LOADING_MEDIA;
+            if (!isHibernated()) {
+                this.status = PlayerStatus.LOADING_MEDIA;
+            }
 
             if (mediaInfo != null) {
-                openMedia(mediaInfo, afterOpened);
+                // 之后的媒体信息更新（登录、切换清晰度）从获取到地址开始重新计时
+                var current = openTimeline;
+                if (current == null || current.isMarked(OpenTimeline.Phase.MEDIA_INFO)) {
+                    current = new OpenTimeline(mediaInfo.streamUrl);
+                    openTimeline = current;
+                }
+                current.mark(OpenTimeline.Phase.MEDIA_INFO);
+                openMedia(mediaInfo, afterOpened, current);
             }
         });
     }
 
     public synchronized void uploadVideo() {
         if (media != null) {
+            if (shedLevel >= 3 && (uploadCount++ & 1) == 1) {
+                return;
+            }
+            long start = System.nanoTime();
             media.uploadVideo();
+            FrameTimeController.getInstance().recordUpload(System.nanoTime() - start);
         }
     }
 
@@ -210,21 +522,43 @@ public class MediaPlayer implements Closeable {
         }
     }
 
-    private Media openMediaInternal(@NotNull MediaInfo inputMedia) {
-        stopMediaInternal();
-        var newMedia = new Media(inputMedia, decoderConfiguration);
+    /**
+     * @return 打开的媒体，期间被新的打开、停止或休眠取代时返回 null
+     */
+    private @Nullable Media openMediaInternal(@NotNull MediaInfo inputMedia, long generation) {
+        var play = mediaPlay;
+        var newMedia = new Media(inputMedia, decoderConfiguration, () -> isStale(generation), play == null ? null : play::refreshMediaInfo);
 
-        newMedia.bindTexture(texture);
-        for (var audioSource : audioSources) {
-            newMedia.bindAudioSource(audioSource);
-        }
+        Media preMedia = null;
+        boolean published = false;
         synchronized (this) {
-            media = newMedia;
+            if (!isStale(generation)) {
+                newMedia.bindTexture(texture);
+                for (var audioSource : audioSources) {
+                    newMedia.bindAudioSource(audioSource);
+                }
+                // 在发布的同步块内应用设置，避免与 setSpeed 等并发修改以及 stop() 清空 media 产生竞争
+                newMedia.setSpeed(speed);
+                newMedia.setLooping(looping);
+                newMedia.setDanmakuWidthPredictor(danmakuWidthPredictor);
+                newMedia.setLowOverhead(lowOverhead);
+                newMedia.setVideoDecodeMode(getVideoDecodeMode());
+                newMedia.setVideoScale(videoScale);
+                preMedia = media;
+                media = newMedia;
+                activeAfterOpened = pendingAfterOpened;
+                pendingMediaInfo = null;
+                pendingAfterOpened = null;
+                published = true;
+            }
+        }
+        if (preMedia != null) {
+            preMedia.close();
+        }
+        if (!published) {
+            newMedia.close();
+            return null;
         }
-        media.setSpeed(speed);
-        media.setLooping(looping);
-        media.setDanmakuWidthPredictor(danmakuWidthPredictor);
-        media.setLowOverhead(lowOverhead);
         return newMedia;
     }
 
@@ -261,11 +595,26 @@ public class MediaPlayer implements Closeable {
     }
 
     public IMediaPlay getMediaPlayAndOpen(String url, Consumer<Media> afterOpened) {
-        var mediaPlay = MediaPlayFactory.createMediaPlay(url);
-        open(mediaPlay, afterOpened);
+        // 解析在创建 MediaPlay 时开始，期间的 HTTP 请求记录到这次打开的时间线中
+        var timeline = new OpenTimeline(url);
+        var previous = OpenTimeline.bind(timeline);
+        IMediaPlay mediaPlay;
+        try {
+            mediaPlay = MediaPlayFactory.createMediaPlay(url);
+        } finally {
+            OpenTimeline.bind(previous);
+        }
+        open(mediaPlay, afterOpened, timeline);
         return mediaPlay;
     }
 
+    /**
+     * 最近一次打开的时间线，没有打开过时为 null
+     */
+    public @Nullable OpenTimeline getOpenTimeline() {
+        return openTimeline;
+    }
+
     public synchronized float getProgress() {
         if (media != null) {
             if (media.getLength() <= 0) {
@@ -0,0 +1,124 @@
+package top.tobyprime.mcedia.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.interfaces.IMediaPlayerInstance;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 媒体打开的准入控制，大量播放器同时加载时按优先级排队，限制同时打开的数量并逐个放行
+ */
+public class OpenAdmissionController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OpenAdmissionController.class);
+    private static final OpenAdmissionController INSTANCE = new OpenAdmissionController();
+
+    private final List<Ticket> pending = new ArrayList<>();
+    // 播放器在调度器排序中的位置，越小越优先
+    private Map<MediaPlayer, Integer> ranks = new HashMap<>();
+    private int running = 0;
+    private long lastAdmitTime = 0;
+
+    private OpenAdmissionController() {
+    }
+
+    public static OpenAdmissionController getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 排队等待打开
+     *
+     * @param cancelled 返回 true 时取消排队
+     * @param open      放行后执行，返回的 future 完成时释放名额
+     */
+    public synchronized void enqueue(MediaPlayer player, BooleanSupplier cancelled, Supplier<CompletableFuture<?>> open) {
+        pending.add(new Ticket(player, cancelled, open, System.currentTimeMillis()));
+        admit();
+    }
+
+    /**
+     * 每 tick 由 {@link PlayerInstanceManagerRegistry} 调用
+     *
+     * @param rankedPlayers 按优先级从高到低排列的播放器
+     */
+    public synchronized void update(List<? extends IMediaPlayerInstance> rankedPlayers) {
+        var ranks = new HashMap<MediaPlayer, Integer>();
+        for (int i = 0; i < rankedPlayers.size(); i++) {
+            var instance = rankedPlayers.get(i);
+            if (!instance.isRemoved()) {
+                ranks.putIfAbsent(instance.getPlayer(), i);
+            }
+        }
+        this.ranks = ranks;
+        admit();
+    }
+
+    private void admit() {
+        pending.removeIf(ticket -> {
+            if (ticket.cancelled.getAsBoolean()) {
+                LOGGER.info("播放器已移除或被取代，取消排队中的打开");
+                return true;
+            }
+            return false;
+        });
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        while (!pending.isEmpty() && running < Math.max(1, Configs.MAX_CONCURRENT_OPENS)) {
+            // 已有打开进行中时逐个放行，避免瞬间占满网络与 CPU
+            if (running > 0 && now - lastAdmitTime < Configs.OPEN_RAMP_INTERVAL_MS) {
+                return;
+            }
+            var ticket = pending.stream().min(Comparator
+                    .comparingInt((Ticket t) -> ranks.getOrDefault(t.player, Integer.MAX_VALUE))
+                    .thenComparingLong(t -> t.enqueueTime)).orElseThrow();
+            pending.remove(ticket);
+            running++;
+            lastAdmitTime = now;
+            if (pending.size() > 0) {
+                LOGGER.info("放行打开，排队 {}ms，剩余 {} 个", now - ticket.enqueueTime, pending.size());
+            }
+            start(ticket);
+        }
+    }
+
+    private void start(Ticket ticket) {
+        CompletableFuture<?> future;
+        try {
+            future = ticket.open.get();
+        } catch (Exception e) {
+            LOGGER.error("打开媒体失败", e);
+            running--;
+            return;
+        }
+        future.whenComplete((result, e) -> onFinished());
+    }
+
+    private synchronized void onFinished() {
+        running--;
+        admit();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    private record Ticket(MediaPlayer player, BooleanSupplier cancelled, Supplier<CompletableFuture<?>> open,
+                          long enqueueTime) {
+    }
+}
@@ -0,0 +1,174 @@
+package top.tobyprime.mcedia.core;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 持久化到 ~/.mcedia 的 LRU 缓存：首次访问时从磁盘载入，修改后在后台合并写入，先写临时文件再原子替换
+ */
+public class PersistentLruCache<E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistentLruCache.class);
+
+    private final String description;
+    private final Path path;
+    private final Class<E> entryClass;
+    private final Function<E, @Nullable String> keyOf;
+    private final IntSupplier capacity;
+    private final Predicate<E> valid;
+    private final UnaryOperator<E> toDisk;
+
+    private final Gson gson = new Gson();
+    private final LinkedHashMap<String, E> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ExecutorService saveExecutor;
+    private final AtomicBoolean saveScheduled = new AtomicBoolean(false);
+    private boolean loaded = false;
+
+    /**
+     * @param name        保存线程的名称前缀
+     * @param description 日志中的名称
+     * @param fileName    ~/.mcedia 下的文件名
+     * @param keyOf       从条目中取出索引，载入时用于重建索引
+     * @param capacity    最大条目数，可以随配置变化
+     * @param valid       载入与整理时丢弃不满足的条目（过期、内容缺失）
+     * @param toDisk      写入磁盘前的副本，用于去掉不需要保存的字段
+     */
+    public PersistentLruCache(String name, String description, String fileName, Class<E> entryClass, Function<E, @Nullable String> keyOf,
+                              IntSupplier capacity, Predicate<E> valid, UnaryOperator<E> toDisk) {
+        this.description = description;
+        this.path = Path.of(System.getProperty("user.home"), ".mcedia", fileName);
+        this.entryClass = entryClass;
+        this.keyOf = keyOf;
+        this.capacity = capacity;
+        this.valid = valid;
+        this.toDisk = toDisk;
+        this.saveExecutor = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, name + "-Save");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized @Nullable E get(String key) {
+        ensureLoaded();
+        return entries.get(key);
+    }
+
+    public synchronized void put(String key, E entry) {
+        ensureLoaded();
+        entries.put(key, entry);
+        trim();
+        scheduleSave();
+    }
+
+    /**
+     * @return 是否存在并已移除
+     */
+    public synchronized boolean remove(String key) {
+        ensureLoaded();
+        if (entries.remove(key) == null) {
+            return false;
+        }
+        scheduleSave();
+        return true;
+    }
+
+    public synchronized void clear() {
+        ensureLoaded();
+        entries.clear();
+        scheduleSave();
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    private void trim() {
+        entries.values().removeIf(entry -> !valid.test(entry));
+        var iterator = entries.entrySet().iterator();
+        while (entries.size() > capacity.getAsInt() && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            List<E> saved = gson.fromJson(Files.readString(path), TypeToken.getParameterized(List.class, entryClass).getType());
+            if (saved == null) {
+                return;
+            }
+            for (var entry : saved) {
+                if (entry == null) {
+                    continue;
+                }
+                var key = keyOf.apply(entry);
+                if (key != null) {
+                    entries.put(key, entry);
+                }
+            }
+            trim();
+            LOGGER.info("从磁盘载入 {} 条{}", entries.size(), description);
+        } catch (Exception e) {
+            LOGGER.warn("读取{}失败", description, e);
+        }
+    }
+
+    /**
+     * 等待已安排的保存完成
+     */
+    void awaitSave() throws InterruptedException, ExecutionException {
+        saveExecutor.submit(() -> {
+        }).get();
+    }
+
+    private void scheduleSave() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            saveExecutor.execute(this::save);
+        }
+    }
+
+    private void save() {
+        saveScheduled.set(false);
+        var saved = new ArrayList<E>();
+        synchronized (this) {
+            // 按访问顺序写入，载入后 LRU 顺序不变
+            for (var entry : entries.values()) {
+                saved.add(toDisk.apply(entry));
+            }
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            var temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(temp, gson.toJson(saved));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            LOGGER.warn("保存{}失败", description, e);
+        }
+    }
+}
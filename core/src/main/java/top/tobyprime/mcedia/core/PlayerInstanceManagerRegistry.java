@@ -1,15 +1,17 @@
 package top.tobyprime.mcedia.core;
 
 import org.jetbrains.annotations.Nullable;
-import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.decoders.ffmpeg.CodecBenchmark;
 import top.tobyprime.mcedia.interfaces.IMediaPlayerInstance;
 import top.tobyprime.mcedia.interfaces.IPlayerInstanceManager;
+import top.tobyprime.mcedia.metrics.MetricsRegistry;
 
 import java.util.*;
 
 public class PlayerInstanceManagerRegistry {
     private final static PlayerInstanceManagerRegistry instance = new PlayerInstanceManagerRegistry();
     private final List<IPlayerInstanceManager> managers = new ArrayList<>();
+    private final PlayerQualityScheduler scheduler = new PlayerQualityScheduler();
 
     public static PlayerInstanceManagerRegistry getInstance() {
         return instance;
@@ -46,27 +48,22 @@ public class PlayerInstanceManagerRegistry {
 
     public void update() {
         var players = getPlayers();
-        players.sort(Comparator.comparingDouble(IMediaPlayerInstance::getDistance));
-
-        int playerCount = 0;
-        int nonLowOverhead = 0;
-
+        players.removeIf(IMediaPlayerInstance::isRemoved);
         for (var player : players) {
-            if (player.isRemoved())
-                continue;
-
-            if (playerCount >= Configs.MAX_PLAYER_COUNT){
-                player.remove();
-            }
-
-            playerCount++;
-
-            if (nonLowOverhead < Configs.MAX_NON_LOW_OVERHEAD_PLAYER_COUNT) {
-                player.getPlayer().setLowOverhead(false);
-                nonLowOverhead++;
-                continue;
+            player.getPlayer().updateVisibility();
+        }
+        var ranked = scheduler.schedule(players);
+        OpenAdmissionController.getInstance().update(ranked);
+        FrameTimeController.getInstance().update(ranked);
+        BandwidthGovernor.getInstance().update(ranked);
+        MetricsRegistry.getInstance().update();
+
+        float decodeLoad = 0;
+        for (var player : ranked) {
+            if (player.getPlayer().getMedia() != null) {
+                decodeLoad += player.getPlayer().getQualityTier().cost;
             }
-            player.getPlayer().setLowOverhead(true);
         }
+        CodecBenchmark.getInstance().setActiveDecodeLoad(decodeLoad);
     }
 }
@@ -0,0 +1,179 @@
+package top.tobyprime.mcedia.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.interfaces.IMediaPlayerInstance;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 根据距离、注视、屏幕大小以及全局 CPU/内存预算为每个播放器分配画质档位
+ */
+public class PlayerQualityScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlayerQualityScheduler.class);
+
+    // 档位需要稳定这么久才会切换，避免来回跳动
+    private static final long UPGRADE_DELAY_MS = 3000;
+    private static final long DOWNGRADE_DELAY_MS = 500;
+    // 已处于较高档位的播放器在排序时获得的加成
+    private static final double STICKINESS = 1.25;
+    private static final double TARGETING_BOOST = 4;
+    private static final long DEFAULT_PIXELS = 1920L * 1080;
+
+    private final Map<MediaPlayer, TierState> states = new WeakHashMap<>();
+
+    /**
+     * @return 按优先级从高到低排列的播放器
+     */
+    public List<IMediaPlayerInstance> schedule(List<? extends IMediaPlayerInstance> players) {
+        long now = System.currentTimeMillis();
+
+        var ranked = new ArrayList<IMediaPlayerInstance>(players);
+        var priorities = new HashMap<IMediaPlayerInstance, Double>();
+        ranked.forEach(player -> priorities.put(player, getPriority(player)));
+        ranked.sort(Comparator.comparingDouble((IMediaPlayerInstance player) -> priorities.get(player)).reversed());
+
+        double cpuBudget = Configs.DECODE_BUDGET;
+        long memoryBudget = Configs.VIDEO_MEMORY_BUDGET_MB * 1024L * 1024L;
+        int active = 0;
+        int full = 0;
+
+        for (var instance : ranked) {
+            var player = instance.getPlayer();
+            var tier = PlayerQualityTier.HIBERNATED;
+
+            if (active < Configs.MAX_PLAYER_COUNT && instance.getDistance() <= Configs.HIBERNATE_DISTANCE) {
+                tier = full < Configs.MAX_NON_LOW_OVERHEAD_PLAYER_COUNT ? PlayerQualityTier.FULL : PlayerQualityTier.REDUCED_FPS;
+                // 优先级最高的播放器至少保留降低分辨率的画面，允许超出预算
+                var floor = active == 0 ? PlayerQualityTier.REDUCED_RESOLUTION : PlayerQualityTier.AUDIO_ONLY;
+                while (tier != floor && (getCpuCost(player, tier) > cpuBudget || getMemoryCost(player, tier) > memoryBudget)) {
+                    tier = tier.lower();
+                }
+            }
+
+            tier = applyHysteresis(player, tier, now);
+
+            if (tier != PlayerQualityTier.HIBERNATED) {
+                cpuBudget -= getCpuCost(player, tier);
+                memoryBudget -= getMemoryCost(player, tier);
+                active++;
+            }
+            if (tier == PlayerQualityTier.FULL) {
+                full++;
+            }
+
+            player.setQualityTier(tier);
+        }
+        return ranked;
+    }
+
+    private PlayerQualityTier applyHysteresis(MediaPlayer player, PlayerQualityTier desired, long now) {
+        var state = states.get(player);
+        if (state == null) {
+            states.put(player, new TierState(desired, now));
+            return desired;
+        }
+
+        if (desired == state.current) {
+            state.pending = desired;
+            return desired;
+        }
+
+        if (desired != state.pending) {
+            state.pending = desired;
+            state.pendingSince = now;
+        }
+
+        long delay = desired.isBetterThan(state.current) ? UPGRADE_DELAY_MS : DOWNGRADE_DELAY_MS;
+        if (now - state.pendingSince >= delay) {
+            LOGGER.info("播放器画质档位 {} -> {}", state.current, desired);
+            state.current = desired;
+        }
+        return state.current;
+    }
+
+    /**
+     * 优先级约等于屏幕在视野中的大小，注视中的播放器优先
+     */
+    private double getPriority(IMediaPlayerInstance instance) {
+        double distance = Math.max(instance.getDistance(), 1);
+        double priority = Math.max(instance.getScreenSize(), 0.1) / distance;
+
+        if (instance.isTargeting() >= 0) {
+            priority *= TARGETING_BOOST;
+        }
+
+        var state = states.get(instance.getPlayer());
+        if (state != null && state.current.isBetterThan(PlayerQualityTier.REDUCED_FPS)) {
+            priority *= STICKINESS;
+        }
+        return priority;
+    }
+
+    private static long getSourcePixels(MediaPlayer player) {
+        var media = player.getMedia();
+        if (media == null || media.getWidth() <= 0 || media.getHeight() <= 0) {
+            return DEFAULT_PIXELS;
+        }
+        return (long) media.getWidth() * media.getHeight();
+    }
+
+    /**
+     * 该档位下解码器输出的每帧像素数，与解码器缩放时的取整方式一致
+     */
+    private static long getOutputPixels(MediaPlayer player, PlayerQualityTier tier) {
+        var media = player.getMedia();
+        if (tier.videoScale <= 0) {
+            return 0;
+        }
+        if (media == null || media.getWidth() <= 0 || media.getHeight() <= 0) {
+            return (long) (DEFAULT_PIXELS * tier.videoScale * tier.videoScale);
+        }
+        if (tier.videoScale >= 1) {
+            return getSourcePixels(player);
+        }
+        long width = Math.max(2, Math.round(media.getWidth() * tier.videoScale) & ~1);
+        long height = Math.max(2, Math.round(media.getHeight() * tier.videoScale) & ~1);
+        return width * height;
+    }
+
+    /**
+     * CPU 开销，以 1080p 完整解码为 1。解码按源尺寸计算，缩放、转换与上传按输出尺寸计算，各占一半
+     */
+    private static double getCpuCost(MediaPlayer player, PlayerQualityTier tier) {
+        if (tier.videoScale <= 0) {
+            return tier.cost;
+        }
+        return (getSourcePixels(player) + getOutputPixels(player, tier)) / 2.0 / DEFAULT_PIXELS * tier.cost;
+    }
+
+    /**
+     * 视频队列可能占用的内存，按输出的 RGBA 帧计算
+     */
+    private static long getMemoryCost(MediaPlayer player, PlayerQualityTier tier) {
+        long frameBytes = getOutputPixels(player, tier) * 4;
+        return switch (tier) {
+            case FULL -> frameBytes * Configs.DECODER_MAX_VIDEO_FRAMES;
+            case REDUCED_FPS, REDUCED_RESOLUTION -> frameBytes * Configs.DECODER_LOW_OVERHEAD_VIDEO_FRAMES;
+            case AUDIO_ONLY, HIBERNATED -> 0;
+        };
+    }
+
+    private static class TierState {
+        PlayerQualityTier current;
+        PlayerQualityTier pending;
+        long pendingSince;
+
+        TierState(PlayerQualityTier tier, long now) {
+            this.current = tier;
+            this.pending = tier;
+            this.pendingSince = now;
+        }
+    }
+}
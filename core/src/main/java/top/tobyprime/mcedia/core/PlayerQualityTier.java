@@ -0,0 +1,45 @@
+package top.tobyprime.mcedia.core;
+
+/**
+ * 播放器画质档位，由 {@link PlayerQualityScheduler} 分配，按从高到低排列
+ */
+public enum PlayerQualityTier {
+    /**
+     * 完整帧率与分辨率
+     */
+    FULL(1.0f, 1.0f),
+    /**
+     * 降低帧率（低开销模式）
+     */
+    REDUCED_FPS(0.7f, 1.0f),
+    /**
+     * 降低帧率且降低输出分辨率
+     */
+    REDUCED_RESOLUTION(0.6f, 0.5f),
+    /**
+     * 只播放音频
+     */
+    AUDIO_ONLY(0.05f, 0f),
+    /**
+     * 休眠，释放解码器、音频源与纹理，保留媒体信息以便快速恢复
+     */
+    HIBERNATED(0f, 0f);
+
+    // 相对完整解码的 CPU 开销
+    public final float cost;
+    // 视频输出缩放比例
+    public final float videoScale;
+
+    PlayerQualityTier(float cost, float videoScale) {
+        this.cost = cost;
+        this.videoScale = videoScale;
+    }
+
+    public PlayerQualityTier lower() {
+        return this == HIBERNATED ? HIBERNATED : values()[ordinal() + 1];
+    }
+
+    public boolean isBetterThan(PlayerQualityTier other) {
+        return ordinal() < other.ordinal();
+    }
+}
@@ -6,4 +6,5 @@ public enum PlayerStatus {
     LOADING_MEDIA,
     PLAYING,
     ERROR,
+    HIBERNATED,
 }
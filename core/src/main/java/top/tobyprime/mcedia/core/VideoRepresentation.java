@@ -0,0 +1,27 @@
+package top.tobyprime.mcedia.core;
+
+import java.util.List;
+
+/**
+ * DASH 中同一视频的一种清晰度
+ */
+public class VideoRepresentation {
+    public String url;
+    // 备用镜像
+    public List<String> backupUrls = List.of();
+    public int qualityId;
+    public String description = "Unknown";
+    // 码率 (bit/s)
+    public long bandwidth;
+    public int width;
+    public int height;
+
+    public long getPixels() {
+        return (long) Math.max(1, width) * Math.max(1, height);
+    }
+
+    @Override
+    public String toString() {
+        return description + " (" + width + "x" + height + ", " + bandwidth / 1000 + "kbps)";
+    }
+}
@@ -0,0 +1,151 @@
+package top.tobyprime.mcedia.decoders;
+
+import top.tobyprime.mcedia.core.VideoRepresentation;
+
+import java.util.List;
+
+/**
+ * 自适应码率：根据视频流的下载速度与解码速度选择 DASH 清晰度，除 getter 外只在解码线程中使用
+ */
+public class AbrController {
+    // 每个采样窗口的时长
+    private static final long SAMPLE_WINDOW_NS = 2_000_000_000L;
+    // 两次切换的最小间隔，避免来回切换
+    private static final long SWITCH_INTERVAL_MS = 8000;
+    private static final double EWMA_ALPHA = 0.3;
+    // 下载速度低于当前码率 / 该值时降级
+    private static final double DOWN_THROUGHPUT_FACTOR = 1.2;
+    // 下载速度高于目标码率 / 该值时升级
+    private static final double UP_THROUGHPUT_FACTOR = 0.6;
+    // 解码速度（媒体时长 / CPU 时长）低于该值时降级
+    private static final double DOWN_DECODE_SPEED = 1.1;
+    // 按像素数换算后目标清晰度的解码速度高于该值时升级
+    private static final double UP_DECODE_SPEED = 1.5;
+
+    private final List<VideoRepresentation> representations;
+    private volatile int current;
+
+    private long windowStart = System.nanoTime();
+    private long windowBytes;
+    private long windowReadNanos;
+    private long windowCpuNanos;
+    private long windowMediaUs;
+
+    // bit/s
+    private volatile double throughput = -1;
+    private volatile double decodeSpeed = -1;
+    private long lastSwitchTime = System.currentTimeMillis();
+
+    public AbrController(List<VideoRepresentation> representations, String currentUrl) {
+        this.representations = representations;
+        int index = 0;
+        for (int i = 0; i < representations.size(); i++) {
+            if (representations.get(i).url.equals(currentUrl)) {
+                index = i;
+            }
+        }
+        this.current = index;
+    }
+
+    /**
+     * 记录一次读取
+     *
+     * @param bytes     读取的字节数
+     * @param readNanos 读取与解码花费的时间
+     * @param cpuNanos  解码线程花费的 CPU 时间，不支持时为负数
+     * @param mediaUs   推进的媒体时长
+     */
+    public void record(long bytes, long readNanos, long cpuNanos, long mediaUs) {
+        windowBytes += Math.max(0, bytes);
+        windowReadNanos += Math.max(0, readNanos);
+        windowCpuNanos += cpuNanos < 0 ? Math.max(0, readNanos) : cpuNanos;
+        windowMediaUs += Math.max(0, mediaUs);
+
+        long now = System.nanoTime();
+        if (now - windowStart < SAMPLE_WINDOW_NS || windowReadNanos <= 0 || windowMediaUs <= 0) {
+            return;
+        }
+        double sampleThroughput = windowBytes * 8 * 1e9 / windowReadNanos;
+        double sampleDecodeSpeed = windowMediaUs * 1000.0 / Math.max(1, windowCpuNanos);
+        throughput = throughput < 0 ? sampleThroughput : throughput + EWMA_ALPHA * (sampleThroughput - throughput);
+        decodeSpeed = decodeSpeed < 0 ? sampleDecodeSpeed : decodeSpeed + EWMA_ALPHA * (sampleDecodeSpeed - decodeSpeed);
+
+        windowStart = now;
+        windowBytes = 0;
+        windowReadNanos = 0;
+        windowCpuNanos = 0;
+        windowMediaUs = 0;
+    }
+
+    /**
+     * @return 期望的清晰度序号，与 {@link #getCurrent()} 相同时不需要切换
+     */
+    public int select() {
+        if (throughput < 0 || System.currentTimeMillis() - lastSwitchTime < SWITCH_INTERVAL_MS) {
+            return current;
+        }
+        var representation = representations.get(current);
+
+        if (current > 0 && (!canDownload(representation, DOWN_THROUGHPUT_FACTOR) || decodeSpeed < DOWN_DECODE_SPEED)) {
+            for (int i = current - 1; i > 0; i--) {
+                if (canDownload(representations.get(i), DOWN_THROUGHPUT_FACTOR) && canDecode(representations.get(i), DOWN_DECODE_SPEED)) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+
+        if (current + 1 < representations.size()) {
+            var next = representations.get(current + 1);
+            if (canDownload(next, 1 / UP_THROUGHPUT_FACTOR) && canDecode(next, UP_DECODE_SPEED)) {
+                return current + 1;
+            }
+        }
+        return current;
+    }
+
+    private boolean canDownload(VideoRepresentation representation, double factor) {
+        return representation.bandwidth <= 0 || throughput >= representation.bandwidth * factor;
+    }
+
+    private boolean canDecode(VideoRepresentation representation, double minSpeed) {
+        double scale = (double) representations.get(current).getPixels() / representation.getPixels();
+        return decodeSpeed * scale >= minSpeed;
+    }
+
+    public void onSwitched(int index) {
+        current = index;
+        onSwitchFailed();
+    }
+
+    /**
+     * 切换失败时同样等待一个间隔再尝试
+     */
+    public void onSwitchFailed() {
+        lastSwitchTime = System.currentTimeMillis();
+        windowStart = System.nanoTime();
+        windowBytes = 0;
+        windowReadNanos = 0;
+        windowCpuNanos = 0;
+        windowMediaUs = 0;
+    }
+
+    public int getCurrent() {
+        return current;
+    }
+
+    public VideoRepresentation getRepresentation(int index) {
+        return representations.get(index);
+    }
+
+    /**
+     * 估算的下载速度 (bit/s)
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public double getDecodeSpeed() {
+        return decodeSpeed;
+    }
+}
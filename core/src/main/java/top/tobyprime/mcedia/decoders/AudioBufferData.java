@@ -9,6 +9,8 @@ public class AudioBufferData implements Closeable {
     public final Buffer pcm;  // PCM 数据，16-bit signed, little-endian
     public final int sampleRate;
     public final int channels;
+    // 所属媒体的 id，用于 JFR 事件
+    public int mediaId = 0;
     private boolean released;
 
     public AudioBufferData(Buffer pcm, int sampleRate, int channels) {
@@ -0,0 +1,19 @@
+package top.tobyprime.mcedia.decoders;
+
+/**
+ * 视频解码模式，可在播放过程中切换
+ */
+public enum VideoDecodeMode {
+    /**
+     * 完整解码并转换为 RGBA
+     */
+    FULL,
+    /**
+     * 只解码关键帧且不做转换，不产生视频帧，用于屏幕刚变为不可见时，恢复时无需重新定位
+     */
+    KEYFRAME_ONLY,
+    /**
+     * 在解复用阶段丢弃全部视频包，只解码音频，用于听得到但看不到的播放器
+     */
+    DISABLED
+}
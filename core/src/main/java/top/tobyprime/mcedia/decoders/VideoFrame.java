@@ -1,6 +1,7 @@
 package top.tobyprime.mcedia.decoders;
 
 import org.lwjgl.system.MemoryUtil;
+import top.tobyprime.mcedia.metrics.MetricsRegistry;
 
 import java.io.Closeable;
 import java.nio.ByteBuffer;
@@ -16,6 +17,7 @@ public class VideoFrame implements Closeable {
         this.width = width;
         this.height = height;
         this.released = false;
+        MetricsRegistry.getInstance().frameBytes.add(buffer.capacity());
     }
 
     @Override
@@ -23,6 +25,7 @@ public class VideoFrame implements Closeable {
         if (!released) {
             MemoryUtil.memFree(buffer);
             released = true;
+            MetricsRegistry.getInstance().frameBytes.add(-buffer.capacity());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,293 @@
+package top.tobyprime.mcedia.decoders.ffmpeg;
+
+import com.google.gson.Gson;
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 测量本机各编码格式在不同分辨率下的软件解码帧率，用于选择能实时解码的视频流。
+ * 测试片段在本地用 FFmpeg 编码生成，结果按机器缓存到磁盘
+ */
+public class CodecBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CodecBenchmark.class);
+    private static final CodecBenchmark INSTANCE = new CodecBenchmark();
+    private static final Path RESULT_PATH = Path.of(System.getProperty("user.home"), ".mcedia", "codec_benchmark.json");
+    // 修改测试方法后递增，使旧结果失效
+    private static final int VERSION = 1;
+    private static final int[][] RESOLUTIONS = {{1280, 720}, {1920, 1080}, {3840, 2160}};
+    private static final int CLIP_FRAMES = 24;
+    private static final int DECODE_PASSES = 3;
+    // 实时解码需要的余量
+    private static final double REALTIME_MARGIN = 1.2;
+
+    public enum Codec {
+        H264("avc1", List.of("libx264", "libopenh264")),
+        HEVC("hev1", List.of("libx265")),
+        AV1("av01", List.of("libsvtav1", "libaom-av1", "librav1e"));
+
+        // B 站 codecs 字段的前缀
+        public final String tag;
+        final List<String> encoders;
+
+        Codec(String tag, List<String> encoders) {
+            this.tag = tag;
+            this.encoders = encoders;
+        }
+
+        public static @Nullable Codec fromCodecs(String codecs) {
+            for (Codec codec : values()) {
+                if (codecs.startsWith(codec.tag) || (codec == HEVC && codecs.startsWith("hvc1"))) {
+                    return codec;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Gson gson = new Gson();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    // codec@高度 -> 帧率，0 表示无法解码
+    private final Map<String, Double> results = new ConcurrentHashMap<>();
+    // 已测试完成（包括无法编码测试片段）的格式
+    private final Map<Codec, Boolean> measured = new ConcurrentHashMap<>();
+    private volatile float activeDecodeLoad = 0;
+
+    private CodecBenchmark() {
+    }
+
+    public static CodecBenchmark getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 在后台开始测试，已有本机的测试结果时直接载入
+     */
+    public void startAsync() {
+        if (!Configs.CODEC_BENCHMARK || !started.compareAndSet(false, true)) {
+            return;
+        }
+        if (load()) {
+            return;
+        }
+        Thread thread = new Thread(this::run);
+        thread.setName("Mcedia-Codec-Benchmark");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * 当前正在解码的播放器负载，1 相当于一路完整解码，由 {@link top.tobyprime.mcedia.core.PlayerInstanceManagerRegistry} 更新
+     */
+    public void setActiveDecodeLoad(float load) {
+        this.activeDecodeLoad = load;
+    }
+
+    /**
+     * 在当前负载下再增加一路该格式的视频能否实时解码
+     *
+     * @return 未测试或无法测试时返回 null
+     */
+    public @Nullable Boolean canDecodeRealtime(Codec codec, int width, int height, double frameRate) {
+        startAsync();
+        if (!Boolean.TRUE.equals(measured.get(codec))) {
+            return null;
+        }
+        double fps = estimateFps(codec, width, height);
+        if (fps < 0) {
+            return null;
+        }
+        double required = Math.max(1, frameRate) * REALTIME_MARGIN * (activeDecodeLoad + 1);
+        return fps >= required;
+    }
+
+    /**
+     * 按像素数从最接近的测试分辨率换算帧率
+     */
+    private double estimateFps(Codec codec, int width, int height) {
+        long pixels = (long) Math.max(1, width) * Math.max(1, height);
+        int[] nearest = null;
+        for (int[] resolution : RESOLUTIONS) {
+            if (nearest == null || Math.abs((long) resolution[0] * resolution[1] - pixels) < Math.abs((long) nearest[0] * nearest[1] - pixels)) {
+                nearest = resolution;
+            }
+        }
+        Double fps = results.get(key(codec, nearest[1]));
+        if (fps == null) {
+            return -1;
+        }
+        return fps * nearest[0] * nearest[1] / pixels;
+    }
+
+    private static String key(Codec codec, int height) {
+        return codec.name() + "@" + height;
+    }
+
+    private void run() {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("mcedia-benchmark");
+            for (Codec codec : Codec.values()) {
+                String encoder = findEncoder(codec);
+                if (encoder == null) {
+                    LOGGER.info("解码测试: 没有可用的 {} 编码器，跳过", codec);
+                    measured.put(codec, false);
+                    continue;
+                }
+                for (int[] resolution : RESOLUTIONS) {
+                    Path clip = dir.resolve(codec.name() + "_" + resolution[1] + ".mkv");
+                    try {
+                        encodeClip(clip, encoder, resolution[0], resolution[1]);
+                    } catch (Exception e) {
+                        LOGGER.info("解码测试: {} 编码 {}p 测试片段失败: {}", codec, resolution[1], e.getMessage());
+                        break;
+                    }
+                    double fps = measureDecode(clip);
+                    results.put(key(codec, resolution[1]), fps);
+                    LOGGER.info("解码测试: {} {}p 软件解码 {} fps", codec, resolution[1], String.format("%.0f", fps));
+                }
+                measured.put(codec, results.containsKey(key(codec, RESOLUTIONS[0][1])));
+            }
+            save();
+        } catch (Exception e) {
+            LOGGER.warn("解码测试失败", e);
+        } finally {
+            if (dir != null) {
+                try (var files = Files.list(dir)) {
+                    for (var file : files.toList()) {
+                        Files.deleteIfExists(file);
+                    }
+                    Files.deleteIfExists(dir);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    private static @Nullable String findEncoder(Codec codec) {
+        for (String name : codec.encoders) {
+            if (avcodec.avcodec_find_encoder_by_name(name) != null) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 生成带运动和噪声的测试片段，避免编码后码率过低、解码过快
+     */
+    private static void encodeClip(Path path, String encoder, int width, int height) throws Exception {
+        try (var recorder = new FFmpegFrameRecorder(path.toFile(), width, height, 0)) {
+            recorder.setFormat("matroska");
+            recorder.setVideoCodecName(encoder);
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_YUV420P);
+            recorder.setFrameRate(30);
+            recorder.setGopSize(CLIP_FRAMES);
+            recorder.setVideoOption("preset", encoder.equals("libsvtav1") ? "12" : "ultrafast");
+            recorder.setVideoOption("cpu-used", "8");
+            recorder.setVideoBitrate(width * height * 4);
+            recorder.start();
+
+            var frame = new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+            var buffer = (ByteBuffer) frame.image[0];
+            int stride = frame.imageStride;
+            long seed = 1;
+            for (int i = 0; i < CLIP_FRAMES; i++) {
+                for (int y = 0; y < height; y++) {
+                    int row = y * stride;
+                    for (int x = 0; x < width; x++) {
+                        seed = seed * 6364136223846793005L + 1442695040888963407L;
+                        int noise = (int) (seed >>> 59);
+                        buffer.put(row + x * 3, (byte) (x + i * 4 + noise));
+                        buffer.put(row + x * 3 + 1, (byte) (y + i * 2 + noise));
+                        buffer.put(row + x * 3 + 2, (byte) ((x ^ y) + i + noise));
+                    }
+                }
+                recorder.record(frame);
+            }
+            recorder.stop();
+        }
+    }
+
+    /**
+     * 与播放时相同地软件解码并转换为 RGBA，返回帧率
+     */
+    private static double measureDecode(Path path) {
+        long frames = 0;
+        long nanos = 0;
+        for (int pass = 0; pass < DECODE_PASSES; pass++) {
+            try (var grabber = new FFmpegFrameGrabber(path.toFile())) {
+                grabber.setPixelFormat(avutil.AV_PIX_FMT_RGBA);
+                grabber.startUnsafe();
+                long start = System.nanoTime();
+                while (grabber.grabImage() != null) {
+                    frames++;
+                }
+                nanos += System.nanoTime() - start;
+                grabber.releaseUnsafe();
+            } catch (Exception e) {
+                LOGGER.info("解码测试: 无法解码 {}: {}", path.getFileName(), e.getMessage());
+                return 0;
+            }
+        }
+        return nanos <= 0 ? 0 : frames * 1e9 / nanos;
+    }
+
+    private static String machineSignature() {
+        return VERSION + ";" + System.getProperty("os.name") + ";" + System.getProperty("os.arch") + ";"
+                + Runtime.getRuntime().availableProcessors() + ";" + avutil.av_version_info().getString();
+    }
+
+    private boolean load() {
+        if (!Files.exists(RESULT_PATH)) {
+            return false;
+        }
+        try {
+            var saved = gson.fromJson(Files.readString(RESULT_PATH), SavedResult.class);
+            if (saved == null || !machineSignature().equals(saved.signature) || saved.results == null || saved.measured == null) {
+                return false;
+            }
+            results.putAll(saved.results);
+            measured.putAll(saved.measured);
+            LOGGER.info("载入解码测试结果: {}", results);
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("读取解码测试结果失败", e);
+            return false;
+        }
+    }
+
+    private void save() {
+        try {
+            var saved = new SavedResult();
+            saved.signature = machineSignature();
+            saved.results = Map.copyOf(results);
+            saved.measured = Map.copyOf(measured);
+            Files.createDirectories(RESULT_PATH.getParent());
+            Files.writeString(RESULT_PATH, gson.toJson(saved));
+        } catch (Exception e) {
+            LOGGER.warn("保存解码测试结果失败", e);
+        }
+    }
+
+    private static class SavedResult {
+        String signature;
+        Map<String, Double> results;
+        Map<Codec, Boolean> measured;
+    }
+}
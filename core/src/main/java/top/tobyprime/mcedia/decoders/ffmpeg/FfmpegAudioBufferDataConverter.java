@@ -26,7 +26,6 @@ public class FfmpegAudioBufferDataConverter {
 
 
     public static Buffer mergeToMono(Buffer[] channelsData) {
-        System.out.println("mergeToMono");
         if (channelsData == null || channelsData.length == 0) {
             throw new IllegalArgumentException("No input channels");
         }
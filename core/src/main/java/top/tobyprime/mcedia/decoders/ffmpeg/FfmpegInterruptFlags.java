@@ -0,0 +1,67 @@
+package top.tobyprime.mcedia.decoders.ffmpeg;
+
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.ffmpeg.avformat.AVIOInterruptCB;
+import org.bytedeco.ffmpeg.global.avformat;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 为 grabber 安装 FFmpeg 中断回调，回调返回 true 时阻塞中的打开、探测与读取会立即失败
+ */
+public class FfmpegInterruptFlags {
+    public static ConcurrentHashMap<FFmpegFrameGrabber, AVIOInterruptCB.Callback_Pointer> CALLBACKS = new ConcurrentHashMap<>();
+
+    /**
+     * 需要在 start() 之前调用，回调不能在 startUnsafe 的 PointerScope 中创建，否则会在 start 结束后被释放
+     */
+    public static void setInterrupt(FFmpegFrameGrabber grabber, BooleanSupplier interrupted) {
+        CALLBACKS.put(grabber, new AVIOInterruptCB.Callback_Pointer() {
+            @Override
+            public int call(Pointer opaque) {
+                return interrupted.getAsBoolean() ? 1 : 0;
+            }
+        });
+    }
+
+    /**
+     * 由 mixin 在 avformat_open_input 之前调用，分配带中断回调的 AVFormatContext，没有回调时返回 null
+     */
+    public static @Nullable AVFormatContext allocContext(FFmpegFrameGrabber grabber) {
+        var callback = CALLBACKS.get(grabber);
+        if (callback == null) {
+            return null;
+        }
+        var formatContext = avformat.avformat_alloc_context();
+        if (formatContext == null || formatContext.isNull()) {
+            return null;
+        }
+        formatContext.interrupt_callback().callback(callback).opaque(null);
+        return formatContext;
+    }
+
+    /**
+     * 由 mixin 在 avformat_find_stream_info 之前调用
+     */
+    public static void install(FFmpegFrameGrabber grabber, AVFormatContext formatContext) {
+        var callback = CALLBACKS.get(grabber);
+        if (callback == null || formatContext == null || formatContext.isNull()) {
+            return;
+        }
+        formatContext.interrupt_callback().callback(callback).opaque(null);
+    }
+
+    /**
+     * 需要在 grabber release 之后调用
+     */
+    public static void remove(FFmpegFrameGrabber grabber) {
+        var callback = CALLBACKS.remove(grabber);
+        if (callback != null) {
+            callback.close();
+        }
+    }
+}
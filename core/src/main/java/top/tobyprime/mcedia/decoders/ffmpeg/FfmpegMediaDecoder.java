@@ -1,5 +1,6 @@
 package top.tobyprime.mcedia.decoders.ffmpeg;
 
+import org.bytedeco.ffmpeg.global.avcodec;
 import org.bytedeco.ffmpeg.global.avutil;
 import org.bytedeco.javacv.FFmpegFrameGrabber;
 import org.bytedeco.javacv.Frame;
@@ -7,57 +8,212 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.core.BandwidthGovernor;
+import top.tobyprime.mcedia.core.FrameTimeController;
 import top.tobyprime.mcedia.core.MediaInfo;
+import top.tobyprime.mcedia.core.MediaInfoCache;
+import top.tobyprime.mcedia.decoders.AbrController;
 import top.tobyprime.mcedia.decoders.DecoderConfiguration;
+import top.tobyprime.mcedia.decoders.VideoDecodeMode;
 import top.tobyprime.mcedia.interfaces.IAudioData;
 import top.tobyprime.mcedia.interfaces.IMediaDecoder;
 import top.tobyprime.mcedia.interfaces.IVideoData;
+import top.tobyprime.mcedia.metrics.MediaEvents;
+import top.tobyprime.mcedia.metrics.MediaMetrics;
+import top.tobyprime.mcedia.metrics.OpenTimeline;
+import top.tobyprime.mcedia.net.HlsSegmentReader;
+import top.tobyprime.mcedia.net.MirrorSelector;
+import top.tobyprime.mcedia.net.ParallelRangeReader;
 
 import java.io.Closeable;
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
 
 public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
     private static final Logger LOGGER = LoggerFactory.getLogger(FfmpegMediaDecoder.class);
+    // 切换清晰度时新流从当前读取位置之后多远开始，留出打开的时间
+    private static final long SWITCH_LEAD_US = 2_000_000;
+    // 连续恢复失败这么多次后放弃，避免反复请求 API
+    private static final int MAX_RECOVERIES = 3;
+    // 视频与音频线程在该时间内共用同一次重新解析的结果
+    private static final long REFRESH_REUSE_MS = 30_000;
+    // 播放地址过期前多久主动刷新
+    private static final long EXPIRY_REFRESH_LEAD_MS = 60_000;
+    // 距结尾超过该时长就读不到数据时视为中断而不是播放结束
+    private static final long PREMATURE_END_US = 1_000_000;
+    private static final AtomicInteger backgroundThreadId = new AtomicInteger();
+    // 切换清晰度时打开新流与地址过期前的重新解析，所有解码器共用，FFmpeg 打开流时阻塞在本地代码中，使用平台线程
+    private static final ExecutorService backgroundExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "Mcedia-Decoder-Background-" + backgroundThreadId.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
 
     private boolean lowOverhead = false;
-    public final LinkedBlockingDeque<FfmpegVideoData> videoQueue;
+    private volatile VideoDecodeMode videoDecodeMode = VideoDecodeMode.FULL;
+    // 以下两个字段只在视频解码线程中访问
+    private VideoDecodeMode appliedVideoDecodeMode = VideoDecodeMode.FULL;
+    private boolean waitForKeyFrame = false;
+    // 视频流与音频流分离时，禁用视频后主解码线程暂停读取
+    private volatile boolean masterParked = false;
+    private volatile boolean audioEnded = false;
+    private volatile float videoScale = 1;
+    private float appliedVideoScale = 1;
+    private int sourceWidth;
+    private int sourceHeight;
+    private final FrameQueue<FfmpegVideoData> videoQueue;
     public final LinkedBlockingDeque<FfmpegAudioData> audioQueue;
 
     private final DecoderConfiguration configuration;
+    // 返回 true 时中断正在进行的打开与读取
+    private final BooleanSupplier cancelled;
+    // 打开线程绑定的时间线，用于标记 grabber 打开与首帧
+    private final @Nullable OpenTimeline timeline = OpenTimeline.current();
+    private final MediaMetrics metrics;
     @Nullable
     private Thread masterDecoderThread;
     @Nullable
     private Thread audioDecodeThread;
 
-    private final FFmpegFrameGrabber masterGrabber;
-    private final FFmpegFrameGrabber audioGrabber;
+    // 自适应码率切换清晰度或切换镜像时会被替换
+    private volatile FFmpegFrameGrabber masterGrabber;
+    private volatile FFmpegFrameGrabber audioGrabber;
+    // 当前视频流与音频流的地址及备用镜像，读取卡住时依次切换，序号只在对应的解码线程中访问
+    private volatile List<String> videoUrls;
+    private int videoUrlIndex = 0;
+    private volatile List<String> audioUrls;
+    private int audioUrlIndex = 0;
+    private final ReadWatch videoWatch = new ReadWatch();
+    private final ReadWatch audioWatch = new ReadWatch();
+    // 通过 HLS 预读打开的 grabber，不能 seek
+    private final Map<FFmpegFrameGrabber, HlsSegmentReader> hlsReaders = new ConcurrentHashMap<>();
+    // 通过多连接读取打开的 grabber
+    private final Map<FFmpegFrameGrabber, ParallelRangeReader> rangeReaders = new ConcurrentHashMap<>();
+
+    // 播放地址过期或失效时重新解析，为 null 时不恢复
+    @Nullable
+    private final Callable<@Nullable MediaInfo> refresher;
+    // 多连接读取与 HLS 预读的下载限速，为 null 时不限速
+    @Nullable
+    private final BandwidthGovernor.Channel bandwidth;
+    private final Object refreshLock = new Object();
+    @Nullable
+    private volatile MediaInfo freshInfo;
+    private volatile long freshInfoTime;
+    // 每次重新解析成功后递增，两个解码线程各自换用新地址
+    private volatile int refreshGeneration = 0;
+    private int videoRefreshGeneration = 0;
+    private int audioRefreshGeneration = 0;
+    private int videoRecoveries = 0;
+    private int audioRecoveries = 0;
+    // 需要重新打开的位置，-1 为没有。持有 grabber 锁时登记，解码线程释放锁后再发起网络请求，避免阻塞 seek 与 close
+    private volatile long videoReopenAt = -1;
+    private ReopenReason videoReopenReason = ReopenReason.FRESH;
+    private int videoReopenGeneration;
+    private volatile long audioReopenAt = -1;
+    private ReopenReason audioReopenReason = ReopenReason.FRESH;
+    private int audioReopenGeneration;
+    // 解码线程正在释放锁后重新打开，此时当前的流已经不可用
+    private volatile boolean videoReopening = false;
+    private volatile boolean audioReopening = false;
+    // 当前播放地址的签名过期时间，-1 为不过期
+    private volatile long urlExpiry;
+    private final AtomicBoolean expiryRefreshing = new AtomicBoolean(false);
+
+    private final MediaInfo info;
+    @Nullable
+    private final AbrController abr;
+    private final Object switchLock = new Object();
+    // 已打开并定位好、等待解码线程接替的视频流
+    @Nullable
+    private volatile FFmpegFrameGrabber pendingGrabber;
+    private volatile int pendingIndex;
+    private volatile boolean switching = false;
+    private volatile boolean switchFailed = false;
+    // seek 或关闭后作废正在打开的清晰度与等待重新打开的流
+    private final AtomicInteger switchGeneration = new AtomicInteger();
+    // 只在视频解码线程中访问
+    private long lastBytesRead = -1;
 
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
     private final ReentrantReadWriteLock masterGrabberLock = new ReentrantReadWriteLock();
     private final ReentrantReadWriteLock audioGrabberLock = new ReentrantReadWriteLock();
 
     public FfmpegMediaDecoder(MediaInfo info, DecoderConfiguration configuration) {
-        this.configuration = configuration;
+        this(info, configuration, () -> false);
+    }
+
+    public FfmpegMediaDecoder(MediaInfo info, DecoderConfiguration configuration, BooleanSupplier cancelled) {
+        this(info, configuration, cancelled, null);
+    }
+
+    public FfmpegMediaDecoder(MediaInfo info, DecoderConfiguration configuration, BooleanSupplier cancelled, @Nullable Callable<@Nullable MediaInfo> refresher) {
+        this(info, configuration, cancelled, refresher, null);
+    }
 
-        this.videoQueue = new LinkedBlockingDeque<>(Configs.DECODER_MAX_VIDEO_FRAMES);
+    /**
+     * @param cancelled 打开被取代时返回 true，阻塞中的 grabber 启动会通过中断回调立即退出
+     * @param refresher 重新解析播放地址，地址过期、失效或读取卡住时在当前位置换用新地址继续解码
+     * @param bandwidth 该媒体分到的下载带宽
+     */
+    public FfmpegMediaDecoder(MediaInfo info, DecoderConfiguration configuration, BooleanSupplier cancelled, @Nullable Callable<@Nullable MediaInfo> refresher, @Nullable BandwidthGovernor.Channel bandwidth) {
+        this(info, configuration, cancelled, refresher, bandwidth, new MediaMetrics(String.valueOf(info.streamUrl)));
+    }
+
+    /**
+     * @param metrics 解码帧数与转换耗时写入其中
+     */
+    public FfmpegMediaDecoder(MediaInfo info, DecoderConfiguration configuration, BooleanSupplier cancelled, @Nullable Callable<@Nullable MediaInfo> refresher, @Nullable BandwidthGovernor.Channel bandwidth, MediaMetrics metrics) {
+        this.configuration = configuration;
+        this.metrics = metrics;
+        this.cancelled = cancelled;
+        this.refresher = refresher;
+        this.bandwidth = bandwidth;
+        this.info = info;
+        this.videoUrls = withMirrors(info.streamUrl, info.streamMirrors);
+        this.audioUrls = withMirrors(info.audioUrl, info.audioMirrors);
+        this.urlExpiry = urlExpiry(info);
+
+        this.videoQueue = new FrameQueue<>(Configs.DECODER_MAX_VIDEO_FRAMES);
         this.audioQueue = new LinkedBlockingDeque<>(Configs.DECODER_MAX_AUDIO_FRAMES);
 
         try {
             if (configuration.enableVideo) {
-                masterGrabber = buildGrabber(info.streamUrl, info.headers, info.cookie, configuration, true);
-                masterGrabber.start();
+                masterGrabber = openGrabber(info.streamUrl, true, false);
+                if (timeline != null) {
+                    timeline.mark(OpenTimeline.Phase.VIDEO_OPENED);
+                }
+                sourceWidth = masterGrabber.getImageWidth();
+                sourceHeight = masterGrabber.getImageHeight();
             } else {
                 masterGrabber = null;
             }
 
             if (configuration.enableAudio) {
                 if (info.audioUrl != null && !info.audioUrl.isEmpty()) {
-                    audioGrabber = buildGrabber(info.audioUrl, info.headers, info.cookie, configuration, false);
-                    audioGrabber.start();
+                    audioGrabber = openGrabber(info.audioUrl, false, false);
+                    if (timeline != null) {
+                        timeline.mark(OpenTimeline.Phase.AUDIO_OPENED);
+                    }
                 } else {
                     audioGrabber = null; // buildGrabber(info.streamUrl, info.headers, info.cookie, configuration, false);
                 }
@@ -74,9 +230,99 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
         if (masterGrabber == null) {
             throw new RuntimeException("No available grabber");
         }
+        // 只有音视频分离时才能在不打断音频的情况下切换视频流
+        if (Configs.ABR_ENABLED && audioGrabber != null && info.videoRepresentations != null && info.videoRepresentations.size() > 1) {
+            abr = new AbrController(info.videoRepresentations, info.streamUrl);
+        } else {
+            abr = null;
+        }
         startDecoder();
     }
 
+    private static List<String> withMirrors(@Nullable String url, @Nullable List<String> mirrors) {
+        var urls = new ArrayList<String>();
+        if (url != null) {
+            urls.add(url);
+        }
+        if (mirrors != null) {
+            urls.addAll(mirrors);
+        }
+        return urls;
+    }
+
+    /**
+     * FFmpegFrameGrabber.start() 会持有全局锁，多个播放器同时打开时会互相阻塞，
+     * avformat/avcodec 的打开已是线程安全的，这里直接调用 startUnsafe
+     */
+    private void startGrabber(FFmpegFrameGrabber grabber) throws FFmpegFrameGrabber.Exception {
+        try {
+            grabber.startUnsafe();
+        } catch (FFmpegFrameGrabber.Exception e) {
+            try {
+                grabber.releaseUnsafe();
+            } catch (FFmpegFrameGrabber.Exception ignored) {
+            }
+            closeInput(grabber);
+            FfmpegInterruptFlags.remove(grabber);
+            throw e;
+        }
+    }
+
+    /**
+     * 构建并打开 grabber，探测缓存命中时用最小探测打开，结果与记录不一致或打开失败时按完整探测重新打开
+     */
+    private FFmpegFrameGrabber openGrabber(String url, boolean isVideoGrabber, boolean seekable) throws FFmpegFrameGrabber.Exception {
+        var cache = ProbeCache.getInstance();
+        String key = ProbeCache.key(url, isVideoGrabber);
+        var cached = cache.get(key);
+        long start = System.nanoTime();
+        var event = new MediaEvents.Open();
+        event.begin();
+        event.mediaId = metrics.id;
+        event.host = hostOf(url);
+        event.video = isVideoGrabber;
+        if (cached != null) {
+            var grabber = buildGrabber(url, info.headers, info.cookie, configuration, isVideoGrabber, seekable, true);
+            try {
+                startGrabber(grabber);
+                if (cached.matches(grabber)) {
+                    long ms = (System.nanoTime() - start) / 1_000_000;
+                    cache.recordOpen(ms, true);
+                    LOGGER.info("打开 {} 用时 {}ms (命中探测缓存)", hostOf(url), ms);
+                    event.cached = true;
+                    event.commit();
+                    return grabber;
+                }
+                LOGGER.info("{} 的探测结果与缓存不一致，重新完整探测", hostOf(url));
+                releaseGrabber(grabber);
+            } catch (FFmpegFrameGrabber.Exception e) {
+                if (isClosed.get() || cancelled.getAsBoolean()) {
+                    throw e;
+                }
+                LOGGER.info("{} 按缓存的探测结果打开失败，重新完整探测: {}", hostOf(url), e.getMessage());
+            }
+            cache.invalidate(key);
+        }
+        var grabber = buildGrabber(url, info.headers, info.cookie, configuration, isVideoGrabber, seekable, false);
+        startGrabber(grabber);
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        cache.recordOpen(ms, false);
+        cache.put(key, grabber);
+        LOGGER.info("打开 {} 用时 {}ms", hostOf(url), ms);
+        event.commit();
+        return grabber;
+    }
+
+    private void putAudio(FfmpegAudioData data) throws InterruptedException {
+        var event = new MediaEvents.QueueWait();
+        event.begin();
+        audioQueue.put(data);
+        event.mediaId = metrics.id;
+        event.queue = "audio";
+        event.commit();
+        metrics.decodedAudioFrames.increment();
+    }
+
     public void startDecoder() {
         if (masterGrabber != null && masterDecoderThread == null) {
             Thread thread = new Thread(this::masterDecodeLoop);
@@ -100,42 +346,19 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
         return getLength() <= 0 || Double.isInfinite(getLength());
     }
 
-
-    private final ReentrantReadWriteLock videoQueueLock = new ReentrantReadWriteLock();
-
     @Override
     public IVideoData peekVideo() {
-        videoQueueLock.readLock().lock();
-        try {
-            return videoQueue.peek();
-        } finally {
-            videoQueueLock.readLock().unlock();
-        }
+        return videoQueue.peek();
     }
 
     @Override
     public IVideoData pollVideo() {
-        videoQueueLock.writeLock().lock();
-        try {
-            return videoQueue.poll();
-        } finally {
-            videoQueueLock.writeLock().unlock();
-        }
+        return videoQueue.poll();
     }
 
     @Override
     public @Nullable IVideoData pollVideoIf(Predicate<IVideoData> condition) {
-        videoQueueLock.writeLock().lock();
-        try {
-            var data = videoQueue.peek();
-            if (data == null) return null;
-            if (condition.test(data)) {
-                return videoQueue.poll();
-            }
-            return null;
-        } finally {
-            videoQueueLock.writeLock().unlock();
-        }
+        return videoQueue.pollIf(condition);
     }
 
     @Override
@@ -151,23 +374,111 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
         this.lowOverhead = lowOverhead;
     }
 
-    private FFmpegFrameGrabber buildGrabber(String url, @Nullable Map<String, String> customHeaders, @Nullable String cookie, DecoderConfiguration configuration, boolean isVideoGrabber) {
-        var grabber = new FFmpegFrameGrabber(url);
-        if (url.startsWith("http")) {
-            StringBuilder headerStrBuilder = new StringBuilder();
+    @Override
+    public void setVideoDecodeMode(VideoDecodeMode mode) {
+        this.videoDecodeMode = mode;
+    }
 
-            if (customHeaders != null) {
-                customHeaders.forEach((k, v) -> headerStrBuilder.append(k).append(": ").append(v).append("\r\n"));
-            }
+    @Override
+    public void setVideoScale(float scale) {
+        this.videoScale = scale;
+    }
 
-            if ((customHeaders == null || !customHeaders.containsKey("User-Agent")) && configuration.userAgent != null) {
-                headerStrBuilder.append("User-Agent: ").append(configuration.userAgent).append("\r\n");
-            }
+    /**
+     * 在解码线程中修改输出尺寸，javacv 会在下一帧重新创建缩放上下文
+     */
+    private void applyVideoScale(float scale) {
+        if (scale >= 1 || sourceWidth <= 0 || sourceHeight <= 0) {
+            masterGrabber.setImageWidth(0);
+            masterGrabber.setImageHeight(0);
+        } else {
+            masterGrabber.setImageWidth(Math.max(2, Math.round(sourceWidth * scale) & ~1));
+            masterGrabber.setImageHeight(Math.max(2, Math.round(sourceHeight * scale) & ~1));
+        }
+        appliedVideoScale = scale;
+    }
+
+    /**
+     * 在解码线程中应用视频解码模式，需持有 masterGrabberLock
+     */
+    private void applyVideoDecodeMode(VideoDecodeMode mode) throws FFmpegFrameGrabber.Exception {
+        applyDiscard(masterGrabber, mode);
+
+        // 主流中没有音频时丢弃全部视频包会直接读到结尾，改为暂停读取
+        boolean park = mode == VideoDecodeMode.DISABLED && (audioGrabber != null || !masterGrabber.hasAudio());
+        if (masterParked && !park && audioGrabber != null) {
+            // 暂停期间音频继续播放，恢复时跳到音频进度
+            masterGrabber.setTimestamp(audioGrabber.getTimestamp());
+        }
+        masterParked = park;
+
+        if (mode == VideoDecodeMode.FULL) {
+            // 之前跳过了非关键帧，参考帧已不完整，需要等下一个关键帧
+            waitForKeyFrame = true;
+        } else {
+            FfmpegProcessImageFlags.setProcessImage(masterGrabber, false);
+            clearVideoQueue();
+        }
+        appliedVideoDecodeMode = mode;
+        LOGGER.info("视频解码模式切换为 {}", mode);
+    }
 
-            if (cookie != null && !cookie.isEmpty() && (customHeaders == null || !customHeaders.containsKey("Cookie"))) {
-                headerStrBuilder.append("Cookie: ").append(cookie).append("\r\n");
+    private static void applyDiscard(FFmpegFrameGrabber grabber, VideoDecodeMode mode) {
+        var formatContext = grabber.getFormatContext();
+        if (formatContext == null) {
+            return;
+        }
+        int discard = switch (mode) {
+            case FULL -> avcodec.AVDISCARD_DEFAULT;
+            case KEYFRAME_ONLY -> avcodec.AVDISCARD_NONKEY;
+            case DISABLED -> avcodec.AVDISCARD_ALL;
+        };
+        for (int i = 0; i < formatContext.nb_streams(); i++) {
+            var stream = formatContext.streams(i);
+            if (stream.codecpar().codec_type() == avutil.AVMEDIA_TYPE_VIDEO) {
+                stream.discard(discard);
             }
+        }
+    }
 
+    /**
+     * @param seekable   打开后需要 seek 时为 true，此时不使用 HLS 预读
+     * @param fastProbe  已有探测缓存，只读取最少的数据
+     */
+    private FFmpegFrameGrabber buildGrabber(String url, @Nullable Map<String, String> customHeaders, @Nullable String cookie, DecoderConfiguration configuration, boolean isVideoGrabber, boolean seekable, boolean fastProbe) {
+        var headers = new LinkedHashMap<String, String>();
+        if (customHeaders != null) {
+            headers.putAll(customHeaders);
+        }
+        if (!headers.containsKey("User-Agent") && configuration.userAgent != null) {
+            headers.put("User-Agent", configuration.userAgent);
+        }
+        if (cookie != null && !cookie.isEmpty() && !headers.containsKey("Cookie")) {
+            headers.put("Cookie", cookie);
+        }
+
+        var hls = url.startsWith("http") && !seekable ? openHlsReader(url, headers) : null;
+        var reader = url.startsWith("http") && hls == null && info.seekable ? openRangeReader(url, headers) : null;
+        FFmpegFrameGrabber grabber;
+        if (hls != null) {
+            grabber = new FFmpegFrameGrabber(hls, 0);
+            hlsReaders.put(grabber, hls);
+        } else if (reader != null) {
+            grabber = new FFmpegFrameGrabber(reader, Integer.MAX_VALUE);
+            rangeReaders.put(grabber, reader);
+        } else {
+            grabber = new FFmpegFrameGrabber(url);
+        }
+        BooleanSupplier interrupt = () -> isClosed.get() || cancelled.getAsBoolean() || isStalled(grabber);
+        FfmpegInterruptFlags.setInterrupt(grabber, interrupt);
+        // 自定义输入不经过 FFmpeg 的中断回调，由读取方自己检查
+        if (hls != null) {
+            hls.setInterrupt(interrupt);
+        } else if (reader != null) {
+            reader.setInterrupt(interrupt);
+        } else if (url.startsWith("http")) {
+            StringBuilder headerStrBuilder = new StringBuilder();
+            headers.forEach((k, v) -> headerStrBuilder.append(k).append(": ").append(v).append("\r\n"));
             grabber.setOption("headers", headerStrBuilder.toString());
 
             grabber.setOption("reconnect", "1");
@@ -178,7 +489,12 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
         }
 
         grabber.setOption("buffer_size", String.valueOf(configuration.bufferSize));
-        grabber.setOption("probesize", String.valueOf(configuration.probesize));
+        if (fastProbe) {
+            grabber.setOption("probesize", String.valueOf(Math.min(configuration.probesize, ProbeCache.FAST_PROBESIZE)));
+            grabber.setOption("analyzeduration", String.valueOf(ProbeCache.FAST_ANALYZE_DURATION_US));
+        } else {
+            grabber.setOption("probesize", String.valueOf(configuration.probesize));
+        }
 
         if (configuration.useHardwareDecoding) grabber.setOption("hwaccel", "auto");
         if (isVideoGrabber) {
@@ -198,27 +514,160 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
     }
 
 
+    /**
+     * m3u8 地址使用 HLS 预读，加密等不支持的列表返回 null 由 FFmpeg 直接打开
+     */
+    private @Nullable HlsSegmentReader openHlsReader(String url, Map<String, String> headers) {
+        try {
+            return HlsSegmentReader.open(url, headers, bandwidth);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            LOGGER.info("{} 无法使用 HLS 预读: {}", hostOf(url), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 支持 Range 的点播地址使用多连接读取，否则返回 null 由 FFmpeg 直接打开
+     */
+    private @Nullable ParallelRangeReader openRangeReader(String url, Map<String, String> headers) {
+        try {
+            return ParallelRangeReader.open(url, headers, bandwidth, () -> isClosed.get() || cancelled.getAsBoolean());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            LOGGER.info("{} 无法使用多连接读取: {}", hostOf(url), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 由中断回调在读取线程中调用，还有可用镜像或可以重新解析时中断卡住的读取
+     */
+    private boolean isStalled(FFmpegFrameGrabber grabber) {
+        if (grabber == masterGrabber) {
+            return (videoUrlIndex + 1 < videoUrls.size() || canRecover(videoRecoveries)) && videoWatch.check();
+        }
+        if (grabber == audioGrabber) {
+            return (audioUrlIndex + 1 < audioUrls.size() || canRecover(audioRecoveries)) && audioWatch.check();
+        }
+        return false;
+    }
+
+    private boolean canRecover(int recoveries) {
+        return refresher != null && recoveries < MAX_RECOVERIES;
+    }
+
+    /**
+     * 读不到数据时是否还没到结尾，直播流读不到数据总是中断
+     */
+    private boolean isPrematureEnd(long timestamp) {
+        long length = getLength();
+        return length <= 0 || timestamp < length - PREMATURE_END_US;
+    }
+
     private void masterDecodeLoop() {
         try {
             long lastVideoFrameTimestamp = System.currentTimeMillis();
+            long lastCpuTime = FrameTimeController.getCurrentThreadCpuTime();
             while (!Thread.currentThread().isInterrupted() && !isClosed.get()) {
+                lastCpuTime = recordDecodeCpu(lastCpuTime);
+                if (videoReopenAt >= 0 && !reopenVideo()) {
+                    break;
+                }
                 masterGrabberLock.readLock().lock();
                 try {
                     if (isClosed.get()) {
                         break;
                     }
+                    if (videoReopenAt >= 0) {
+                        // 等待锁期间 seek 登记了重新打开，不再从旧的流读取
+                        continue;
+                    }
 
-                    Frame frame = masterGrabber.grab();
+                    checkUrlExpiry();
+                    if (videoRefreshGeneration != refreshGeneration) {
+                        // 另一个线程或过期检查已经重新解析，释放锁后换用新地址
+                        videoRefreshGeneration = refreshGeneration;
+                        if (freshInfo != null) {
+                            requestVideoReopen(masterGrabber.getTimestamp(), ReopenReason.FRESH);
+                            continue;
+                        }
+                    }
+
+                    var mode = videoDecodeMode;
+                    if (mode != appliedVideoDecodeMode) {
+                        applyVideoDecodeMode(mode);
+                    }
+                    if (videoScale != appliedVideoScale) {
+                        applyVideoScale(videoScale);
+                    }
+                    boolean fullDecode = mode == VideoDecodeMode.FULL;
+
+                    if (masterParked) {
+                        if (audioEnded) {
+                            break;
+                        }
+                        Thread.sleep(10);
+                        continue;
+                    }
+
+                    // 只解码关键帧时读取速度很快，需要跟随独立音频流的进度
+                    if (!fullDecode && audioGrabber != null && masterGrabber.getTimestamp() - audioGrabber.getTimestamp() > 1_000_000) {
+                        Thread.sleep(10);
+                        continue;
+                    }
+
+                    long readStart = System.nanoTime();
+                    long cpuStart = abr != null ? FrameTimeController.getCurrentThreadCpuTime() : -1;
+                    long timestampBefore = masterGrabber.getTimestamp();
+                    videoWatch.begin();
+                    var grabEvent = new MediaEvents.Grab();
+                    grabEvent.begin();
+                    Frame frame;
+                    try {
+                        frame = masterGrabber.grab();
+                    } catch (FFmpegFrameGrabber.Exception e) {
+                        if ((videoWatch.end() && failoverVideo()) || recoverVideo(timestampBefore)) {
+                            continue;
+                        }
+                        throw e;
+                    } finally {
+                        grabEvent.mediaId = metrics.id;
+                        grabEvent.stream = "video";
+                        grabEvent.commit();
+                    }
+                    if (videoWatch.end() && (failoverVideo() || recoverVideo(timestampBefore))) {
+                        continue;
+                    }
 
                     if (frame == null) {
+                        if (isPrematureEnd(timestampBefore) && recoverVideo(timestampBefore)) {
+                            continue;
+                        }
                         break;
                     }
+                    videoRecoveries = 0;
+                    if (abr != null) {
+                        recordAbrSample(readStart, cpuStart, timestampBefore);
+                    }
 
                     boolean isAudio = frame.samples != null && configuration.enableAudio;
-                    boolean isVideo = frame.image != null && configuration.enableVideo;
+                    boolean isVideo = frame.image != null && configuration.enableVideo && fullDecode;
 
                     if (isAudio) {
-                        audioQueue.put(new FfmpegAudioData(frame));
+                        putAudio(new FfmpegAudioData(frame));
+                    }
+
+                    if (isVideo && waitForKeyFrame) {
+                        if (frame.keyFrame) {
+                            waitForKeyFrame = false;
+                        } else {
+                            isVideo = false;
+                        }
                     }
 
                     if (isVideo && FfmpegProcessImageFlags.isEnableProcessImage(masterGrabber)) {
@@ -226,15 +675,38 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
                             Thread.sleep(10);
                         }
                         lastVideoFrameTimestamp = System.currentTimeMillis();
-                        videoQueue.put(new FfmpegVideoData(frame));
+                        long convertStart = System.nanoTime();
+                        var convertEvent = new MediaEvents.Convert();
+                        convertEvent.begin();
+                        var videoData = new FfmpegVideoData(frame);
+                        metrics.convertTime.record((System.nanoTime() - convertStart) / 1000);
+                        convertEvent.mediaId = metrics.id;
+                        convertEvent.bytes = videoData.frame.buffer.capacity();
+                        convertEvent.commit();
+
+                        var waitEvent = new MediaEvents.QueueWait();
+                        waitEvent.begin();
+                        videoQueue.put(videoData);
+                        waitEvent.mediaId = metrics.id;
+                        waitEvent.queue = "video";
+                        waitEvent.commit();
+                        metrics.decodedVideoFrames.increment();
+                        if (timeline != null) {
+                            timeline.mark(OpenTimeline.Phase.FIRST_FRAME);
+                        }
                     }
 
-                    if (lowOverhead) {
+                    if (!fullDecode) {
+                        FfmpegProcessImageFlags.setProcessImage(masterGrabber, false);
+                    } else if (lowOverhead && !waitForKeyFrame) {
                         FfmpegProcessImageFlags.setProcessImage(masterGrabber, (System.currentTimeMillis() - lastVideoFrameTimestamp) > 100);
                     } else {
                         FfmpegProcessImageFlags.setProcessImage(masterGrabber, true);
                     }
 
+                    if (abr != null && fullDecode) {
+                        updateRepresentation();
+                    }
 
                 } catch (FFmpegFrameGrabber.Exception e) {
                     if (!isClosed.get()) {
@@ -256,12 +728,517 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
         }
     }
 
+    private void recordAbrSample(long readStart, long cpuStart, long timestampBefore) {
+        long bytesRead = getBytesRead(masterGrabber);
+        long bytes = lastBytesRead < 0 || bytesRead < 0 ? 0 : bytesRead - lastBytesRead;
+        lastBytesRead = bytesRead;
+        long cpu = cpuStart < 0 ? -1 : FrameTimeController.getCurrentThreadCpuTime() - cpuStart;
+        abr.record(bytes, System.nanoTime() - readStart, cpu, masterGrabber.getTimestamp() - timestampBefore);
+    }
+
+    private static long getBytesRead(FFmpegFrameGrabber grabber) {
+        var formatContext = grabber.getFormatContext();
+        if (formatContext == null || formatContext.isNull() || formatContext.pb() == null || formatContext.pb().isNull()) {
+            return -1;
+        }
+        return formatContext.pb().bytes_read();
+    }
+
+    /**
+     * 在视频解码线程中检查是否需要切换清晰度，新流打开后在读取位置追上它时接替
+     */
+    private void updateRepresentation() {
+        if (masterParked) {
+            return;
+        }
+        var pending = pendingGrabber;
+        if (pending != null) {
+            if (masterGrabber.getTimestamp() >= pending.getTimestamp()) {
+                swapMasterGrabber(pending);
+            }
+            return;
+        }
+        if (switchFailed) {
+            switchFailed = false;
+            abr.onSwitchFailed();
+        }
+        if (switching) {
+            return;
+        }
+        int target = abr.select();
+        if (target != abr.getCurrent()) {
+            openRepresentation(target);
+        }
+    }
+
+    private void openRepresentation(int index) {
+        var representation = abr.getRepresentation(index);
+        long timestamp = masterGrabber.getTimestamp() + SWITCH_LEAD_US;
+        if (getLength() > 0 && timestamp >= getLength()) {
+            abr.onSwitchFailed();
+            return;
+        }
+        int generation = switchGeneration.get();
+        switching = true;
+        LOGGER.info("自适应码率: 切换到 {}，下载速度 {}kbps，解码速度 {}x", representation,
+                (long) (abr.getThroughput() / 1000), String.format("%.1f", abr.getDecodeSpeed()));
+
+        backgroundExecutor.execute(() -> {
+            FFmpegFrameGrabber grabber = null;
+            try {
+                grabber = openGrabber(representation.url, true, true);
+                applyDiscard(grabber, VideoDecodeMode.FULL);
+                grabber.setTimestamp(timestamp);
+                synchronized (switchLock) {
+                    if (!isClosed.get() && generation == switchGeneration.get()) {
+                        pendingIndex = index;
+                        pendingGrabber = grabber;
+                        grabber = null;
+                    }
+                }
+            } catch (Exception e) {
+                if (!isClosed.get()) {
+                    LOGGER.warn("自适应码率: 打开 {} 失败", representation, e);
+                }
+                switchFailed = true;
+            } finally {
+                if (grabber != null) {
+                    releaseGrabber(grabber);
+                }
+                switching = false;
+            }
+        });
+    }
+
+    /**
+     * 在视频解码线程中替换视频流，音频流与音频队列不受影响
+     */
+    private void swapMasterGrabber(FFmpegFrameGrabber grabber) {
+        FFmpegFrameGrabber old;
+        synchronized (switchLock) {
+            if (pendingGrabber != grabber) {
+                return;
+            }
+            pendingGrabber = null;
+            old = masterGrabber;
+            masterGrabber = grabber;
+        }
+        sourceWidth = grabber.getImageWidth();
+        sourceHeight = grabber.getImageHeight();
+        applyVideoScale(appliedVideoScale);
+        lastBytesRead = -1;
+        var representation = abr.getRepresentation(pendingIndex);
+        videoUrls = withMirrors(representation.url, MirrorSelector.getInstance().order(representation.backupUrls));
+        videoUrlIndex = 0;
+        abr.onSwitched(pendingIndex);
+        LOGGER.info("自适应码率: 已切换到 {}", abr.getRepresentation(abr.getCurrent()));
+        releaseGrabber(old);
+    }
+
+    /**
+     * 在视频解码线程中从卡住的位置改用下一个镜像，需持有 masterGrabberLock。
+     * 这里只登记，打开在释放锁后由 {@link #reopenVideo()} 完成
+     *
+     * @return 没有可用镜像时返回 false
+     */
+    private boolean failoverVideo() {
+        if (isClosed.get() || videoUrlIndex + 1 >= videoUrls.size()) {
+            return false;
+        }
+        requestVideoReopen(masterGrabber.getTimestamp(), ReopenReason.MIRROR);
+        return true;
+    }
+
+    /**
+     * 在音频解码线程中从卡住的位置改用下一个镜像，需持有 audioGrabberLock
+     */
+    private boolean failoverAudio() {
+        if (isClosed.get() || audioUrlIndex + 1 >= audioUrls.size()) {
+            return false;
+        }
+        requestAudioReopen(audioGrabber.getTimestamp(), ReopenReason.MIRROR);
+        return true;
+    }
+
+    /**
+     * 镜像都不可用时（通常是签名地址过期返回 403）重新解析，在视频解码线程中从中断处继续。
+     * 这里只登记，重新解析与打开在释放 masterGrabberLock 后由 {@link #reopenVideo()} 完成
+     *
+     * @return 不能再恢复时返回 false
+     */
+    private boolean recoverVideo(long timestamp) {
+        if (isClosed.get() || !canRecover(videoRecoveries)) {
+            return false;
+        }
+        videoRecoveries++;
+        LOGGER.warn("视频流读取失败，重新获取播放地址 (第 {} 次)", videoRecoveries);
+        requestVideoReopen(timestamp, ReopenReason.REFRESH);
+        return true;
+    }
+
+    private boolean recoverAudio(long timestamp) {
+        if (isClosed.get() || !canRecover(audioRecoveries)) {
+            return false;
+        }
+        audioRecoveries++;
+        LOGGER.warn("音频流读取失败，重新获取播放地址 (第 {} 次)", audioRecoveries);
+        requestAudioReopen(timestamp, ReopenReason.REFRESH);
+        return true;
+    }
+
+    /**
+     * 持有 masterGrabberLock 时登记，位置最后写入，解码线程读到位置时其余字段已经可见
+     */
+    private void requestVideoReopen(long timestamp, ReopenReason reason) {
+        videoReopenReason = reason;
+        videoReopenGeneration = switchGeneration.get();
+        videoReopenAt = timestamp;
+    }
+
+    private void requestAudioReopen(long timestamp, ReopenReason reason) {
+        audioReopenReason = reason;
+        audioReopenGeneration = switchGeneration.get();
+        audioReopenAt = timestamp;
+    }
+
+    /**
+     * 在视频解码线程中、未持有 masterGrabberLock 时打开登记的地址并定位，只在替换时短暂持有锁。
+     * 期间 seek 或关闭时放弃，seek 会自行登记新的位置
+     *
+     * @return 无法恢复时返回 false
+     */
+    private boolean reopenVideo() {
+        long timestamp = videoReopenAt;
+        int generation = videoReopenGeneration;
+        var reason = videoReopenReason;
+        // 先标记再清除登记，seek 总能看到其中之一
+        videoReopening = true;
+        videoReopenAt = -1;
+        try {
+            if (generation != switchGeneration.get()) {
+                return !isClosed.get();
+            }
+            return reopenVideo(timestamp, generation, reason);
+        } finally {
+            videoReopening = false;
+        }
+    }
+
+    private boolean reopenVideo(long timestamp, int generation, ReopenReason reason) {
+        List<String> urls;
+        int first;
+        if (reason == ReopenReason.MIRROR || reason == ReopenReason.SEEK) {
+            urls = videoUrls;
+            first = reason == ReopenReason.MIRROR ? videoUrlIndex + 1 : videoUrlIndex;
+        } else {
+            var fresh = reason == ReopenReason.REFRESH ? refreshInfo() : freshInfo;
+            if (reason == ReopenReason.REFRESH) {
+                videoRefreshGeneration = refreshGeneration;
+            }
+            if (fresh == null) {
+                return reason != ReopenReason.REFRESH;
+            }
+            urls = freshVideoUrls(fresh);
+            first = 0;
+        }
+        for (int i = first; i < urls.size() && !isClosed.get(); i++) {
+            if (reason == ReopenReason.MIRROR) {
+                MirrorSelector.getInstance().reportFailure(urls.get(i - 1));
+                LOGGER.warn("视频流读取卡住，切换到镜像 {}", hostOf(urls.get(i)));
+            }
+            FFmpegFrameGrabber grabber;
+            try {
+                grabber = openAt(urls.get(i), true, timestamp);
+                applyDiscard(grabber, appliedVideoDecodeMode);
+            } catch (FFmpegFrameGrabber.Exception e) {
+                LOGGER.warn("打开 {} 失败", hostOf(urls.get(i)), e);
+                continue;
+            }
+            masterGrabberLock.readLock().lock();
+            try {
+                if (isClosed.get() || generation != switchGeneration.get()) {
+                    releaseGrabber(grabber);
+                    return !isClosed.get();
+                }
+                installVideoGrabber(grabber);
+                videoUrls = urls;
+                videoUrlIndex = i;
+            } finally {
+                masterGrabberLock.readLock().unlock();
+            }
+            if (reason == ReopenReason.FRESH || reason == ReopenReason.REFRESH) {
+                LOGGER.info("视频流已换用新地址，从 {}s 继续", timestamp / 1_000_000);
+            }
+            return true;
+        }
+        // 当前地址与镜像都打不开时重新解析
+        if (reason == ReopenReason.MIRROR || reason == ReopenReason.SEEK) {
+            return recoverVideo(timestamp);
+        }
+        return reason != ReopenReason.REFRESH;
+    }
+
+    /**
+     * 在音频解码线程中、未持有 audioGrabberLock 时打开登记的地址并定位
+     */
+    private boolean reopenAudio() {
+        long timestamp = audioReopenAt;
+        int generation = audioReopenGeneration;
+        var reason = audioReopenReason;
+        // 先标记再清除登记，seek 总能看到其中之一
+        audioReopening = true;
+        audioReopenAt = -1;
+        try {
+            if (generation != switchGeneration.get()) {
+                return !isClosed.get();
+            }
+            return reopenAudio(timestamp, generation, reason);
+        } finally {
+            audioReopening = false;
+        }
+    }
+
+    private boolean reopenAudio(long timestamp, int generation, ReopenReason reason) {
+        List<String> urls;
+        int first;
+        if (reason == ReopenReason.MIRROR || reason == ReopenReason.SEEK) {
+            urls = audioUrls;
+            first = reason == ReopenReason.MIRROR ? audioUrlIndex + 1 : audioUrlIndex;
+        } else {
+            var fresh = reason == ReopenReason.REFRESH ? refreshInfo() : freshInfo;
+            if (reason == ReopenReason.REFRESH) {
+                audioRefreshGeneration = refreshGeneration;
+            }
+            if (fresh == null) {
+                return reason != ReopenReason.REFRESH;
+            }
+            urls = withMirrors(fresh.audioUrl, fresh.audioMirrors);
+            first = 0;
+        }
+        for (int i = first; i < urls.size() && !isClosed.get(); i++) {
+            if (reason == ReopenReason.MIRROR) {
+                MirrorSelector.getInstance().reportFailure(urls.get(i - 1));
+                LOGGER.warn("音频流读取卡住，切换到镜像 {}", hostOf(urls.get(i)));
+            }
+            FFmpegFrameGrabber grabber;
+            try {
+                grabber = openAt(urls.get(i), false, timestamp);
+            } catch (FFmpegFrameGrabber.Exception e) {
+                LOGGER.warn("打开 {} 失败", hostOf(urls.get(i)), e);
+                continue;
+            }
+            audioGrabberLock.readLock().lock();
+            try {
+                if (isClosed.get() || generation != switchGeneration.get()) {
+                    releaseGrabber(grabber);
+                    return !isClosed.get();
+                }
+                installAudioGrabber(grabber);
+                audioUrls = urls;
+                audioUrlIndex = i;
+            } finally {
+                audioGrabberLock.readLock().unlock();
+            }
+            if (reason == ReopenReason.FRESH || reason == ReopenReason.REFRESH) {
+                LOGGER.info("音频流已换用新地址，从 {}s 继续", timestamp / 1_000_000);
+            }
+            return true;
+        }
+        if (reason == ReopenReason.MIRROR || reason == ReopenReason.SEEK) {
+            return recoverAudio(timestamp);
+        }
+        return reason != ReopenReason.REFRESH;
+    }
+
+    /**
+     * 重新解析播放地址，两个解码线程先后失败时共用同一次结果
+     */
+    private @Nullable MediaInfo refreshInfo() {
+        if (refresher == null) {
+            return null;
+        }
+        synchronized (refreshLock) {
+            var fresh = freshInfo;
+            if (fresh != null && System.currentTimeMillis() - freshInfoTime < REFRESH_REUSE_MS) {
+                return fresh;
+            }
+            try {
+                fresh = refresher.call();
+            } catch (Exception e) {
+                // 不再持有锁时关闭会中断正在进行的重新解析
+                if (!isClosed.get()) {
+                    LOGGER.warn("重新获取播放地址失败", e);
+                }
+                return null;
+            }
+            if (fresh == null || fresh.streamUrl == null) {
+                return null;
+            }
+            freshInfo = fresh;
+            freshInfoTime = System.currentTimeMillis();
+            urlExpiry = urlExpiry(fresh);
+            refreshGeneration++;
+            return fresh;
+        }
+    }
+
+    /**
+     * 播放地址快要过期时在后台重新解析，解码线程随后在当前位置换用新地址
+     */
+    private void checkUrlExpiry() {
+        long expiry = urlExpiry;
+        if (refresher == null || expiry <= 0 || System.currentTimeMillis() < expiry - EXPIRY_REFRESH_LEAD_MS) {
+            return;
+        }
+        if (!expiryRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        backgroundExecutor.execute(() -> {
+            try {
+                LOGGER.info("播放地址即将过期，重新获取");
+                if (refreshInfo() == null) {
+                    // 稍后再试，不要在每次读取时重试
+                    urlExpiry = System.currentTimeMillis() + EXPIRY_REFRESH_LEAD_MS;
+                }
+            } finally {
+                expiryRefreshing.set(false);
+            }
+        });
+    }
+
+    private static long urlExpiry(MediaInfo info) {
+        long expiry = -1;
+        for (String url : new String[]{info.streamUrl, info.audioUrl}) {
+            long urlExpiry = MediaInfoCache.parseUrlExpiry(url);
+            if (urlExpiry > 0 && (expiry < 0 || urlExpiry < expiry)) {
+                expiry = urlExpiry;
+            }
+        }
+        return expiry;
+    }
+
+    /**
+     * 新解析结果中当前清晰度的地址与镜像，自适应码率的各清晰度同时更新
+     */
+    private List<String> freshVideoUrls(MediaInfo fresh) {
+        List<String> urls = withMirrors(fresh.streamUrl, fresh.streamMirrors);
+        if (abr != null && fresh.videoRepresentations != null && info.videoRepresentations != null) {
+            for (var representation : info.videoRepresentations) {
+                for (var freshRepresentation : fresh.videoRepresentations) {
+                    if (freshRepresentation.qualityId == representation.qualityId) {
+                        representation.url = freshRepresentation.url;
+                        representation.backupUrls = freshRepresentation.backupUrls;
+                    }
+                }
+            }
+            var current = abr.getRepresentation(abr.getCurrent());
+            urls = withMirrors(current.url, current.backupUrls);
+        }
+        return urls;
+    }
+
+    /**
+     * 替换视频流并释放旧的，需持有 masterGrabberLock
+     */
+    private void installVideoGrabber(FFmpegFrameGrabber grabber) {
+        FFmpegFrameGrabber old;
+        synchronized (switchLock) {
+            old = masterGrabber;
+            masterGrabber = grabber;
+        }
+        applyVideoScale(appliedVideoScale);
+        lastBytesRead = -1;
+        releaseGrabber(old);
+    }
+
+    /**
+     * 替换音频流并释放旧的，需持有 audioGrabberLock
+     */
+    private void installAudioGrabber(FFmpegFrameGrabber grabber) {
+        var old = audioGrabber;
+        audioGrabber = grabber;
+        releaseGrabber(old);
+    }
+
+    private FFmpegFrameGrabber openAt(String url, boolean isVideoGrabber, long timestamp) throws FFmpegFrameGrabber.Exception {
+        var grabber = openGrabber(url, isVideoGrabber, timestamp > 0 && !isLiveStream());
+        try {
+            if (timestamp > 0 && !isLiveStream()) {
+                grabber.setTimestamp(timestamp);
+            }
+        } catch (FFmpegFrameGrabber.Exception e) {
+            releaseGrabber(grabber);
+            throw e;
+        }
+        return grabber;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return String.valueOf(URI.create(url).getHost());
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private void abandonPendingSwitch() {
+        FFmpegFrameGrabber pending;
+        synchronized (switchLock) {
+            switchGeneration.incrementAndGet();
+            pending = pendingGrabber;
+            pendingGrabber = null;
+        }
+        if (pending != null) {
+            releaseGrabber(pending);
+        }
+    }
+
+    private void releaseGrabber(FFmpegFrameGrabber grabber) {
+        try {
+            grabber.releaseUnsafe();
+        } catch (Exception e) {
+            LOGGER.warn("释放 grabber 时出错", e);
+        }
+        closeInput(grabber);
+        FfmpegInterruptFlags.remove(grabber);
+        FfmpegProcessImageFlags.remove(grabber);
+    }
+
+    /**
+     * releaseUnsafe 只重置自定义输入而不关闭，HLS 预读的刷新与多连接读取的预读下载需要在这里停止
+     */
+    private void closeInput(FFmpegFrameGrabber grabber) {
+        var hls = hlsReaders.remove(grabber);
+        if (hls != null) {
+            hls.close();
+        }
+        var reader = rangeReaders.remove(grabber);
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * 自适应码率状态，未启用时为 null
+     */
+    public @Nullable AbrController getAbr() {
+        return abr;
+    }
+
     private void audioDecodeLoop() {
         try {
+            long lastCpuTime = FrameTimeController.getCurrentThreadCpuTime();
             while (!Thread.currentThread().isInterrupted() && !isClosed.get()) {
+                lastCpuTime = recordDecodeCpu(lastCpuTime);
+                if (audioReopenAt >= 0 && !reopenAudio()) {
+                    break;
+                }
                 audioGrabberLock.readLock().lock();
                 try {
-                    if (masterGrabber != null &&  audioGrabber.getTimestamp() - masterGrabber.getTimestamp() > 1_000_000){
+                    if (audioReopenAt >= 0) {
+                        continue;
+                    }
+                    if (masterGrabber != null && !masterParked && audioGrabber.getTimestamp() - masterGrabber.getTimestamp() > 1_000_000){
                         Thread.sleep(10);
                         continue;
                     }
@@ -270,14 +1247,46 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
                         break;
                     }
 
-                    Frame frame = audioGrabber.grabSamples();
+                    if (audioRefreshGeneration != refreshGeneration) {
+                        audioRefreshGeneration = refreshGeneration;
+                        if (freshInfo != null) {
+                            requestAudioReopen(audioGrabber.getTimestamp(), ReopenReason.FRESH);
+                            continue;
+                        }
+                    }
+
+                    long timestampBefore = audioGrabber.getTimestamp();
+                    audioWatch.begin();
+                    var grabEvent = new MediaEvents.Grab();
+                    grabEvent.begin();
+                    Frame frame;
+                    try {
+                        frame = audioGrabber.grabSamples();
+                    } catch (FFmpegFrameGrabber.Exception e) {
+                        if ((audioWatch.end() && failoverAudio()) || recoverAudio(timestampBefore)) {
+                            continue;
+                        }
+                        throw e;
+                    } finally {
+                        grabEvent.mediaId = metrics.id;
+                        grabEvent.stream = "audio";
+                        grabEvent.commit();
+                    }
+                    if (audioWatch.end() && (failoverAudio() || recoverAudio(timestampBefore))) {
+                        continue;
+                    }
                     if (frame == null) {
+                        if (isPrematureEnd(timestampBefore) && recoverAudio(timestampBefore)) {
+                            continue;
+                        }
+                        audioEnded = true;
                         break;
                     }
+                    audioRecoveries = 0;
 
                     boolean isAudio = frame.samples != null && configuration.enableAudio;
                     if (isAudio) {
-                        audioQueue.put(new FfmpegAudioData(frame));
+                        putAudio(new FfmpegAudioData(frame));
                     }
 
                 } catch (FFmpegFrameGrabber.Exception e) {
@@ -300,6 +1309,43 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
         }
     }
 
+    /**
+     * 统计解码线程的 CPU 时间
+     */
+    private static long recordDecodeCpu(long lastCpuTime) {
+        if (lastCpuTime < 0) return lastCpuTime;
+        long cpuTime = FrameTimeController.getCurrentThreadCpuTime();
+        FrameTimeController.getInstance().recordDecodeCpu(cpuTime - lastCpuTime);
+        return cpuTime;
+    }
+
+    @Override
+    public void sampleMetrics(MediaMetrics.State state) {
+        state.videoQueueSize = videoQueue.size();
+        state.audioQueueSize = audioQueue.size();
+        videoQueue.forEach(data -> state.videoQueueBytes += data.frame.buffer.capacity());
+        for (var data : audioQueue) {
+            var samples = data.ffmpegFrame.samples;
+            if (samples == null) {
+                continue;
+            }
+            for (var buffer : samples) {
+                state.audioQueueBytes += (long) buffer.capacity() * bytesPerElement(buffer);
+            }
+        }
+    }
+
+    private static int bytesPerElement(Buffer buffer) {
+        return switch (buffer) {
+            case ShortBuffer ignored -> 2;
+            case IntBuffer ignored -> 4;
+            case FloatBuffer ignored -> 4;
+            case LongBuffer ignored -> 8;
+            case DoubleBuffer ignored -> 8;
+            default -> 1;
+        };
+    }
+
     public boolean isEnded() {
         return masterDecoderThread == null;
     }
@@ -311,23 +1357,28 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
     }
 
     public long getLength() {
+        var hls = hlsReaders.get(getPrimaryGrabber());
+        if (hls != null) {
+            return hls.getDurationUs();
+        }
         return getPrimaryGrabber().getLengthInTime();
     }
 
 
     @Override
     public long getDuration() {
+        if (masterParked && audioGrabber != null) return audioGrabber.getTimestamp();
         return getPrimaryGrabber().getTimestamp();
     }
 
     public int getWidth() {
         if (masterGrabber == null) return -1;
-        return masterGrabber.getImageWidth();
+        return sourceWidth > 0 ? sourceWidth : masterGrabber.getImageWidth();
     }
 
     public int getHeight() {
         if (masterGrabber == null) return -1;
-        return masterGrabber.getImageHeight();
+        return sourceHeight > 0 ? sourceHeight : masterGrabber.getImageHeight();
     }
 
     @Override
@@ -349,12 +1400,37 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
         masterGrabberLock.writeLock().lock();
         audioGrabberLock.writeLock().lock();
         try {
-            masterGrabber.setTimestamp(timestamp);
-            if (audioGrabber != null)
-                audioGrabber.setTimestamp(timestamp);
+            abandonPendingSwitch();
+            if (videoReopenAt >= 0 || videoReopening) {
+                // 正在换用镜像或新地址，旧的流已经不可用，在新的位置重新登记
+                requestVideoReopen(timestamp, videoReopenReason);
+            } else if (hlsReaders.containsKey(masterGrabber)) {
+                requestVideoReopen(timestamp, ReopenReason.SEEK);
+            } else {
+                masterGrabber.setTimestamp(timestamp);
+            }
+            if (audioGrabber != null) {
+                if (audioReopenAt >= 0 || audioReopening) {
+                    requestAudioReopen(timestamp, audioReopenReason);
+                } else if (hlsReaders.containsKey(audioGrabber)) {
+                    requestAudioReopen(timestamp, ReopenReason.SEEK);
+                } else {
+                    audioGrabber.setTimestamp(timestamp);
+                }
+            }
+            audioEnded = false;
         } catch (FFmpegFrameGrabber.Exception e) {
-            LOGGER.error("seek failed.", e);
-            throw new RuntimeException(e);
+            // 地址过期后 seek 需要重新请求，会以 403 失败，由解码线程在释放锁后重新解析并打开
+            if (refresher == null) {
+                LOGGER.error("seek failed.", e);
+                throw new RuntimeException(e);
+            }
+            LOGGER.warn("seek 失败，重新获取播放地址");
+            requestVideoReopen(timestamp, ReopenReason.REFRESH);
+            if (audioGrabber != null) {
+                requestAudioReopen(timestamp, ReopenReason.REFRESH);
+            }
+            audioEnded = false;
         } finally {
             masterGrabberLock.writeLock().unlock();
             audioGrabberLock.writeLock().unlock();
@@ -375,22 +1451,27 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
             audioDecodeThread.interrupt();
         }
 
+        abandonPendingSwitch();
         masterGrabberLock.writeLock().lock();
         audioGrabberLock.writeLock().lock();
         try {
             try {
                 if (masterGrabber != null) {
-                    masterGrabber.stop();
-                    masterGrabber.release();
+                    masterGrabber.releaseUnsafe();
+                    FfmpegInterruptFlags.remove(masterGrabber);
                 }
                 if (audioGrabber != null) {
-                    audioGrabber.stop();
-                    audioGrabber.release();
+                    audioGrabber.releaseUnsafe();
+                    FfmpegInterruptFlags.remove(audioGrabber);
                 }
 
             } catch (Exception e) {
                 LOGGER.warn("停止或释放 grabber 时出错", e);
             }
+            hlsReaders.values().forEach(HlsSegmentReader::close);
+            hlsReaders.clear();
+            rangeReaders.values().forEach(ParallelRangeReader::close);
+            rangeReaders.clear();
         } finally {
             masterGrabberLock.writeLock().unlock();
             audioGrabberLock.writeLock().unlock();
@@ -413,15 +1494,56 @@ public class FfmpegMediaDecoder implements Closeable, IMediaDecoder {
         clearQueue();
     }
 
+    private void clearVideoQueue() {
+        videoQueue.clear(FfmpegVideoData::close);
+    }
+
     private void clearQueue() {
-        videoQueueLock.writeLock().lock();
-        try {
-            videoQueue.forEach(FfmpegVideoData::close);
-            audioQueue.forEach(FfmpegAudioData::close);
-            videoQueue.clear();
-            audioQueue.clear();
-        } finally {
-            videoQueueLock.writeLock().unlock();
+        videoQueue.clear(FfmpegVideoData::close);
+        audioQueue.forEach(FfmpegAudioData::close);
+        audioQueue.clear();
+    }
+
+    /**
+     * 记录正在进行的读取开始的时间，用于判断读取是否卡住
+     */
+    /**
+     * 重新打开视频流或音频流的原因
+     */
+    private enum ReopenReason {
+        // 换用另一个线程或过期检查已经重新解析的地址
+        FRESH,
+        // 先重新解析
+        REFRESH,
+        // 换用当前地址的下一个镜像
+        MIRROR,
+        // HLS 预读不能 seek，在当前地址上重新打开并定位
+        SEEK
+    }
+
+    private static class ReadWatch {
+        private volatile long since = 0;
+        private volatile boolean stalled = false;
+
+        void begin() {
+            stalled = false;
+            since = System.currentTimeMillis();
+        }
+
+        /**
+         * @return 本次读取是否因卡住被中断
+         */
+        boolean end() {
+            since = 0;
+            return stalled;
+        }
+
+        boolean check() {
+            long start = since;
+            if (start > 0 && Configs.MIRROR_STALL_TIMEOUT_MS > 0 && System.currentTimeMillis() - start > Configs.MIRROR_STALL_TIMEOUT_MS) {
+                stalled = true;
+            }
+            return stalled;
         }
     }
-}
\ No newline at end of file
+}
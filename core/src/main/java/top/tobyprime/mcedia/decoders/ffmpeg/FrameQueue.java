@@ -0,0 +1,90 @@
+package top.tobyprime.mcedia.decoders.ffmpeg;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 视频帧在解码线程、播放线程与渲染线程之间的交接：解码线程放入，播放线程取出过期帧，渲染线程查看当前帧。
+ * 取出与清空持有写锁，查看持有读锁，渲染线程拿到的帧不会同时被取出并关闭
+ */
+class FrameQueue<T> {
+    private final LinkedBlockingDeque<T> queue;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    FrameQueue(int capacity) {
+        this.queue = new LinkedBlockingDeque<>(capacity);
+    }
+
+    /**
+     * 队列已满时等待
+     */
+    void put(T frame) throws InterruptedException {
+        queue.put(frame);
+    }
+
+    /**
+     * @return 队列已满时返回 false
+     */
+    boolean offer(T frame) {
+        return queue.offer(frame);
+    }
+
+    @Nullable T peek() {
+        lock.readLock().lock();
+        try {
+            return queue.peek();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Nullable T poll() {
+        lock.writeLock().lock();
+        try {
+            return queue.poll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 队首的帧满足条件时取出
+     */
+    @Nullable T pollIf(Predicate<? super T> condition) {
+        lock.writeLock().lock();
+        try {
+            var frame = queue.peek();
+            if (frame == null || !condition.test(frame)) {
+                return null;
+            }
+            return queue.poll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空队列，每个被移除的帧交给 onRemove 释放
+     */
+    void clear(Consumer<? super T> onRemove) {
+        lock.writeLock().lock();
+        try {
+            queue.forEach(onRemove);
+            queue.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    void forEach(Consumer<? super T> action) {
+        queue.forEach(action);
+    }
+}
@@ -0,0 +1,165 @@
+package top.tobyprime.mcedia.decoders.ffmpeg;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.core.PersistentLruCache;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流探测结果的 LRU 缓存，按内容（去掉主机与查询参数的地址路径）索引，同一资源的不同镜像与重新签名的地址共用一条记录。
+ * 命中时用很小的 probesize/analyzeduration 打开，打开后与记录比对，不一致时按完整探测重新打开。
+ * javacv 不能直接注入编解码参数，extradata 与时间基仍由 FFmpeg 从文件头读取，省下的是探测阶段的下载与试解码
+ */
+public class ProbeCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProbeCache.class);
+    private static final ProbeCache INSTANCE = new ProbeCache();
+    // 命中时的探测参数，足够读完 fMP4/FLV 的文件头
+    public static final int FAST_PROBESIZE = 65536;
+    public static final int FAST_ANALYZE_DURATION_US = 100_000;
+
+    private final PersistentLruCache<Entry> entries = new PersistentLruCache<>("ProbeCache", "探测缓存", "probe_cache.json", Entry.class,
+            entry -> entry.key, () -> Configs.PROBE_CACHE_SIZE, entry -> true, entry -> entry);
+
+    private final AtomicLong coldOpens = new AtomicLong();
+    private final AtomicLong coldOpenMs = new AtomicLong();
+    private final AtomicLong warmOpens = new AtomicLong();
+    private final AtomicLong warmOpenMs = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+
+    private ProbeCache() {
+    }
+
+    public static ProbeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 同一地址的视频与音频解码分别探测，参数不同，分开记录
+     */
+    public static @Nullable String key(String url, boolean isVideoGrabber) {
+        String path;
+        try {
+            path = URI.create(url).getPath();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (path == null || path.isEmpty() || path.equals("/")) {
+            return null;
+        }
+        return (isVideoGrabber ? "v:" : "a:") + path;
+    }
+
+    @Nullable
+    public Entry get(@Nullable String key) {
+        if (key == null || Configs.PROBE_CACHE_SIZE <= 0) {
+            return null;
+        }
+        return entries.get(key);
+    }
+
+    /**
+     * 记录完整探测的结果，只记录点播流，直播流的参数可能随时变化
+     */
+    public void put(@Nullable String key, FFmpegFrameGrabber grabber) {
+        if (key == null || Configs.PROBE_CACHE_SIZE <= 0 || grabber.getLengthInTime() <= 0) {
+            return;
+        }
+        entries.put(key, Entry.of(key, grabber));
+    }
+
+    public void invalidate(@Nullable String key) {
+        if (key == null) {
+            return;
+        }
+        if (entries.remove(key)) {
+            mismatches.incrementAndGet();
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void recordOpen(long ms, boolean warm) {
+        (warm ? warmOpens : coldOpens).incrementAndGet();
+        (warm ? warmOpenMs : coldOpenMs).addAndGet(ms);
+    }
+
+    /**
+     * @return 完整探测打开的平均耗时 (ms)，没有记录时为 -1
+     */
+    public double getColdOpenMs() {
+        long count = coldOpens.get();
+        return count == 0 ? -1 : (double) coldOpenMs.get() / count;
+    }
+
+    /**
+     * @return 命中缓存打开的平均耗时 (ms)，没有记录时为 -1
+     */
+    public double getWarmOpenMs() {
+        long count = warmOpens.get();
+        return count == 0 ? -1 : (double) warmOpenMs.get() / count;
+    }
+
+    public long getColdOpens() {
+        return coldOpens.get();
+    }
+
+    public long getWarmOpens() {
+        return warmOpens.get();
+    }
+
+    public long getMismatches() {
+        return mismatches.get();
+    }
+
+    public static class Entry {
+        String key;
+        String format;
+        String videoCodec;
+        String audioCodec;
+        int width;
+        int height;
+        int sampleRate;
+
+        private static Entry of(String key, FFmpegFrameGrabber grabber) {
+            var entry = new Entry();
+            entry.key = key;
+            entry.format = grabber.getFormat();
+            entry.videoCodec = grabber.getVideoCodecName();
+            entry.audioCodec = grabber.getAudioCodecName();
+            entry.width = grabber.getImageWidth();
+            entry.height = grabber.getImageHeight();
+            entry.sampleRate = grabber.getSampleRate();
+            return entry;
+        }
+
+        /**
+         * 快速探测的结果与记录一致，且没有缺失的参数
+         */
+        public boolean matches(FFmpegFrameGrabber grabber) {
+            if (videoCodec != null && (grabber.getImageWidth() <= 0 || grabber.getImageHeight() <= 0)) {
+                return false;
+            }
+            if (audioCodec != null && grabber.getSampleRate() <= 0) {
+                return false;
+            }
+            return Objects.equals(format, grabber.getFormat())
+                    && Objects.equals(videoCodec, grabber.getVideoCodecName())
+                    && Objects.equals(audioCodec, grabber.getAudioCodecName())
+                    && width == grabber.getImageWidth()
+                    && height == grabber.getImageHeight()
+                    && sampleRate == grabber.getSampleRate();
+        }
+    }
+}
@@ -5,16 +5,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.core.BaseMediaPlay;
 import top.tobyprime.mcedia.core.MediaInfo;
+import top.tobyprime.mcedia.core.MediaInfoCache;
 import top.tobyprime.mcedia.media_play_resolvers.MediaPlayFactory;
+import top.tobyprime.mcedia.media_play_resolvers.MediaResolveException;
+import top.tobyprime.mcedia.net.HttpService;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.HashMap;
-import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,7 +30,7 @@ public class DouyinVideoMediaPlay extends BaseMediaPlay {
 
     public DouyinVideoMediaPlay(String sharedLink) {
         this.sharedLink = sharedLink;
-        CompletableFuture.runAsync(this::load, MediaPlayFactory.EXECUTOR);
+        load();
 
     }
 
@@ -78,97 +79,125 @@ public class DouyinVideoMediaPlay extends BaseMediaPlay {
 
     public void load() {
         loading = true;
-        try {
-            var shareUrl = getSharedUrl(sharedLink);
-            String videoPageUrl;
-            HttpResponse<String> videoPageResponse;
-            try (HttpClient client = HttpClient.newBuilder()
-                    .followRedirects(HttpClient.Redirect.ALWAYS) // 自动重定向
-                    .connectTimeout(Duration.ofSeconds(5))
-                    .build()) {
-
-                // 第一次请求，拿到重定向后的真实URL
-                HttpRequest firstRequest = HttpRequest.newBuilder()
-                        .uri(URI.create(getSharedUrl(sharedLink)))
-                        .timeout(Duration.ofSeconds(5))
-                        .header("User-Agent", USER_AGENT)
-                        .GET()
-                        .build();
-
-                HttpResponse<Void> firstResponse = client.send(firstRequest, HttpResponse.BodyHandlers.discarding());
-
-                if (firstResponse.statusCode() / 100 != 2) {
-                    logger.error("请求分享链接失败，code: {}, url: {}", firstResponse.statusCode(), shareUrl);
+        MediaPlayFactory.resolveShared("douyin", "www.iesdouyin.com", "douyin:" + sharedLink, () -> fetchMediaInfo(false)).whenComplete((info, e) -> {
+            try {
+                if (e == null) {
+                    setMediaInfo(info);
+                    setStatus("获取视频信息完成");
                     return;
                 }
+                var cause = MediaPlayFactory.unwrap(e);
+                if (cause instanceof MediaResolveException resolveException) {
+                    setStatus(resolveException.getMessage());
+                } else if (cause instanceof IOException || cause instanceof InterruptedException) {
+                    logger.error("网络请求异常", cause);
+                    setStatus("网络请求异常");
+                } else {
+                    logger.error("解析异常", cause);
+                    setStatus("解析异常");
+                }
+            } finally {
+                loading = false;
+            }
+        });
+    }
 
-                // 获取重定向后的最终URL
-                URI finalUri = firstResponse.uri();
-                String finalUrl = finalUri.toString();
+    @Override
+    public MediaInfo refreshMediaInfo() {
+        return MediaPlayFactory.resolveShared("douyin", "www.iesdouyin.com", "douyin-refresh:" + sharedLink, () -> fetchMediaInfo(true)).join();
+    }
 
-                // 提取视频ID
-                String videoId = extractVideoId(finalUrl);
-                if (videoId == null) {
-                    logger.error("无法从URL中提取视频ID: {}", finalUrl);
-                    return;
-                }
+    private MediaInfo fetchMediaInfo(boolean refresh) throws Exception {
+        var shareUrl = getSharedUrl(sharedLink);
+        if (shareUrl == null) {
+            throw new MediaResolveException("请求视频失败");
+        }
+        // 分享短链指向固定的视频，命中时连重定向也不需要请求
+        String shareKey = "douyin-share:" + extractVideoId(shareUrl);
+        if (refresh) {
+            MediaInfoCache.getInstance().invalidate(shareKey);
+        }
+        var cached = MediaInfoCache.getInstance().get(shareKey);
+        if (cached != null) {
+            return cached;
+        }
+        var client = HttpService.getInstance();
 
-                videoPageUrl = "https://www.iesdouyin.com/share/video/" + videoId;
+        // 第一次请求，拿到重定向后的真实URL
+        HttpRequest firstRequest = HttpRequest.newBuilder()
+                .uri(URI.create(getSharedUrl(sharedLink)))
+                .timeout(Duration.ofSeconds(5))
+                .header("User-Agent", USER_AGENT)
+                .GET()
+                .build();
 
-                // 请求视频详情页
-                HttpRequest videoPageRequest = HttpRequest.newBuilder()
-                        .uri(URI.create(videoPageUrl))
-                        .timeout(Duration.ofSeconds(5))
-                        .header("User-Agent", USER_AGENT)
-                        .GET()
-                        .build();
+        HttpResponse<Void> firstResponse = client.send(firstRequest, HttpResponse.BodyHandlers.discarding());
 
-                videoPageResponse = client.send(videoPageRequest, HttpResponse.BodyHandlers.ofString());
-            }
+        if (firstResponse.statusCode() / 100 != 2) {
+            logger.error("请求分享链接失败，code: {}, url: {}", firstResponse.statusCode(), shareUrl);
+            throw new MediaResolveException("请求视频失败");
+        }
 
-            if (videoPageResponse.statusCode() / 100 != 2) {
-                logger.error("请求视频详情页失败，code: {}, url: {}", videoPageResponse.statusCode(), videoPageUrl);
-                setStatus("请求视频失败");
-                return;
-            }
+        // 获取重定向后的最终URL
+        URI finalUri = firstResponse.uri();
+        String finalUrl = finalUri.toString();
 
-            String html = videoPageResponse.body();
+        // 提取视频ID
+        String videoId = extractVideoId(finalUrl);
+        if (videoId == null) {
+            logger.error("无法从URL中提取视频ID: {}", finalUrl);
+            throw new MediaResolveException("请求视频失败");
+        }
 
-            // 提取 JSON 数据
-            String routerDataJsonStr = extractRouterDataJson(html);
-            if (routerDataJsonStr == null) {
-                logger.error("无法从HTML中提取 _ROUTER_DATA JSON");
-                setStatus("请求视频失败");
-                return;
-            }
+        if (refresh) {
+            MediaInfoCache.getInstance().invalidate("douyin:" + videoId);
+        }
+        cached = MediaInfoCache.getInstance().get("douyin:" + videoId);
+        if (cached != null) {
+            MediaInfoCache.getInstance().put(shareKey, cached);
+            return cached;
+        }
 
-            // 解析并返回无水印视频地址
-            var info = getMediaInfo(routerDataJsonStr);
-            if (info == null) {
-                setStatus("读取视频信息失败");
-                return;
-            }
-            info.headers = new HashMap<>();
+        String videoPageUrl = "https://www.iesdouyin.com/share/video/" + videoId;
 
-            info.headers.put("User-Agent", USER_AGENT);
-            info.headers.put("Referer", "https://www.douyin.com/");
-            info.headers.put("Origin", "https://www.douyin.com/");
+        // 请求视频详情页
+        HttpRequest videoPageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(videoPageUrl))
+                .timeout(Duration.ofSeconds(5))
+                .header("User-Agent", USER_AGENT)
+                .GET()
+                .build();
 
-            setMediaInfo(info);
-            setStatus("获取视频信息完成");
-            return;
+        HttpResponse<String> videoPageResponse = client.send(videoPageRequest, HttpResponse.BodyHandlers.ofString());
 
-        } catch (IOException | InterruptedException e) {
-            logger.error("网络请求异常", e);
-            setStatus("网络请求异常");
-            return;
-        } catch (Exception e) {
-            logger.error("解析异常", e);
-            setStatus("解析异常");
-            return;
-        } finally {
-            loading = false;
+        if (videoPageResponse.statusCode() / 100 != 2) {
+            logger.error("请求视频详情页失败，code: {}, url: {}", videoPageResponse.statusCode(), videoPageUrl);
+            throw new MediaResolveException("请求视频失败");
         }
+
+        String html = videoPageResponse.body();
+
+        // 提取 JSON 数据
+        String routerDataJsonStr = extractRouterDataJson(html);
+        if (routerDataJsonStr == null) {
+            logger.error("无法从HTML中提取 _ROUTER_DATA JSON");
+            throw new MediaResolveException("请求视频失败");
+        }
+
+        // 解析并返回无水印视频地址
+        var info = getMediaInfo(routerDataJsonStr);
+        if (info == null) {
+            throw new MediaResolveException("读取视频信息失败");
+        }
+        info.headers = new HashMap<>();
+
+        info.headers.put("User-Agent", USER_AGENT);
+        info.headers.put("Referer", "https://www.douyin.com/");
+        info.headers.put("Origin", "https://www.douyin.com/");
+
+        MediaInfoCache.getInstance().put("douyin:" + extractVideoId(videoPageUrl), info);
+        MediaInfoCache.getInstance().put(shareKey, info);
+        return info;
     }
 
     private MediaInfo getMediaInfo(String jsonStr) {
@@ -187,6 +216,7 @@ public class DouyinVideoMediaPlay extends BaseMediaPlay {
             mediaInfo.author = item.getJSONObject("author").getString("nickname");
             mediaInfo.platform = "抖音";
             mediaInfo.rawUrl = this.sharedLink;
+            mediaInfo.seekable = true;
             mediaInfo.streamUrl = url.replace("playwm", "play");
             return mediaInfo;
         } catch (Exception e) {
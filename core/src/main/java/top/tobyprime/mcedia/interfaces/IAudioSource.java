@@ -16,5 +16,18 @@ public interface IAudioSource {
 
     void clearBuffer();
 
+    /**
+     * 释放底层音频资源，下次上传时重新创建
+     */
+    default void release() {
+    }
+
     int getId();
+
+    /**
+     * 播放中缓冲区耗尽导致停止的次数
+     */
+    default long getUnderrunCount() {
+        return 0;
+    }
 }
@@ -1,6 +1,8 @@
 package top.tobyprime.mcedia.interfaces;
 
 import org.jetbrains.annotations.Nullable;
+import top.tobyprime.mcedia.decoders.VideoDecodeMode;
+import top.tobyprime.mcedia.metrics.MediaMetrics;
 
 import java.io.Closeable;
 import java.util.concurrent.LinkedBlockingDeque;
@@ -25,11 +27,27 @@ public interface IMediaDecoder extends Closeable {
      */
     void setLowOverhead(boolean lowOverhead);
 
+    /**
+     * 切换视频解码模式，切回完整解码时从下一个关键帧开始输出
+     */
+    void setVideoDecodeMode(VideoDecodeMode mode);
+
+    /**
+     * 视频输出缩放比例，1 为原始分辨率
+     */
+    void setVideoScale(float scale);
+
     /**
      * 解码结束
      */
     boolean isEnded();
 
+    /**
+     * 采样解码队列的深度与占用的内存
+     */
+    default void sampleMetrics(MediaMetrics.State state) {
+    }
+
     /**
      * 视频长度
      */
@@ -41,12 +59,12 @@ public interface IMediaDecoder extends Closeable {
     long getDuration();
 
     /**
-     * 宽度
+     * 原始视频宽度
      */
     int getWidth();
 
     /**
-     * 高度
+     * 原始视频高度
      */
     int getHeight();
 
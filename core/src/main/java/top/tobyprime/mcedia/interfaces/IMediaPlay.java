@@ -35,6 +35,15 @@ public interface IMediaPlay extends Closeable {
 
     @Nullable String getStatus();
 
+    /**
+     * 播放地址过期或失效时跳过缓存重新解析，不触发媒体信息更新事件，正在播放的媒体自行换用新地址
+     *
+     * @return 新的媒体信息，不支持时返回 null
+     */
+    default @Nullable MediaInfo refreshMediaInfo() throws Exception {
+        return null;
+    }
+
     boolean isLoading();
 
     @Override
@@ -20,6 +20,13 @@ public interface IMediaPlayerInstance {
      */
     public double isTargeting();
 
+    /**
+     * 屏幕高度，用于估计屏幕在视野中的大小
+     */
+    public default double getScreenSize() {
+        return 1;
+    }
+
     /**
      * 强制移除
      */
@@ -5,4 +5,10 @@ import top.tobyprime.mcedia.decoders.VideoFrame;
 
 public interface ITexture {
     void upload(@Nullable VideoFrame frame);
+
+    /**
+     * 释放显存，下次上传时重新分配
+     */
+    default void release() {
+    }
 }
@@ -7,9 +7,9 @@ import top.tobyprime.mcedia.core.BaseMediaPlay;
 import top.tobyprime.mcedia.core.EmptyMediaPlay;
 import top.tobyprime.mcedia.interfaces.IMediaPlay;
 import top.tobyprime.mcedia.interfaces.IMediaPlayResolver;
+import top.tobyprime.mcedia.net.HttpService;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -23,11 +23,6 @@ public class BilibiliShortLinkMediaPlayResolver implements IMediaPlayResolver {
     // 匹配 b23.tv 和 v.douyin.com 的短链接
     private static final Pattern SHORT_URL_PATTERN = Pattern.compile("https://(b23\\.tv)/\\S+");
 
-    private static final HttpClient client = HttpClient.newBuilder()
-            .followRedirects(HttpClient.Redirect.ALWAYS) // 关键：让HttpClient自动处理重定向
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
-
     /**
      * 异步展开短链接
      * @param url 输入的URL
@@ -53,7 +48,7 @@ public class BilibiliShortLinkMediaPlayResolver implements IMediaPlayResolver {
                         .build();
 
                 // 发送请求，BodyHandlers.discarding()表示我们不关心响应体，只关心最终的URI
-                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                HttpResponse<Void> response = HttpService.getInstance().send(request, HttpResponse.BodyHandlers.discarding());
 
                 if (response.statusCode() >= 200 && response.statusCode() < 300) {
                     String finalUrl = response.uri().toString();
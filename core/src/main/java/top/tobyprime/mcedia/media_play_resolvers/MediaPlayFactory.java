@@ -3,21 +3,32 @@ package top.tobyprime.mcedia.media_play_resolvers;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
 import top.tobyprime.mcedia.core.EmptyMediaPlay;
+import top.tobyprime.mcedia.core.MediaInfo;
 import top.tobyprime.mcedia.interfaces.IMediaPlay;
 import top.tobyprime.mcedia.interfaces.IMediaPlayResolver;
+import top.tobyprime.mcedia.metrics.LatencyHistogram;
+import top.tobyprime.mcedia.metrics.OpenTimeline;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 public class MediaPlayFactory {
-    public static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
-        Thread t = new Thread(r, "MediaInfoLoader-Async");
-        t.setDaemon(true);
-        return t;
-    });
+    // 解析主要是阻塞的 HTTP 请求，每个任务一个虚拟线程，并发由每个 host 的许可数限制
+    public static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("MediaInfoLoader-", 0).factory());
     private static final Logger LOGGER = LoggerFactory.getLogger(MediaPlayFactory.class);
+    private static final Map<String, Semaphore> HOST_PERMITS = new ConcurrentHashMap<>();
+    // 相同媒体的并发解析共享同一个 future
+    private static final Map<String, CompletableFuture<MediaInfo>> IN_FLIGHT = new ConcurrentHashMap<>();
+    public static final Map<String, LatencyHistogram> RESOLVE_LATENCY = new ConcurrentHashMap<>();
     static public List<IMediaPlayResolver> resolvers = List.of(
             new BilibiliVideoMediaPlayResolver(),
             new BilibiliBangumiMediaPlayResolver(),
@@ -44,6 +55,57 @@ public class MediaPlayFactory {
         return new EmptyMediaPlay("无法解析视频: " + url);
     }
 
+    /**
+     * 异步解析媒体信息，相同 key 的并发请求只会执行一次
+     *
+     * @param resolverName 用于延迟统计
+     * @param host         请求的主机，同一主机的并发数受 {@link Configs#RESOLVE_MAX_PER_HOST} 限制
+     * @param key          去重用的键
+     */
+    public static CompletableFuture<MediaInfo> resolveShared(String resolverName, String host, String key, Callable<MediaInfo> fetcher) {
+        var created = new CompletableFuture<MediaInfo>();
+        var existing = IN_FLIGHT.putIfAbsent(key, created);
+        if (existing != null) {
+            LOGGER.info("合并重复的解析请求: {}", key);
+            return existing;
+        }
+
+        // 解析期间的 HTTP 请求记录到发起解析的打开的时间线中
+        var timeline = OpenTimeline.current();
+        EXECUTOR.execute(() -> {
+            long start = System.nanoTime();
+            var permits = HOST_PERMITS.computeIfAbsent(host, h -> new Semaphore(Math.max(1, Configs.RESOLVE_MAX_PER_HOST)));
+            OpenTimeline.bind(timeline);
+            try {
+                permits.acquire();
+                try {
+                    created.complete(fetcher.call());
+                } finally {
+                    permits.release();
+                }
+            } catch (Throwable e) {
+                created.completeExceptionally(e);
+            } finally {
+                OpenTimeline.bind(null);
+                IN_FLIGHT.remove(key, created);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                RESOLVE_LATENCY.computeIfAbsent(resolverName, n -> new LatencyHistogram()).record(millis);
+                LOGGER.info("{} 解析 {} 耗时 {}ms", resolverName, key, millis);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * 取出 {@link #resolveShared} 失败的原始异常
+     */
+    public static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
     public static boolean isSupported(String url) {
         for (IMediaPlayResolver resolver : resolvers) {
             if (resolver.isSupported(url)) {
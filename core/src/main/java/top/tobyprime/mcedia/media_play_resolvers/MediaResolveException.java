@@ -0,0 +1,23 @@
+package top.tobyprime.mcedia.media_play_resolvers;
+
+import java.io.Serial;
+
+/**
+ * 解析媒体失败，message 为展示给玩家的状态
+ */
+public class MediaResolveException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // 需要登录后重新解析
+    public final boolean requireLogin;
+
+    public MediaResolveException(String message) {
+        this(message, false);
+    }
+
+    public MediaResolveException(String message, boolean requireLogin) {
+        super(message);
+        this.requireLogin = requireLogin;
+    }
+}
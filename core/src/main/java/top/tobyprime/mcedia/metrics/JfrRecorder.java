@@ -0,0 +1,77 @@
+package top.tobyprime.mcedia.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 在游戏内启动一次 JFR 录制：默认配置加上全部 {@link MediaEvents}，停止时写入 ~/.mcedia 目录
+ */
+public class JfrRecorder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JfrRecorder.class);
+    private static final JfrRecorder INSTANCE = new JfrRecorder();
+    private static final Path OUTPUT_DIR = Path.of(System.getProperty("user.home"), ".mcedia");
+
+    private @Nullable Recording recording = null;
+
+    private JfrRecorder() {
+    }
+
+    public static JfrRecorder getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * @return 已经在录制时返回 false
+     */
+    public synchronized boolean start() throws IOException, ParseException {
+        if (recording != null) {
+            return false;
+        }
+        var recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName("Mcedia");
+        for (var event : MediaEvents.ALL) {
+            recording.enable(event);
+        }
+        recording.start();
+        this.recording = recording;
+        LOGGER.info("开始 JFR 录制");
+        return true;
+    }
+
+    /**
+     * 停止录制并写入文件
+     *
+     * @return 录制文件，没有在录制时为 null
+     */
+    public synchronized @Nullable Path stop() throws IOException {
+        var recording = this.recording;
+        if (recording == null) {
+            return null;
+        }
+        this.recording = null;
+        try {
+            Files.createDirectories(OUTPUT_DIR);
+            var path = OUTPUT_DIR.resolve("mcedia-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr");
+            recording.stop();
+            recording.dump(path);
+            LOGGER.info("JFR 录制已写入 {}", path);
+            return path;
+        } finally {
+            recording.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package top.tobyprime.mcedia.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按指数分桶的延迟直方图（默认毫秒），线程安全，用于统计 p50/p90/p99
+ */
+public class LatencyHistogram {
+    // 桶上界：1, 2, 4 ... 约 65 秒，最后一个桶收纳更大的值
+    private static final int BUCKETS = 18;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile long max = 0;
+    private final String unit;
+
+    public LatencyHistogram() {
+        this("ms");
+    }
+
+    /**
+     * @param unit 记录值的单位，只用于显示
+     */
+    public LatencyHistogram(String unit) {
+        this.unit = unit;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public void record(long millis) {
+        millis = Math.max(0, millis);
+        int bucket = millis <= 1 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis - 1));
+        counts.incrementAndGet(bucket);
+        count.increment();
+        sum.add(millis);
+        if (millis > max) {
+            max = millis;
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * 近似分位数，返回所在桶的上界
+     *
+     * @param quantile 0~1
+     */
+    public long getPercentile(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return i == BUCKETS - 1 ? max : Math.min(1L << i, max);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d 平均=%.0f%s p50=%d%s p90=%d%s p99=%d%s 最大=%d%s",
+                getCount(), getMean(), unit, getPercentile(0.5), unit, getPercentile(0.9), unit, getPercentile(0.99), unit, getMax(), unit);
+    }
+}
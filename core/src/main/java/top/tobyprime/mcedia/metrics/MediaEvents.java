@@ -0,0 +1,109 @@
+package top.tobyprime.mcedia.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+import java.util.List;
+
+/**
+ * 媒体管线热路径上的 JFR 事件，默认关闭，关闭时只有一次 isEnabled 检查。
+ * 每个事件带有所属媒体的 id（即 {@link MediaMetrics#id}），可以在录制中按播放器区分卡顿发生在哪个阶段。
+ * 通过 {@link JfrRecorder} 或在 JFR 配置中启用 mcedia.* 事件
+ */
+public final class MediaEvents {
+    public static final List<Class<? extends MediaEvent>> ALL = List.of(
+            Grab.class, Convert.class, QueueWait.class, PlaybackLateness.class,
+            AudioUpload.class, TextureUpload.class, Open.class, Seek.class);
+
+    private MediaEvents() {
+    }
+
+    @Category("Mcedia")
+    @Enabled(false)
+    @StackTrace(false)
+    public abstract static class MediaEvent extends Event {
+        @Label("Media Id")
+        public int mediaId;
+    }
+
+    @Name("mcedia.Grab")
+    @Label("Grab")
+    @Description("FFmpegFrameGrabber 读取并解码一帧")
+    public static class Grab extends MediaEvent {
+        @Label("Stream")
+        public String stream;
+    }
+
+    @Name("mcedia.Convert")
+    @Label("Frame Conversion")
+    @Description("解码后的视频帧转换为连续 RGBA")
+    public static class Convert extends MediaEvent {
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("mcedia.QueueWait")
+    @Label("Queue Wait")
+    @Description("解码线程等待帧队列空位")
+    @Threshold("1 ms")
+    public static class QueueWait extends MediaEvent {
+        @Label("Queue")
+        public String queue;
+    }
+
+    @Name("mcedia.PlaybackLateness")
+    @Label("Playback Lateness")
+    @Description("Media.playLoop 醒来时比计划的播放时间晚了多少")
+    public static class PlaybackLateness extends MediaEvent {
+        @Label("Lateness")
+        @Timespan(Timespan.NANOSECONDS)
+        public long lateness;
+    }
+
+    @Name("mcedia.AudioUpload")
+    @Label("AL Upload")
+    @Description("在 OpenAL 线程上传一个音频缓冲")
+    public static class AudioUpload extends MediaEvent {
+        @Label("Samples")
+        public int samples;
+    }
+
+    @Name("mcedia.TextureUpload")
+    @Label("Texture Upload")
+    @Description("在渲染线程上传一帧视频纹理")
+    public static class TextureUpload extends MediaEvent {
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+    }
+
+    @Name("mcedia.Open")
+    @Label("Open")
+    @Description("打开一个 grabber，包括探测")
+    public static class Open extends MediaEvent {
+        @Label("Host")
+        public String host;
+        @Label("Video")
+        public boolean video;
+        @Label("Probe Cache Hit")
+        public boolean cached;
+    }
+
+    @Name("mcedia.Seek")
+    @Label("Seek")
+    public static class Seek extends MediaEvent {
+        @Label("Target")
+        @Timespan(Timespan.MICROSECONDS)
+        public long target;
+    }
+}
@@ -0,0 +1,126 @@
+package top.tobyprime.mcedia.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个媒体的运行指标。计数与直方图在解码、播放、渲染线程中直接写入，
+ * 队列深度等状态由 {@link Sampler} 在采样时读取，帧率按两次采样间的计数差计算
+ */
+public class MediaMetrics {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    public final int id = NEXT_ID.incrementAndGet();
+    public final String name;
+
+    public final LongAdder decodedVideoFrames = new LongAdder();
+    public final LongAdder decodedAudioFrames = new LongAdder();
+    // 没来得及上传就被更新的帧取代的视频帧
+    public final LongAdder droppedVideoFrames = new LongAdder();
+    // 解码后转换为连续 RGBA 的耗时 (us)
+    public final LatencyHistogram convertTime = new LatencyHistogram("us");
+    // 纹理上传耗时 (us)
+    public final LatencyHistogram uploadTime = new LatencyHistogram("us");
+    // 最近上传的视频帧相对音频时钟的偏差 (us)，正数为视频超前
+    private volatile long avDriftUs = 0;
+
+    private volatile Sampler sampler = null;
+    private long lastVideoFrames = 0;
+    private long lastAudioFrames = 0;
+    private volatile double videoFps = 0;
+    private volatile double audioFps = 0;
+    private volatile State state = new State();
+
+    public MediaMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 采样时读取队列与音频源的状态
+     */
+    public interface Sampler {
+        void sample(State state);
+    }
+
+    /**
+     * 采样得到的状态
+     */
+    public static class State {
+        public int videoQueueSize;
+        public long videoQueueBytes;
+        public int audioQueueSize;
+        public long audioQueueBytes;
+        public long audioUnderruns;
+    }
+
+    public void setSampler(Sampler sampler) {
+        this.sampler = sampler;
+    }
+
+    public void setAvDrift(long us) {
+        this.avDriftUs = us;
+    }
+
+    public long getAvDriftUs() {
+        return avDriftUs;
+    }
+
+    public double getVideoFps() {
+        return videoFps;
+    }
+
+    public double getAudioFps() {
+        return audioFps;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    void sample(long elapsedMs) {
+        long video = decodedVideoFrames.sum();
+        long audio = decodedAudioFrames.sum();
+        if (elapsedMs > 0) {
+            videoFps = (video - lastVideoFrames) * 1000.0 / elapsedMs;
+            audioFps = (audio - lastAudioFrames) * 1000.0 / elapsedMs;
+        }
+        lastVideoFrames = video;
+        lastAudioFrames = audio;
+        var sampler = this.sampler;
+        if (sampler != null) {
+            var state = new State();
+            sampler.sample(state);
+            this.state = state;
+        }
+    }
+
+    Map<String, Object> toMap() {
+        var state = this.state;
+        var map = new LinkedHashMap<String, Object>();
+        map.put("id", id);
+        map.put("name", name);
+        map.put("video_queue", state.videoQueueSize);
+        map.put("video_queue_bytes", state.videoQueueBytes);
+        map.put("audio_queue", state.audioQueueSize);
+        map.put("audio_queue_bytes", state.audioQueueBytes);
+        map.put("decode_fps", videoFps);
+        map.put("audio_frames_per_second", audioFps);
+        map.put("decoded_video_frames", decodedVideoFrames.sum());
+        map.put("dropped_video_frames", droppedVideoFrames.sum());
+        map.put("al_underruns", state.audioUnderruns);
+        map.put("av_drift_ms", avDriftUs / 1000.0);
+        map.put("convert_us", MetricsRegistry.toMap(convertTime));
+        map.put("upload_us", MetricsRegistry.toMap(uploadTime));
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        var state = this.state;
+        return String.format("解码 %.1ffps，丢帧 %d，视频队列 %d (%.1fMB)，音频队列 %d，音频欠载 %d，音画偏差 %.0fms，转换 p90 %dus，上传 p90 %dus",
+                videoFps, droppedVideoFrames.sum(), state.videoQueueSize, state.videoQueueBytes / 1024.0 / 1024.0,
+                state.audioQueueSize, state.audioUnderruns, avDriftUs / 1000.0, convertTime.getPercentile(0.9), uploadTime.getPercentile(0.9));
+    }
+}
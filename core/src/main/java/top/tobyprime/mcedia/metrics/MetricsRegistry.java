@@ -0,0 +1,171 @@
+package top.tobyprime.mcedia.metrics;
+
+import com.google.gson.Gson;
+import org.bytedeco.javacpp.Pointer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 运行指标的注册表：按名称注册的计数器、仪表与直方图，以及各媒体的 {@link MediaMetrics}。
+ * 写入都是无锁的，每秒采样一次，可按 {@link Configs#METRICS_EXPORT_INTERVAL_SECONDS} 定期以 JSON 行追加到文件
+ */
+public class MetricsRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRegistry.class);
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    private static final long SAMPLE_INTERVAL_MS = 1000;
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Set<MediaMetrics> media = ConcurrentHashMap.newKeySet();
+    private final Gson gson = new Gson();
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "Mcedia-Metrics-Export");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long lastSampleTime = System.currentTimeMillis();
+    private long lastExportTime = System.currentTimeMillis();
+
+    // 视频帧像素缓冲区（MemoryUtil 分配）当前占用的字节数
+    public final LongAdder frameBytes = counter("memory.frame_bytes");
+
+    private MetricsRegistry() {
+        gauge("memory.javacpp_bytes", Pointer::totalBytes);
+        gauge("memory.physical_bytes", Pointer::physicalBytes);
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 取得或创建计数器，应在初始化时取得并保存，避免在热路径上查表
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name, String unit) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram(unit));
+    }
+
+    /**
+     * 注册已有的直方图
+     */
+    public void register(String name, LatencyHistogram histogram) {
+        histograms.put(name, histogram);
+    }
+
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public MediaMetrics openMedia(String name) {
+        var metrics = new MediaMetrics(name);
+        media.add(metrics);
+        return metrics;
+    }
+
+    public void closeMedia(MediaMetrics metrics) {
+        media.remove(metrics);
+    }
+
+    /**
+     * 每 tick 由 {@link top.tobyprime.mcedia.core.PlayerInstanceManagerRegistry} 调用
+     */
+    public void update() {
+        long now = System.currentTimeMillis();
+        if (now - lastSampleTime < SAMPLE_INTERVAL_MS) {
+            return;
+        }
+        long elapsed = now - lastSampleTime;
+        lastSampleTime = now;
+        media.forEach(metrics -> metrics.sample(elapsed));
+
+        if (Configs.METRICS_EXPORT_INTERVAL_SECONDS > 0 && now - lastExportTime >= Configs.METRICS_EXPORT_INTERVAL_SECONDS * 1000L) {
+            lastExportTime = now;
+            exportNow();
+        }
+    }
+
+    /**
+     * 立即把当前指标追加到 {@link Configs#METRICS_EXPORT_PATH}
+     */
+    public void exportNow() {
+        var snapshot = snapshot();
+        exportExecutor.execute(() -> export(snapshot));
+    }
+
+    /**
+     * 当前所有指标，用于显示与导出
+     */
+    public Map<String, Object> snapshot() {
+        var map = new LinkedHashMap<String, Object>();
+        map.put("time", System.currentTimeMillis());
+        var values = new TreeMap<String, Object>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsDouble()));
+        histograms.forEach((name, histogram) -> values.put(name, toMap(histogram)));
+        map.put("global", values);
+        var mediaList = new ArrayList<Map<String, Object>>();
+        media.forEach(metrics -> mediaList.add(metrics.toMap()));
+        map.put("media", mediaList);
+        return map;
+    }
+
+    public Map<String, Double> getGauges() {
+        var values = new TreeMap<String, Double>();
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsDouble()));
+        return values;
+    }
+
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    public Map<String, Long> getCounters() {
+        var values = new TreeMap<String, Long>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    static Map<String, Object> toMap(LatencyHistogram histogram) {
+        var map = new LinkedHashMap<String, Object>();
+        map.put("unit", histogram.getUnit());
+        map.put("count", histogram.getCount());
+        map.put("mean", histogram.getMean());
+        map.put("p50", histogram.getPercentile(0.5));
+        map.put("p90", histogram.getPercentile(0.9));
+        map.put("p99", histogram.getPercentile(0.99));
+        map.put("max", histogram.getMax());
+        return map;
+    }
+
+    private void export(Map<String, Object> snapshot) {
+        var path = Path.of(Configs.METRICS_EXPORT_PATH);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, gson.toJson(snapshot) + "\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (Exception e) {
+            LOGGER.warn("导出运行指标到 {} 失败", path, e);
+        }
+    }
+}
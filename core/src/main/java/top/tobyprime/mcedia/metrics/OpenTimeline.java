@@ -0,0 +1,160 @@
+package top.tobyprime.mcedia.metrics;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 一次打开从开始解析到首次上传纹理的时间线，各阶段的耗时同时计入全局直方图。
+ * 打开线程通过 {@link #bind} 绑定当前时间线，期间的 HTTP 请求与 grabber 打开自动记录到其中；
+ * 首帧等阶段在播放路径上标记，只写入预先分配的数组
+ */
+public class OpenTimeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OpenTimeline.class);
+    private static final ThreadLocal<OpenTimeline> CURRENT = new ThreadLocal<>();
+    private static final LatencyHistogram[] PHASE_LATENCY = new LatencyHistogram[Phase.values().length];
+    // 单次打开最多记录的 HTTP 请求数，之后只计数
+    private static final int MAX_HTTP_CALLS = 32;
+
+    static {
+        for (int i = 0; i < PHASE_LATENCY.length; i++) {
+            PHASE_LATENCY[i] = new LatencyHistogram();
+            MetricsRegistry.getInstance().register("open." + Phase.values()[i].name().toLowerCase(), PHASE_LATENCY[i]);
+        }
+    }
+
+    public enum Phase {
+        MEDIA_INFO("获取地址"),
+        OPEN_START("开始打开"),
+        VIDEO_OPENED("视频流打开"),
+        AUDIO_OPENED("音频流打开"),
+        FIRST_FRAME("首帧解码"),
+        FIRST_AUDIO("首个音频缓冲"),
+        FIRST_UPLOAD("首次上传纹理");
+
+        public final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private final String name;
+    private final long startNanos = System.nanoTime();
+    // 各阶段相对开始的时间 (ns)，0 表示尚未到达
+    private final AtomicLongArray phases = new AtomicLongArray(Phase.values().length);
+    private final AtomicInteger httpCount = new AtomicInteger();
+    private final String[] httpLabels = new String[MAX_HTTP_CALLS];
+    private final long[] httpStarts = new long[MAX_HTTP_CALLS];
+    private final long[] httpDurations = new long[MAX_HTTP_CALLS];
+
+    public OpenTimeline(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 当前线程绑定的时间线，没有时为 null
+     */
+    public static @Nullable OpenTimeline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 把时间线绑定到当前线程，返回之前绑定的时间线，用完后应重新绑定回去
+     */
+    public static @Nullable OpenTimeline bind(@Nullable OpenTimeline timeline) {
+        var previous = CURRENT.get();
+        if (timeline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timeline);
+        }
+        return previous;
+    }
+
+    public static LatencyHistogram getLatency(Phase phase) {
+        return PHASE_LATENCY[phase.ordinal()];
+    }
+
+    public static void resetLatency() {
+        for (var histogram : PHASE_LATENCY) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * 标记到达某一阶段，只记录第一次
+     */
+    public void mark(Phase phase) {
+        long elapsed = Math.max(1, System.nanoTime() - startNanos);
+        if (!phases.compareAndSet(phase.ordinal(), 0, elapsed)) {
+            return;
+        }
+        PHASE_LATENCY[phase.ordinal()].record(elapsed / 1_000_000);
+        if (phase == Phase.FIRST_UPLOAD) {
+            LOGGER.info("打开 {} 的时间线: {}", name, this);
+        }
+    }
+
+    public boolean isMarked(Phase phase) {
+        return phases.get(phase.ordinal()) != 0;
+    }
+
+    /**
+     * @return 到达该阶段的时间 (ms)，尚未到达时为 -1
+     */
+    public long getMillis(Phase phase) {
+        long elapsed = phases.get(phase.ordinal());
+        return elapsed == 0 ? -1 : elapsed / 1_000_000;
+    }
+
+    public void recordHttp(String label, long startNanos, long endNanos) {
+        int index = httpCount.getAndIncrement();
+        if (index >= MAX_HTTP_CALLS) {
+            return;
+        }
+        httpStarts[index] = startNanos - this.startNanos;
+        httpDurations[index] = endNanos - startNanos;
+        httpLabels[index] = label;
+    }
+
+    public int getHttpCount() {
+        return httpCount.get();
+    }
+
+    /**
+     * 各 HTTP 请求的开始时间、耗时与地址，每行一个
+     */
+    public String describeHttp() {
+        var builder = new StringBuilder();
+        int count = Math.min(httpCount.get(), MAX_HTTP_CALLS);
+        for (int i = 0; i < count; i++) {
+            if (httpLabels[i] == null) {
+                continue;
+            }
+            builder.append(String.format("+%dms %dms %s%n", httpStarts[i] / 1_000_000, httpDurations[i] / 1_000_000, httpLabels[i]));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder();
+        for (var phase : Phase.values()) {
+            long millis = getMillis(phase);
+            if (millis >= 0) {
+                builder.append(phase.label).append(' ').append(millis).append("ms，");
+            }
+        }
+        int count = Math.min(httpCount.get(), MAX_HTTP_CALLS);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += httpDurations[i];
+        }
+        builder.append("HTTP ").append(httpCount.get()).append(" 次 共 ").append(total / 1_000_000).append("ms");
+        return builder.toString();
+    }
+}
@@ -1,19 +1,49 @@
 package top.tobyprime.mcedia.mixin;
 
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.ffmpeg.avformat.AVInputFormat;
+import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.ffmpeg.global.avformat;
 import org.bytedeco.javacv.FFmpegFrameGrabber;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import top.tobyprime.mcedia.decoders.ffmpeg.FfmpegInterruptFlags;
 import top.tobyprime.mcedia.decoders.ffmpeg.FfmpegProcessImageFlags;
 
 @Mixin(FFmpegFrameGrabber.class)
 public class MixinFFmpegFrameGrabber {
     // 不要新增任何字段、方法，否则会导致 debug 卡死
+    @Shadow(remap = false)
+    private AVFormatContext oc;
+
     @Inject(method = "processImage()V", at = @At("HEAD"), cancellable = true, remap = false)
     public void onProcessImage(CallbackInfo ci) {
         if (!FfmpegProcessImageFlags.isEnableProcessImage((FFmpegFrameGrabber)(Object) this)) {
             ci.cancel();
         }
     }
+
+    // HTTP 连接在打开时复制中断回调，URL 输入需要预先分配带回调的 AVFormatContext，连接与重连中的读取才能被中断
+    @Redirect(method = "startUnsafe(Z)V", at = @At(value = "INVOKE", target = "Lorg/bytedeco/ffmpeg/global/avformat;avformat_open_input(Lorg/bytedeco/ffmpeg/avformat/AVFormatContext;Ljava/lang/String;Lorg/bytedeco/ffmpeg/avformat/AVInputFormat;Lorg/bytedeco/ffmpeg/avutil/AVDictionary;)I"), remap = false)
+    public int onOpenInput(AVFormatContext context, String filename, AVInputFormat format, AVDictionary options) {
+        if (context.isNull()) {
+            var allocated = FfmpegInterruptFlags.allocContext((FFmpegFrameGrabber) (Object) this);
+            if (allocated != null) {
+                oc = allocated;
+                context = allocated;
+            }
+        }
+        return avformat.avformat_open_input(context, filename, format, options);
+    }
+
+    // 输入流方式打开时 AVFormatContext 由 javacv 预先分配，在探测流信息前安装中断回调
+    @Inject(method = "startUnsafe(Z)V", at = @At(value = "INVOKE", target = "Lorg/bytedeco/ffmpeg/global/avformat;avformat_find_stream_info(Lorg/bytedeco/ffmpeg/avformat/AVFormatContext;Lorg/bytedeco/javacpp/PointerPointer;)I"), remap = false)
+    public void onFindStreamInfo(boolean findStreamInfo, CallbackInfo ci) {
+        var grabber = (FFmpegFrameGrabber) (Object) this;
+        FfmpegInterruptFlags.install(grabber, grabber.getFormatContext());
+    }
 }
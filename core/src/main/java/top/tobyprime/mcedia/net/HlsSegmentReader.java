@@ -0,0 +1,438 @@
+package top.tobyprime.mcedia.net;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.core.BandwidthGovernor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * HLS 播放列表的读取：并行下载接下来的若干个分片，按顺序拼接后交给 FFmpeg 解复用。
+ * 直播列表按目标时长定期重新加载，只追加新分片。不支持 seek，需要 seek 时由 FFmpeg 直接打开播放列表
+ */
+public class HlsSegmentReader extends InputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HlsSegmentReader.class);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long POLL_INTERVAL_MS = 100;
+    // 直播从倒数第几个分片开始播放，与 FFmpeg 的 live_start_index 默认值相同
+    private static final int LIVE_START_SEGMENTS = 3;
+    private static final double EWMA_ALPHA = 0.3;
+    private static final Pattern ATTRIBUTE = Pattern.compile("([A-Z0-9-]+)=(\"[^\"]*\"|[^,]*)");
+    private static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Mcedia-Hls-", 0).factory());
+
+    private final String playlistUrl;
+    private final Map<String, String> headers;
+    private final double targetDuration;
+    private final int prefetch;
+    private final long maxBufferedBytes;
+    private final @Nullable BandwidthGovernor.Channel bandwidth;
+    // 点播列表的总时长 (微秒)，直播为 -1
+    private final long durationUs;
+    // 尚未读取的分片，按序号排列
+    private final LinkedList<Segment> pending = new LinkedList<>();
+    private final Map<Long, CompletableFuture<byte[]>> downloads = new ConcurrentHashMap<>();
+    private long lastSequence;
+    private volatile boolean ended;
+    private volatile boolean closed = false;
+    private BooleanSupplier interrupted = () -> false;
+
+    private byte[] current = new byte[0];
+    private int currentPos = 0;
+    private @Nullable String currentMap;
+    // 分片下载时长 / 分片时长，大于 1 时下载跟不上播放
+    private volatile double downloadRatio = -1;
+
+    private HlsSegmentReader(String playlistUrl, Map<String, String> headers, Playlist playlist, @Nullable BandwidthGovernor.Channel bandwidth) {
+        this.playlistUrl = playlistUrl;
+        this.bandwidth = bandwidth;
+        this.headers = headers;
+        this.targetDuration = playlist.targetDuration > 0 ? playlist.targetDuration : 6;
+        this.prefetch = Math.max(1, Configs.HLS_PREFETCH_SEGMENTS);
+        this.maxBufferedBytes = Math.max(1, Configs.HLS_BUFFER_MB) * 1024L * 1024L;
+        this.ended = playlist.ended;
+        this.durationUs = playlist.ended ? (long) (playlist.segments.stream().mapToDouble(Segment::duration).sum() * 1_000_000) : -1;
+        var segments = playlist.segments;
+        if (!playlist.ended && segments.size() > LIVE_START_SEGMENTS) {
+            segments = segments.subList(segments.size() - LIVE_START_SEGMENTS, segments.size());
+        }
+        pending.addAll(segments);
+        lastSequence = playlist.segments.getLast().sequence;
+        schedule();
+        if (!ended) {
+            EXECUTOR.execute(this::reloadLoop);
+        }
+    }
+
+    /**
+     * 读取播放列表，多码率列表选择码率最高的一路。加密、按字节范围划分的列表返回 null，由 FFmpeg 处理
+     */
+    public static @Nullable HlsSegmentReader open(String url, Map<String, String> headers, @Nullable BandwidthGovernor.Channel bandwidth) throws IOException, InterruptedException {
+        if (Configs.HLS_PREFETCH_SEGMENTS <= 0 || !url.startsWith("http") || !url.contains(".m3u8")) {
+            return null;
+        }
+        var playlist = Playlist.parse(url, fetchPlaylist(url, headers));
+        if (playlist.bestVariant != null) {
+            url = playlist.bestVariant;
+            playlist = Playlist.parse(url, fetchPlaylist(url, headers));
+        }
+        if (playlist.unsupported || playlist.segments.isEmpty()) {
+            return null;
+        }
+        LOGGER.info("HLS 预读: {} 个分片，{}，同时下载 {} 个", playlist.segments.size(), playlist.ended ? "点播" : "直播", Configs.HLS_PREFETCH_SEGMENTS);
+        return new HlsSegmentReader(url, headers, playlist, bandwidth);
+    }
+
+    private static String fetchPlaylist(String url, Map<String, String> headers) throws IOException, InterruptedException {
+        var response = HttpService.getInstance().send(buildRequest(url, headers), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("获取播放列表失败: HTTP " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private static HttpRequest buildRequest(String url, Map<String, String> headers) {
+        // 与 ParallelRangeReader 相同，并行的分片使用各自的连接
+        var builder = HttpRequest.newBuilder(URI.create(url))
+                .version(HttpClient.Version.HTTP_1_1)
+                .header("Accept-Encoding", "identity");
+        headers.forEach(builder::header);
+        return builder.build();
+    }
+
+    /**
+     * 返回 true 时正在等待的读取立即失败，用于关闭、打开被取代与读取卡住
+     */
+    public void setInterrupt(BooleanSupplier interrupted) {
+        this.interrupted = interrupted;
+    }
+
+    /**
+     * 从自定义输入读取时 FFmpeg 无法得知时长，由播放列表给出
+     *
+     * @return 点播列表的总时长 (微秒)，直播为 -1
+     */
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    /**
+     * 最近分片的下载时长与分片时长之比，大于 1 时下载跟不上播放，还没有下载完成的分片时为负数
+     */
+    public double getDownloadRatio() {
+        return downloadRatio;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n <= 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("已关闭");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (currentPos >= current.length) {
+            if (!nextSegment()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, current.length - currentPos);
+        System.arraycopy(current, currentPos, b, off, n);
+        currentPos += n;
+        return n;
+    }
+
+    /**
+     * 切换到下一个分片，直播时等待播放列表更新
+     *
+     * @return 播放列表已结束时返回 false
+     */
+    private boolean nextSegment() throws IOException {
+        Segment segment;
+        CompletableFuture<byte[]> download;
+        while (true) {
+            checkInterrupted();
+            synchronized (this) {
+                var next = pending.pollFirst();
+                if (next != null) {
+                    segment = next;
+                    download = downloads.computeIfAbsent(next.sequence, s -> download(next));
+                    break;
+                }
+                if (ended) {
+                    return false;
+                }
+                try {
+                    wait(POLL_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        byte[] data;
+        try {
+            data = await(download);
+        } finally {
+            downloads.remove(segment.sequence);
+        }
+        schedule();
+        if (segment.mapUrl != null && !segment.mapUrl.equals(currentMap)) {
+            // fMP4 分片需要先输出初始化分片
+            String mapUrl = segment.mapUrl;
+            byte[] init = await(CompletableFuture.supplyAsync(() -> fetch(mapUrl, -1), EXECUTOR));
+            byte[] joined = new byte[init.length + data.length];
+            System.arraycopy(init, 0, joined, 0, init.length);
+            System.arraycopy(data, 0, joined, init.length, data.length);
+            data = joined;
+            currentMap = segment.mapUrl;
+        }
+        current = data;
+        currentPos = 0;
+        return true;
+    }
+
+    /**
+     * 开始下载接下来的分片，已下载未读取的数据超过上限时只保证下一个分片在下载
+     */
+    private synchronized void schedule() {
+        int count = 0;
+        for (var segment : pending) {
+            if (count >= prefetch || (count > 0 && bufferedBytes() >= maxBufferedBytes)) {
+                break;
+            }
+            downloads.computeIfAbsent(segment.sequence, s -> download(segment));
+            count++;
+        }
+    }
+
+    private long bufferedBytes() {
+        long bytes = 0;
+        for (var download : downloads.values()) {
+            if (download.isDone() && !download.isCompletedExceptionally()) {
+                bytes += download.join().length;
+            }
+        }
+        return bytes;
+    }
+
+    private CompletableFuture<byte[]> download(Segment segment) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            byte[] data = fetch(segment.url, segment.sequence);
+            double ratio = (System.nanoTime() - start) / 1e9 / Math.max(0.1, segment.duration);
+            downloadRatio = downloadRatio < 0 ? ratio : downloadRatio + EWMA_ALPHA * (ratio - downloadRatio);
+            if (ratio > 1) {
+                LOGGER.info("HLS 分片 {} 下载耗时 {}s，超过分片时长 {}s", segment.sequence,
+                        String.format("%.1f", ratio * segment.duration), String.format("%.1f", segment.duration));
+            }
+            return data;
+        }, EXECUTOR);
+    }
+
+    private byte[] fetch(String url, long sequence) {
+        IOException failure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !closed; attempt++) {
+            try {
+                var response = HttpService.getInstance().send(buildRequest(url, headers), HttpResponse.BodyHandlers.ofInputStream());
+                try (var in = response.body()) {
+                    if (response.statusCode() == 200) {
+                        return bandwidth != null ? bandwidth.readAll(in, () -> closed) : in.readAllBytes();
+                    }
+                }
+                failure = new IOException("分片 " + sequence + " 响应异常: HTTP " + response.statusCode());
+                // 地址过期等错误重试也不会成功，交给解码器重新解析
+                if (response.statusCode() >= 400 && response.statusCode() < 500) {
+                    break;
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new InterruptedIOException();
+                break;
+            }
+        }
+        throw new CompletionException(failure != null ? failure : new IOException("已关闭"));
+    }
+
+    private byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        while (true) {
+            checkInterrupted();
+            try {
+                return future.get(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+    }
+
+    private void checkInterrupted() throws InterruptedIOException {
+        if (closed || interrupted.getAsBoolean()) {
+            throw new InterruptedIOException("读取被中断");
+        }
+    }
+
+    /**
+     * 直播列表每隔一个目标时长重新加载，没有新分片时间隔减半
+     */
+    private void reloadLoop() {
+        long interval = (long) (targetDuration * 1000);
+        while (!closed && !ended) {
+            try {
+                Thread.sleep(interval);
+                int added = reload(Playlist.parse(playlistUrl, fetchPlaylist(playlistUrl, headers)));
+                interval = (long) (targetDuration * 1000 / (added > 0 ? 1 : 2));
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                LOGGER.warn("重新加载 HLS 播放列表失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized int reload(Playlist playlist) {
+        int added = 0;
+        for (var segment : playlist.segments) {
+            if (segment.sequence > lastSequence) {
+                pending.add(segment);
+                lastSequence = segment.sequence;
+                added++;
+            }
+        }
+        // 落后太多时，已从列表中移除的分片无法再下载
+        if (!playlist.segments.isEmpty()) {
+            long first = playlist.segments.getFirst().sequence;
+            pending.removeIf(segment -> segment.sequence < first && !downloads.containsKey(segment.sequence));
+        }
+        ended = playlist.ended;
+        schedule();
+        notifyAll();
+        return added;
+    }
+
+    @Override
+    public int available() {
+        return current.length - currentPos;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        downloads.clear();
+        synchronized (this) {
+            pending.clear();
+            notifyAll();
+        }
+    }
+
+    private record Segment(long sequence, String url, double duration, @Nullable String mapUrl) {
+    }
+
+    private static class Playlist {
+        final List<Segment> segments = new ArrayList<>();
+        double targetDuration = -1;
+        boolean ended = false;
+        // 加密或按字节范围划分，交给 FFmpeg 处理
+        boolean unsupported = false;
+        @Nullable String bestVariant;
+
+        static Playlist parse(String baseUrl, String text) {
+            var playlist = new Playlist();
+            var base = URI.create(baseUrl);
+            long sequence = 0;
+            double duration = 0;
+            String map = null;
+            long variantBandwidth = -1;
+            long bestBandwidth = -1;
+            for (String line : text.split("\\R")) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith("#EXT-X-TARGETDURATION:")) {
+                    playlist.targetDuration = Double.parseDouble(line.substring(22).trim());
+                } else if (line.startsWith("#EXT-X-MEDIA-SEQUENCE:")) {
+                    sequence = Long.parseLong(line.substring(22).trim());
+                } else if (line.startsWith("#EXTINF:")) {
+                    String value = line.substring(8);
+                    int comma = value.indexOf(',');
+                    duration = Double.parseDouble((comma >= 0 ? value.substring(0, comma) : value).trim());
+                } else if (line.startsWith("#EXT-X-ENDLIST")) {
+                    playlist.ended = true;
+                } else if (line.startsWith("#EXT-X-MAP:")) {
+                    String uri = attributes(line.substring(11)).get("URI");
+                    map = uri == null ? null : base.resolve(uri).toString();
+                } else if (line.startsWith("#EXT-X-KEY:")) {
+                    if (!"NONE".equals(attributes(line.substring(11)).get("METHOD"))) {
+                        playlist.unsupported = true;
+                    }
+                } else if (line.startsWith("#EXT-X-BYTERANGE")) {
+                    playlist.unsupported = true;
+                } else if (line.startsWith("#EXT-X-STREAM-INF:")) {
+                    String bandwidth = attributes(line.substring(18)).get("BANDWIDTH");
+                    variantBandwidth = bandwidth == null ? 0 : Long.parseLong(bandwidth);
+                } else if (!line.startsWith("#")) {
+                    String url = base.resolve(line).toString();
+                    if (variantBandwidth >= 0) {
+                        if (variantBandwidth > bestBandwidth) {
+                            bestBandwidth = variantBandwidth;
+                            playlist.bestVariant = url;
+                        }
+                        variantBandwidth = -1;
+                    } else {
+                        playlist.segments.add(new Segment(sequence++, url, duration, map));
+                    }
+                }
+            }
+            return playlist;
+        }
+
+        private static Map<String, String> attributes(String list) {
+            var result = new HashMap<String, String>();
+            var matcher = ATTRIBUTE.matcher(list);
+            while (matcher.find()) {
+                String value = matcher.group(2);
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                result.put(matcher.group(1), value);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package top.tobyprime.mcedia.net;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.metrics.LatencyHistogram;
+import top.tobyprime.mcedia.metrics.MetricsRegistry;
+import top.tobyprime.mcedia.metrics.OpenTimeline;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 所有解析器共用的 HTTP 客户端：共享连接池、HTTP/2、gzip/deflate 解压、默认超时与每个主机的并发限制
+ */
+public class HttpService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpService.class);
+    private static final HttpService INSTANCE = new HttpService();
+    private static final int MAX_REDIRECTS = 5;
+    // JDK HttpClient 空闲连接的默认保活时间
+    private static final long KEEP_ALIVE_MS = 30_000;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Mcedia-Http-", 0).factory());
+    // 重定向由 send 自行处理，以便同一个连接池既能跟随也能不跟随重定向
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(executor)
+            .build();
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastRequestTime = new ConcurrentHashMap<>();
+    // 主机 -> 上次预热时间
+    private final Map<String, Long> prewarmedHosts = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder http2Responses = new LongAdder();
+    private final LongAdder reusedConnections = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesDecoded = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private HttpService() {
+        var metrics = MetricsRegistry.getInstance();
+        metrics.register("http.latency", latency);
+        metrics.gauge("http.requests", requests::sum);
+        metrics.gauge("http.failures", failures::sum);
+        metrics.gauge("http.bytes_received", bytesReceived::sum);
+    }
+
+    public static HttpService getInstance() {
+        return INSTANCE;
+    }
+
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        return send(request, handler, true);
+    }
+
+    /**
+     * 发送请求，未设置超时的请求使用 {@link Configs#HTTP_REQUEST_TIMEOUT_MS}
+     *
+     * @param followRedirects 是否跟随重定向，跟随时返回最终响应，{@link HttpResponse#uri()} 为最终地址
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler, boolean followRedirects) throws IOException, InterruptedException {
+        for (int i = 0; ; i++) {
+            var response = sendOnce(prepare(request), handler, followRedirects && i < MAX_REDIRECTS);
+            var location = response.headers().firstValue("Location");
+            if (!followRedirects || !isRedirect(response.statusCode()) || location.isEmpty()) {
+                return response;
+            }
+            if (i >= MAX_REDIRECTS) {
+                LOGGER.warn("重定向次数过多: {}", request.uri());
+                return response;
+            }
+            URI target = request.uri().resolve(location.get());
+            var builder = HttpRequest.newBuilder(request, (name, value) -> true).uri(target);
+            if (response.statusCode() == 303) {
+                builder.GET();
+            }
+            request = builder.build();
+        }
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return sendAsync(request, handler, true);
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler, boolean followRedirects) {
+        var timeline = OpenTimeline.current();
+        return CompletableFuture.supplyAsync(() -> {
+            var previous = OpenTimeline.bind(timeline);
+            try {
+                return send(request, handler, followRedirects);
+            } catch (IOException | InterruptedException e) {
+                throw new CompletionException(e);
+            } finally {
+                OpenTimeline.bind(previous);
+            }
+        }, executor);
+    }
+
+    /**
+     * 在后台提前建立到该地址所在主机的 HTTP/1.1 连接（DNS、TCP、TLS），之后读取媒体流时直接复用连接池中的连接。
+     * 使用一个字节的 Range 请求，签名地址也能正常响应；保活时间内已预热过的主机不再重复预热
+     *
+     * @param connections 同时建立的连接数，与之后并行读取的连接数一致
+     */
+    public void prewarm(@Nullable String url, @Nullable Map<String, String> headers, int connections) {
+        if (!Configs.CONNECTION_PREWARM || url == null || !url.startsWith("http")) {
+            return;
+        }
+        HttpRequest request;
+        try {
+            var builder = HttpRequest.newBuilder(URI.create(url))
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .timeout(Duration.ofMillis(Configs.HTTP_REQUEST_TIMEOUT_MS))
+                    .header("Range", "bytes=0-0")
+                    .header("Accept-Encoding", "identity");
+            if (headers != null) {
+                headers.forEach(builder::header);
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        String host = String.valueOf(request.uri().getHost());
+        long now = System.currentTimeMillis();
+        Long last = prewarmedHosts.get(host);
+        if (last != null && now - last < KEEP_ALIVE_MS / 2) {
+            return;
+        }
+        prewarmedHosts.put(host, now);
+
+        long start = System.nanoTime();
+        var futures = new ArrayList<CompletableFuture<HttpResponse<Void>>>();
+        for (int i = 0; i < Math.max(1, connections); i++) {
+            futures.add(sendAsync(request, HttpResponse.BodyHandlers.discarding(), false));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).whenComplete((v, e) -> {
+            if (e != null) {
+                LOGGER.info("预热连接 {} 失败: {}", host, e.getMessage());
+            } else {
+                LOGGER.info("预热 {} 个到 {} 的连接，耗时 {}ms", futures.size(), host, (System.nanoTime() - start) / 1_000_000);
+            }
+        });
+    }
+
+    private HttpRequest prepare(HttpRequest request) {
+        var builder = HttpRequest.newBuilder(request, (name, value) -> true);
+        if (request.timeout().isEmpty()) {
+            builder.timeout(Duration.ofMillis(Configs.HTTP_REQUEST_TIMEOUT_MS));
+        }
+        if (request.headers().firstValue("Accept-Encoding").isEmpty()) {
+            builder.header("Accept-Encoding", "gzip, deflate");
+        }
+        return builder.build();
+    }
+
+    private <T> HttpResponse<T> sendOnce(HttpRequest request, HttpResponse.BodyHandler<T> handler, boolean discardRedirect) throws IOException, InterruptedException {
+        String host = String.valueOf(request.uri().getHost());
+        var permits = hostPermits.computeIfAbsent(host, h -> new Semaphore(Math.max(1, Configs.HTTP_MAX_PER_HOST)));
+        permits.acquire();
+        long start = System.nanoTime();
+        try {
+            requests.increment();
+            // 无法直接得知是否复用了连接，同一主机上次请求仍在保活时间内时视为复用
+            Long last = lastRequestTime.put(host, System.currentTimeMillis());
+            if (last != null && System.currentTimeMillis() - last < KEEP_ALIVE_MS) {
+                reusedConnections.increment();
+            }
+            var response = client.send(request, info -> discardRedirect && isRedirect(info.statusCode())
+                    ? HttpResponse.BodySubscribers.replacing(null)
+                    : decoding(handler, info));
+            if (response.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.increment();
+            }
+            return response;
+        } catch (IOException | InterruptedException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            lastRequestTime.put(host, System.currentTimeMillis());
+            long end = System.nanoTime();
+            latency.record((end - start) / 1_000_000);
+            var timeline = OpenTimeline.current();
+            if (timeline != null) {
+                timeline.recordHttp(host + request.uri().getRawPath(), start, end);
+            }
+            permits.release();
+        }
+    }
+
+    private <T> HttpResponse.BodySubscriber<T> decoding(HttpResponse.BodyHandler<T> handler, HttpResponse.ResponseInfo info) {
+        String encoding = info.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase();
+        if (!encoding.equals("gzip") && !encoding.equals("deflate")) {
+            return new CountingSubscriber<>(handler.apply(info));
+        }
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), compressed -> {
+            bytesReceived.add(compressed.length);
+            byte[] decoded = decompress(encoding, compressed);
+            bytesDecoded.add(decoded.length);
+            var subscriber = handler.apply(info);
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onNext(List.of(ByteBuffer.wrap(decoded)));
+            subscriber.onComplete();
+            return subscriber.getBody().toCompletableFuture().join();
+        });
+    }
+
+    private static byte[] decompress(String encoding, byte[] compressed) {
+        try {
+            if (encoding.equals("gzip")) {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                    return in.readAllBytes();
+                }
+            }
+            // deflate 按规范带 zlib 头，但不少服务器（如 B 站弹幕）直接返回原始 deflate 数据
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed), new Inflater(true))) {
+                    return in.readAllBytes();
+                }
+            }
+        } catch (IOException e) {
+            throw new CompletionException("解压响应失败", e);
+        }
+    }
+
+    private static boolean isRedirect(int statusCode) {
+        return statusCode == 301 || statusCode == 302 || statusCode == 303 || statusCode == 307 || statusCode == 308;
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getHttp2Count() {
+        return http2Responses.sum();
+    }
+
+    /**
+     * 估算的连接复用次数
+     */
+    public long getReusedConnectionCount() {
+        return reusedConnections.sum();
+    }
+
+    /**
+     * 实际传输的字节数
+     */
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * 解压后的字节数
+     */
+    public long getBytesDecoded() {
+        return bytesDecoded.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("请求 %d 次 (失败 %d，HTTP/2 %d，复用连接约 %d)，接收 %d KB (解压后 %d KB)，延迟 %s",
+                getRequestCount(), getFailureCount(), getHttp2Count(), getReusedConnectionCount(),
+                getBytesReceived() / 1024, getBytesDecoded() / 1024, latency);
+    }
+
+    // 未压缩的响应直接交给原 subscriber，只统计字节数
+    private class CountingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> delegate;
+
+        CountingSubscriber(HttpResponse.BodySubscriber<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            long size = 0;
+            for (var buffer : item) {
+                size += buffer.remaining();
+            }
+            bytesReceived.add(size);
+            bytesDecoded.add(size);
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package top.tobyprime.mcedia.net;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在同一资源的多个 CDN 镜像之间选择：用小范围的 Range 请求同时探测，取首字节最快的地址，
+ * 并记住每个主机的表现，播放中卡住时按表现选择下一个镜像
+ */
+public class MirrorSelector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MirrorSelector.class);
+    private static final MirrorSelector INSTANCE = new MirrorSelector();
+    private static final double EWMA_ALPHA = 0.3;
+    // 每次失败或卡顿计入的额外延迟
+    private static final double FAILURE_PENALTY_MS = 2000;
+    // 惩罚随时间衰减的半衰期
+    private static final long PENALTY_HALF_LIFE_MS = 5 * 60_000;
+
+    private final Map<String, HostStats> hosts = new ConcurrentHashMap<>();
+
+    private MirrorSelector() {
+    }
+
+    public static MirrorSelector getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 同时探测所有地址，返回按首字节时间排序的地址，最快的在最前。
+     * 等待第一个成功的探测，其余探测在后台完成后仍会计入主机表现
+     */
+    public List<String> race(List<String> urls, @Nullable Map<String, String> headers) {
+        var candidates = new ArrayList<>(new LinkedHashSet<>(urls));
+        if (candidates.size() <= 1 || Configs.MIRROR_PROBE_TIMEOUT_MS <= 0) {
+            return candidates;
+        }
+
+        var winner = new CompletableFuture<String>();
+        var probes = new ArrayList<CompletableFuture<Void>>();
+        for (String url : candidates) {
+            probes.add(probe(url, headers).thenAccept(success -> {
+                if (success) {
+                    winner.complete(url);
+                }
+            }));
+        }
+        CompletableFuture.allOf(probes.toArray(CompletableFuture[]::new)).whenComplete((v, e) -> winner.complete(null));
+
+        String fastest = null;
+        try {
+            fastest = winner.get(Configs.MIRROR_PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {
+        }
+
+        var ordered = order(candidates);
+        if (fastest != null) {
+            ordered.remove(fastest);
+            ordered.addFirst(fastest);
+            LOGGER.info("镜像探测: 选择 {} ({} 个候选)", host(fastest), candidates.size());
+        } else {
+            LOGGER.info("镜像探测: {} 个候选均未在 {}ms 内响应，按历史表现排序", candidates.size(), Configs.MIRROR_PROBE_TIMEOUT_MS);
+        }
+        return ordered;
+    }
+
+    /**
+     * 只按历史表现排序，不发送请求，相同表现保持原顺序
+     */
+    public List<String> order(List<String> urls) {
+        var ordered = new ArrayList<>(new LinkedHashSet<>(urls));
+        ordered.sort(Comparator.comparingDouble(url -> score(host(url))));
+        return ordered;
+    }
+
+    /**
+     * 播放中从该地址读取卡住或失败
+     */
+    public void reportFailure(String url) {
+        var stats = hosts.computeIfAbsent(host(url), h -> new HostStats());
+        synchronized (stats) {
+            stats.penalty = stats.decayedPenalty() + FAILURE_PENALTY_MS;
+            stats.penaltyTime = System.currentTimeMillis();
+        }
+    }
+
+    private CompletableFuture<Boolean> probe(String url, @Nullable Map<String, String> headers) {
+        HttpRequest request;
+        try {
+            var builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(Math.max(1000, Configs.MIRROR_PROBE_TIMEOUT_MS * 4L)))
+                    .header("Range", "bytes=0-1023")
+                    .header("Accept-Encoding", "identity");
+            if (headers != null) {
+                headers.forEach(builder::header);
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        long start = System.nanoTime();
+        var stats = hosts.computeIfAbsent(host(url), h -> new HostStats());
+        synchronized (stats) {
+            stats.probing++;
+            stats.probeStart = start;
+        }
+        // 只需要响应头，服务器忽略 Range 时也不会读取整个文件
+        return HttpService.getInstance().sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()).handle((response, e) -> {
+            if (response != null) {
+                try {
+                    response.body().close();
+                } catch (IOException ignored) {
+                }
+            }
+            synchronized (stats) {
+                stats.probing--;
+            }
+            boolean success = e == null && (response.statusCode() == 200 || response.statusCode() == 206);
+            if (success) {
+                recordTtfb(url, (System.nanoTime() - start) / 1e6);
+            } else {
+                reportFailure(url);
+            }
+            return success;
+        });
+    }
+
+    private void recordTtfb(String url, double ms) {
+        var stats = hosts.computeIfAbsent(host(url), h -> new HostStats());
+        synchronized (stats) {
+            stats.ttfb = stats.ttfb < 0 ? ms : stats.ttfb + EWMA_ALPHA * (ms - stats.ttfb);
+        }
+    }
+
+    private double score(String host) {
+        var stats = hosts.get(host);
+        if (stats == null) {
+            return 0;
+        }
+        synchronized (stats) {
+            double ttfb = Math.max(0, stats.ttfb);
+            // 探测尚未返回的主机，至少已经等待了这么久
+            if (stats.probing > 0) {
+                ttfb = Math.max(ttfb, (System.nanoTime() - stats.probeStart) / 1e6);
+            }
+            return ttfb + stats.decayedPenalty();
+        }
+    }
+
+    private static String host(String url) {
+        try {
+            return String.valueOf(URI.create(url).getHost());
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private static class HostStats {
+        double ttfb = -1;
+        double penalty = 0;
+        long penaltyTime = 0;
+        int probing = 0;
+        long probeStart = 0;
+
+        double decayedPenalty() {
+            if (penalty <= 0) {
+                return 0;
+            }
+            long elapsed = System.currentTimeMillis() - penaltyTime;
+            return penalty * Math.pow(0.5, (double) elapsed / PENALTY_HALF_LIFE_MS);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package top.tobyprime.mcedia.net;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.core.BandwidthGovernor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * 点播流的多连接读取：把文件按块分给多个 HTTP/1.1 连接并行下载，预读当前位置之后的若干块并按顺序交给读取方。
+ * 作为 InputStream 交给 FFmpegFrameGrabber，javacv 通过 reset + skip 实现 seek，这里两者都是 O(1) 的
+ */
+public class ParallelRangeReader extends InputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelRangeReader.class);
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+)");
+    private static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Mcedia-Range-", 0).factory());
+
+    private final String url;
+    private final Map<String, String> headers;
+    private final long length;
+    private final int readAhead;
+    private final Semaphore connections;
+    private final @Nullable BandwidthGovernor.Channel bandwidth;
+    private final Map<Long, CompletableFuture<byte[]>> chunks = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+    private BooleanSupplier interrupted = () -> false;
+
+    private long position = 0;
+    private long mark = 0;
+
+    private ParallelRangeReader(String url, Map<String, String> headers, long length, byte[] firstChunk, @Nullable BandwidthGovernor.Channel bandwidth) {
+        this.url = url;
+        this.bandwidth = bandwidth;
+        this.headers = headers;
+        this.length = length;
+        this.readAhead = Math.max(1, Configs.RANGE_READ_AHEAD_CHUNKS);
+        this.connections = new Semaphore(Math.max(1, Configs.RANGE_CONNECTIONS));
+        chunks.put(0L, CompletableFuture.completedFuture(firstChunk));
+    }
+
+    /**
+     * 请求第一块并确认服务器支持 Range 且长度已知，不满足时（不支持 Range、文件过小）返回 null。
+     * 第一块的请求会阻塞打开，只应对已知可以 seek 的点播地址调用
+     *
+     * @param interrupted 返回 true 时放弃第一块的下载
+     */
+    public static @Nullable ParallelRangeReader open(String url, Map<String, String> headers, @Nullable BandwidthGovernor.Channel bandwidth, BooleanSupplier interrupted) throws IOException, InterruptedException {
+        if (Configs.RANGE_CONNECTIONS <= 1 || !url.startsWith("http") || url.contains(".m3u8")) {
+            return null;
+        }
+        var response = HttpService.getInstance().send(buildRequest(url, headers, 0, CHUNK_SIZE - 1), HttpResponse.BodyHandlers.ofInputStream());
+        try (var body = response.body()) {
+            if (response.statusCode() != 206) {
+                return null;
+            }
+            var matcher = CONTENT_RANGE.matcher(response.headers().firstValue("Content-Range").orElse(""));
+            if (!matcher.matches()) {
+                return null;
+            }
+            long length = Long.parseLong(matcher.group(3));
+            if (length <= CHUNK_SIZE) {
+                return null;
+            }
+            byte[] firstChunk = BandwidthGovernor.readAll(bandwidth, body, interrupted);
+            if (firstChunk.length != CHUNK_SIZE) {
+                return null;
+            }
+            LOGGER.info("多连接读取: {} 大小 {}MB，{} 个连接", URI.create(url).getHost(), length / 1024 / 1024, Configs.RANGE_CONNECTIONS);
+            return new ParallelRangeReader(url, headers, length, firstChunk, bandwidth);
+        }
+    }
+
+    private static HttpRequest buildRequest(String url, Map<String, String> headers, long start, long end) {
+        // 每个请求使用独立的 HTTP/1.1 连接，HTTP/2 会复用同一个连接，起不到并行的作用
+        var builder = HttpRequest.newBuilder(URI.create(url))
+                .version(HttpClient.Version.HTTP_1_1)
+                .header("Range", "bytes=" + start + "-" + end)
+                .header("Accept-Encoding", "identity");
+        headers.forEach(builder::header);
+        return builder.build();
+    }
+
+    /**
+     * 返回 true 时正在等待的读取立即失败，用于关闭、打开被取代与读取卡住
+     */
+    public void setInterrupt(BooleanSupplier interrupted) {
+        this.interrupted = interrupted;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n <= 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("已关闭");
+        }
+        if (position >= length) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        long index = position / CHUNK_SIZE;
+        schedule(index);
+        byte[] chunk = await(chunks.get(index));
+        int offset = (int) (position - index * CHUNK_SIZE);
+        int n = Math.min(len, chunk.length - offset);
+        if (n <= 0) {
+            throw new IOException("块 " + index + " 长度不足");
+        }
+        System.arraycopy(chunk, offset, b, off, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * 确保当前块及之后的预读块已经在下载，丢弃当前位置之前的块与预读范围之外的块
+     */
+    private void schedule(long index) {
+        long last = Math.min(index + readAhead, (length - 1) / CHUNK_SIZE);
+        chunks.keySet().removeIf(i -> i < index - 1 || i > last);
+        for (long i = index; i <= last; i++) {
+            if (!chunks.containsKey(i)) {
+                startDownload(i);
+            }
+        }
+    }
+
+    /**
+     * 先登记块再提交下载任务。若在任务内部登记（computeIfAbsent + supplyAsync），
+     * 任务可能在登记完成前就开始执行，误以为块已不再需要而放弃
+     */
+    private void startDownload(long index) {
+        var future = new CompletableFuture<byte[]>();
+        chunks.put(index, future);
+        EXECUTOR.execute(() -> {
+            try {
+                future.complete(download(index, future));
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * 已关闭，或者 seek 到别处后块被丢弃、失败后被重新登记
+     */
+    private boolean isAbandoned(long index, CompletableFuture<byte[]> future) {
+        return closed || chunks.get(index) != future;
+    }
+
+    private byte[] download(long index, CompletableFuture<byte[]> future) throws IOException {
+        long start = index * CHUNK_SIZE;
+        long end = Math.min(length, start + CHUNK_SIZE) - 1;
+        IOException failure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !closed; attempt++) {
+            try {
+                connections.acquire();
+                try {
+                    // 排队期间已经 seek 到别处时放弃
+                    if (isAbandoned(index, future)) {
+                        throw new IOException("块 " + index + " 已不再需要");
+                    }
+                    var response = HttpService.getInstance().send(buildRequest(url, headers, start, end), HttpResponse.BodyHandlers.ofInputStream());
+                    byte[] body;
+                    try (var in = response.body()) {
+                        // 不限速时也分片读取，块被放弃后尽快释放连接
+                        body = BandwidthGovernor.readAll(bandwidth, in, () -> isAbandoned(index, future));
+                    }
+                    if (response.statusCode() == 206 && body.length == end - start + 1) {
+                        return body;
+                    }
+                    failure = new IOException("块 " + index + " 响应异常: HTTP " + response.statusCode() + "，长度 " + body.length);
+                    // 地址过期等错误重试也不会成功，交给解码器换用镜像或重新解析
+                    if (response.statusCode() >= 400 && response.statusCode() < 500) {
+                        break;
+                    }
+                } finally {
+                    connections.release();
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new InterruptedIOException();
+                break;
+            }
+        }
+        throw failure != null ? failure : new IOException("已关闭");
+    }
+
+    private byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        while (true) {
+            if (closed || interrupted.getAsBoolean()) {
+                throw new InterruptedIOException("读取被中断");
+            }
+            try {
+                return future.get(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                // 失败的块下次读取时重新下载
+                chunks.remove(position / CHUNK_SIZE, future);
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = Math.min(n, length - position);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        var chunk = chunks.get(position / CHUNK_SIZE);
+        if (chunk == null || !chunk.isDone() || chunk.isCompletedExceptionally()) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.min(length - position, CHUNK_SIZE - position % CHUNK_SIZE));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        position = mark;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        chunks.clear();
+    }
+}
@@ -7,9 +7,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.tobyprime.mcedia.core.BaseMediaPlay;
 import top.tobyprime.mcedia.core.MediaInfo;
+import top.tobyprime.mcedia.net.HttpService;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.concurrent.CompletableFuture;
@@ -20,7 +20,6 @@ public class YhdmMediaPlay extends BaseMediaPlay {
     private static final Logger LOGGER = LoggerFactory.getLogger(YhdmMediaPlay.class);
     private static final Pattern URL_PARTS_PATTERN = Pattern.compile("yhdm\\.one/vod-play/([^/]+)/([^.]+)\\.html");
     private static final Pattern TITLE_PATTERN = Pattern.compile("<title>(.*?)</title>");
-    private static final HttpClient client = HttpClient.newHttpClient();
     private static final Gson gson = new Gson();
 
     public String url;
@@ -50,7 +49,7 @@ public class YhdmMediaPlay extends BaseMediaPlay {
                 .uri(URI.create(url))
                 .build();
 
-        CompletableFuture<String> titleFuture = client
+        CompletableFuture<String> titleFuture = HttpService.getInstance()
                 .sendAsync(mainPageReq, HttpResponse.BodyHandlers.ofString())
                 .thenApply(resp -> {
                     try {
@@ -74,7 +73,7 @@ public class YhdmMediaPlay extends BaseMediaPlay {
                 .header("Referer", url)
                 .build();
 
-        CompletableFuture<String> apiFuture = client
+        CompletableFuture<String> apiFuture = HttpService.getInstance()
                 .sendAsync(apiReq, HttpResponse.BodyHandlers.ofString())
                 .thenApply(HttpResponse::body);
 
@@ -0,0 +1,134 @@
+package top.tobyprime.mcedia.bilibili;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.tobyprime.mcedia.Configs;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BilibiliRateLimiterTest {
+    private HttpServer server;
+    private int maxRetries;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.start();
+        maxRetries = Configs.BILIBILI_API_MAX_RETRIES;
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        Configs.BILIBILI_API_MAX_RETRIES = maxRetries;
+    }
+
+    /**
+     * 前 throttled 次返回 code，之后返回正常响应
+     */
+    private AtomicInteger stub(String path, int code, int throttled) {
+        var hits = new AtomicInteger();
+        server.createContext(path, exchange -> {
+            int hit = hits.incrementAndGet();
+            var body = ("{\"code\":" + (hit <= throttled ? code : 0) + ",\"data\":{}}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        return hits;
+    }
+
+    private HttpRequest request(String path) {
+        var uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        return HttpRequest.newBuilder(uri).GET().build();
+    }
+
+    @Test
+    void retriesTransparentlyAfterMinus412() throws Exception {
+        var hits = stub("/x/web-interface/view-412", -412, 1);
+
+        long start = System.currentTimeMillis();
+        var response = BilibiliRateLimiter.getInstance().send(request("/x/web-interface/view-412"));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertFalse(BilibiliRateLimiter.isThrottled(response));
+        assertEquals(2, hits.get());
+        // 第一次重试的退避至少为基础退避的一半
+        assertTrue(elapsed >= 500, "退避时间过短: " + elapsed);
+    }
+
+    @Test
+    void retriesTransparentlyAfterMinus352() throws Exception {
+        var hits = stub("/x/player/playurl-352", -352, 2);
+
+        long start = System.currentTimeMillis();
+        var response = BilibiliRateLimiter.getInstance().send(request("/x/player/playurl-352"));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertFalse(BilibiliRateLimiter.isThrottled(response));
+        assertEquals(3, hits.get());
+        // 两次退避分别至少 500ms 与 1000ms
+        assertTrue(elapsed >= 1500, "退避时间过短: " + elapsed);
+    }
+
+    @Test
+    void returnsLastResponseWhenRetriesAreExhausted() throws Exception {
+        Configs.BILIBILI_API_MAX_RETRIES = 1;
+        var hits = stub("/x/web-interface/nav-exhausted", -352, Integer.MAX_VALUE);
+
+        var response = BilibiliRateLimiter.getInstance().send(request("/x/web-interface/nav-exhausted"));
+
+        assertTrue(BilibiliRateLimiter.isThrottled(response));
+        assertEquals(2, hits.get());
+    }
+
+    @Test
+    void backoffGrowsExponentiallyWithinJitterBounds() {
+        for (int attempt = 0; attempt < 8; attempt++) {
+            long base = Math.min(30_000, 1000L << attempt);
+            for (int i = 0; i < 200; i++) {
+                long backoff = BilibiliRateLimiter.backoff(attempt);
+                assertTrue(backoff >= base / 2 && backoff <= base * 3 / 2,
+                        "第 " + attempt + " 次重试的退避 " + backoff + "ms 超出 [" + base / 2 + ", " + base * 3 / 2 + "]");
+            }
+        }
+        // 足够大的重试次数不会溢出
+        assertTrue(BilibiliRateLimiter.backoff(100) <= 45_000);
+    }
+
+    @Test
+    void bucketQueuesRequestsBeyondRateAndBacksOffWhenThrottled() {
+        var bucket = new BilibiliRateLimiter.Bucket("test");
+        int burst = (int) Math.floor(bucket.rate);
+        for (int i = 0; i < burst; i++) {
+            assertEquals(0, bucket.reserve(), "桶内令牌用完前不需要等待");
+        }
+        long queued = bucket.reserve();
+        assertTrue(queued > 0 && queued <= Math.ceil(1000 / bucket.rate) + 20, "超出速率的请求等待 " + queued + "ms");
+
+        double rate = bucket.rate;
+        bucket.onThrottled(2000);
+        assertEquals(Math.max(0.2, rate / 2), bucket.rate, 1e-9);
+        long wait = bucket.reserve();
+        // 退避结束后才放行，再按减半后的速率排队
+        assertTrue(wait >= 2000 - 50, "风控后等待 " + wait + "ms");
+
+        double throttledRate = bucket.rate;
+        bucket.onSuccess();
+        assertTrue(bucket.rate > throttledRate, "成功后速率应恢复");
+    }
+}
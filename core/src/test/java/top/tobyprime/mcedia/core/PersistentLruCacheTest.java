@@ -0,0 +1,113 @@
+package top.tobyprime.mcedia.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistentLruCacheTest {
+    @TempDir
+    Path home;
+    private String userHome;
+
+    @BeforeEach
+    void setUp() {
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setProperty("user.home", userHome);
+    }
+
+    static class Item {
+        String key;
+        long value;
+        String note;
+
+        Item(String key, long value, String note) {
+            this.key = key;
+            this.value = value;
+            this.note = note;
+        }
+    }
+
+    /**
+     * value 小于 0 的条目无效，写入磁盘时去掉 note
+     */
+    private static PersistentLruCache<Item> cache(int capacity) {
+        return new PersistentLruCache<>("Test", "测试缓存", "test_cache.json", Item.class,
+                item -> item.key, () -> capacity, item -> item.value >= 0, item -> new Item(item.key, item.value, null));
+    }
+
+    /**
+     * 保存在后台进行，等待写入完成后由新的实例载入
+     */
+    private static PersistentLruCache<Item> reload(PersistentLruCache<Item> cache, int capacity) throws Exception {
+        cache.awaitSave();
+        return cache(capacity);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        var cache = cache(2);
+        cache.put("a", new Item("a", 1, "x"));
+        cache.put("b", new Item("b", 2, "x"));
+        // 访问 a 后 b 成为最久未使用的条目
+        assertNotNull(cache.get("a"));
+        cache.put("c", new Item("c", 3, "x"));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        cache.awaitSave();
+    }
+
+    @Test
+    void persistsThroughReloadInAccessOrder() throws Exception {
+        var cache = cache(3);
+        cache.put("a", new Item("a", 1, "x"));
+        cache.put("b", new Item("b", 2, "x"));
+        cache.put("c", new Item("c", 3, "x"));
+        assertNotNull(cache.get("a"));
+
+        var loaded = reload(cache, 3);
+        assertEquals(3, loaded.size());
+        var a = loaded.get("a");
+        assertNotNull(a);
+        assertEquals(1, a.value);
+        assertNull(a.note, "写入磁盘前应经过 toDisk");
+        // 载入后 LRU 顺序不变：b 最久未使用，先被淘汰
+        loaded.put("d", new Item("d", 4, "x"));
+        assertNull(loaded.get("b"));
+        loaded.awaitSave();
+        assertTrue(Files.exists(home.resolve(".mcedia").resolve("test_cache.json")));
+    }
+
+    @Test
+    void dropsInvalidEntriesOnLoad() throws Exception {
+        var cache = cache(3);
+        var expiring = new Item("a", 1, "x");
+        cache.put("a", expiring);
+        cache.put("b", new Item("b", 2, "x"));
+        // 条目在缓存中失效，下次整理或载入时丢弃
+        expiring.value = -1;
+        assertTrue(cache.remove("b"));
+        assertFalse(cache.remove("b"));
+
+        var loaded = reload(cache, 3);
+        assertEquals(0, loaded.size());
+        assertNull(loaded.get("a"));
+    }
+}
@@ -0,0 +1,119 @@
+package top.tobyprime.mcedia.net;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.tobyprime.mcedia.Configs;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 主机表现按主机名记录，每个镜像绑定到不同的回环地址（127.0.0.x）
+ */
+class MirrorSelectorTest {
+    private final List<HttpServer> servers = new ArrayList<>();
+    // 卡住的服务器在测试结束前不响应
+    private final CountDownLatch release = new CountDownLatch(1);
+    private int probeTimeout;
+
+    @BeforeEach
+    void setUp() {
+        probeTimeout = Configs.MIRROR_PROBE_TIMEOUT_MS;
+        Configs.MIRROR_PROBE_TIMEOUT_MS = 1500;
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        servers.forEach(server -> server.stop(0));
+        Configs.MIRROR_PROBE_TIMEOUT_MS = probeTimeout;
+    }
+
+    /**
+     * @param delayMs 首字节前的延迟，小于 0 表示一直不响应
+     */
+    private String mirror(String address, long delayMs, int status) throws IOException {
+        var server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(address), 0), 0);
+        server.createContext("/video.m4s", exchange -> {
+            try {
+                if (delayMs < 0) {
+                    release.await();
+                } else {
+                    Thread.sleep(delayMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            var body = new byte[1024];
+            exchange.sendResponseHeaders(status, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://" + address + ":" + server.getAddress().getPort() + "/video.m4s";
+    }
+
+    @Test
+    void raceSelectsFastestMirrorAndFailsOverByHistory() throws Exception {
+        var stalled = mirror("127.0.0.11", -1, 206);
+        var slow = mirror("127.0.0.12", 400, 206);
+        var fast = mirror("127.0.0.13", 20, 206);
+        var medium = mirror("127.0.0.14", 150, 206);
+        var selector = MirrorSelector.getInstance();
+
+        long start = System.currentTimeMillis();
+        var ordered = selector.race(List.of(stalled, slow, fast, medium), null);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(fast, ordered.getFirst());
+        assertEquals(4, ordered.size());
+        // 只等待第一个成功的探测，不会被卡住的镜像拖到超时
+        assertTrue(elapsed < Configs.MIRROR_PROBE_TIMEOUT_MS, "探测耗时 " + elapsed + "ms");
+
+        // 等其余探测完成并计入表现后，播放中最快的镜像卡住，切换到剩下表现最好的镜像
+        Thread.sleep(600);
+        selector.reportFailure(fast);
+        var failover = selector.order(List.of(fast, stalled, slow, medium));
+        assertEquals(medium, failover.getFirst());
+        assertEquals(slow, failover.get(1));
+        assertNotEquals(fast, failover.getFirst());
+    }
+
+    @Test
+    void failingMirrorIsNeverSelected() throws Exception {
+        var failing = mirror("127.0.0.21", 0, 503);
+        var healthy = mirror("127.0.0.22", 200, 206);
+
+        var ordered = MirrorSelector.getInstance().race(List.of(failing, healthy), null);
+
+        assertEquals(healthy, ordered.getFirst());
+        assertEquals(failing, ordered.getLast());
+    }
+
+    @Test
+    void fallsBackToHistoryWhenNoMirrorResponds() throws Exception {
+        Configs.MIRROR_PROBE_TIMEOUT_MS = 300;
+        var first = mirror("127.0.0.31", -1, 206);
+        var second = mirror("127.0.0.32", -1, 206);
+        MirrorSelector.getInstance().reportFailure(first);
+
+        long start = System.currentTimeMillis();
+        var ordered = MirrorSelector.getInstance().race(List.of(first, second), null);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < 1000, "探测耗时 " + elapsed + "ms");
+        assertEquals(List.of(second, first), ordered);
+    }
+}
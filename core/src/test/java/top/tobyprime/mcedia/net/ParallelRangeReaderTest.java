@@ -0,0 +1,206 @@
+package top.tobyprime.mcedia.net;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelRangeReaderTest {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private final byte[] data = new byte[CHUNK_SIZE * 5 + 12345];
+    // 块起始位置 -> 收到的请求数
+    private final Map<Long, AtomicInteger> requests = new ConcurrentHashMap<>();
+    // 块起始位置 -> 剩余需要返回的错误状态码
+    private final Map<Long, int[]> failures = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + (i >>> 11));
+        }
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/video.mp4", exchange -> {
+            var matcher = RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+            if (!matcher.matches()) {
+                exchange.sendResponseHeaders(200, data.length);
+                try (var out = exchange.getResponseBody()) {
+                    out.write(data);
+                }
+                return;
+            }
+            long start = Long.parseLong(matcher.group(1));
+            long end = Math.min(data.length - 1, Long.parseLong(matcher.group(2)));
+            requests.computeIfAbsent(start, s -> new AtomicInteger()).incrementAndGet();
+
+            int status = nextFailure(start);
+            if (status != 0) {
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+            exchange.sendResponseHeaders(206, end - start + 1);
+            try (var out = exchange.getResponseBody()) {
+                out.write(data, (int) start, (int) (end - start + 1));
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/video.mp4";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private int nextFailure(long start) {
+        var remaining = failures.get(start);
+        if (remaining == null) {
+            return 0;
+        }
+        synchronized (remaining) {
+            // [状态码, 剩余次数]
+            if (remaining[1] <= 0) {
+                return 0;
+            }
+            remaining[1]--;
+            return remaining[0];
+        }
+    }
+
+    private ParallelRangeReader open() throws Exception {
+        var reader = ParallelRangeReader.open(url, Map.of(), null, () -> false);
+        assertNotNull(reader, "服务器支持 Range，应使用多连接读取");
+        return reader;
+    }
+
+    private static byte[] readFully(ParallelRangeReader reader, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = reader.read(buffer, read, length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return Arrays.copyOf(buffer, read);
+    }
+
+    @Test
+    void readsWholeFileInOrder() throws Exception {
+        try (var reader = open()) {
+            assertEquals(data.length, reader.getLength());
+            // 读取粒度与块边界不对齐
+            var out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[100_003];
+            int n;
+            while ((n = reader.read(buffer, 0, buffer.length)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            assertArrayEquals(data, out.toByteArray());
+            assertEquals(-1, reader.read());
+        }
+    }
+
+    @Test
+    void firstChunkIsAbandonedWhenInterrupted() {
+        // 打开被取代或解码器关闭时不再等待第一块下载完
+        assertThrows(InterruptedIOException.class, () -> ParallelRangeReader.open(url, Map.of(), null, () -> true));
+    }
+
+    @Test
+    void readFailsAfterClose() throws Exception {
+        var reader = open();
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 1000), readFully(reader, 1000));
+        reader.close();
+        assertThrows(IOException.class, () -> readFully(reader, 1000));
+    }
+
+    @Test
+    void seeksWithResetAndSkip() throws Exception {
+        try (var reader = open()) {
+            reader.mark(Integer.MAX_VALUE);
+            assertArrayEquals(Arrays.copyOfRange(data, 0, 1000), readFully(reader, 1000));
+
+            // javacv 的 seek：reset 回到开头再 skip 到目标位置
+            int target = CHUNK_SIZE * 4 + 777;
+            reader.reset();
+            assertEquals(target, reader.skip(target));
+            assertArrayEquals(Arrays.copyOfRange(data, target, target + 5000), readFully(reader, 5000));
+
+            // 向后 seek 到已经丢弃的块
+            int back = CHUNK_SIZE + 5;
+            reader.reset();
+            assertEquals(back, reader.skip(back));
+            assertArrayEquals(Arrays.copyOfRange(data, back, back + CHUNK_SIZE), readFully(reader, CHUNK_SIZE));
+
+            // skip 不会越过结尾
+            reader.reset();
+            assertEquals(data.length, reader.skip(Long.MAX_VALUE));
+            assertEquals(-1, reader.read());
+        }
+    }
+
+    @Test
+    void clientErrorFailsChunkWithoutRetry() throws Exception {
+        long failing = 2L * CHUNK_SIZE;
+        failures.put(failing, new int[]{403, Integer.MAX_VALUE});
+        try (var reader = open()) {
+            var e = assertThrows(IOException.class, () -> readFully(reader, data.length));
+            assertTrue(e.getMessage().contains("403"), e.getMessage());
+            // 地址过期等 4xx 错误不重试，交给解码器换用镜像或重新解析
+            assertEquals(1, requests.get(failing).get());
+        }
+    }
+
+    @Test
+    void serverErrorIsRetried() throws Exception {
+        long failing = 3L * CHUNK_SIZE;
+        failures.put(failing, new int[]{503, 2});
+        try (var reader = open()) {
+            assertArrayEquals(data, readFully(reader, data.length));
+            assertEquals(3, requests.get(failing).get());
+        }
+    }
+
+    @Test
+    void failedChunkIsDownloadedAgainOnNextRead() throws Exception {
+        long failing = CHUNK_SIZE;
+        failures.put(failing, new int[]{404, 1});
+        try (var reader = open()) {
+            reader.mark(Integer.MAX_VALUE);
+            assertThrows(IOException.class, () -> readFully(reader, data.length));
+            reader.reset();
+            assertArrayEquals(data, readFully(reader, data.length));
+            assertEquals(2, requests.get(failing).get());
+        }
+    }
+}
@@ -56,6 +56,12 @@ public class VideoTexture extends AbstractTexture implements ITexture {
                 | GpuTexture.USAGE_COPY_SRC
                 | GpuTexture.USAGE_COPY_DST;
 
+        if (this.textureView != null) {
+            this.textureView.close();
+        }
+        if (this.texture != null) {
+            this.texture.close();
+        }
         this.texture = gpuDevice.createTexture(resourceLocation::toString,
                 usage, TextureFormat.RGBA8, width, height, 1, 1);
         this.textureView = gpuDevice.createTextureView(this.texture);
@@ -139,6 +145,14 @@ public class VideoTexture extends AbstractTexture implements ITexture {
         frame.close();
     }
 
+    /**
+     * 播放器休眠时缩小到 1x1 释放显存与 PBO，下次上传时按帧尺寸重新分配
+     */
+    @Override
+    public void release() {
+        Minecraft.getInstance().execute(() -> setSize(1, 1));
+    }
+
     public void releasePbo() {
         // 删除 PBO
         if (pboInitialized) {
@@ -0,0 +1,135 @@
+package top.tobyprime.mcedia.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import top.tobyprime.mcedia.Configs;
+import top.tobyprime.mcedia.Utils;
+import top.tobyprime.mcedia.core.BandwidthGovernor;
+import top.tobyprime.mcedia.core.FrameTimeController;
+import top.tobyprime.mcedia.core.PlayerInstanceManagerRegistry;
+import top.tobyprime.mcedia.metrics.JfrRecorder;
+import top.tobyprime.mcedia.metrics.MetricsRegistry;
+import top.tobyprime.mcedia.metrics.OpenTimeline;
+
+import static net.fabricmc.fabric.api.client.command.v2.ClientCommandManager.literal;
+
+public class CommandStats {
+
+    public static void register(CommandDispatcher<FabricClientCommandSource> dispatcher) {
+        LiteralArgumentBuilder<FabricClientCommandSource> frameTimeNode = literal("frametime").executes(ctx -> {
+            var controller = FrameTimeController.getInstance();
+            Utils.msgToPlayer(String.format("帧时间 %.1fms / 预算 %.1fms，上传 %.2fms/帧，解码 %.2f 核，Mcedia 占比 %.1f%%%s",
+                    controller.getFrameTimeMs(), controller.getBudgetMs(), controller.getUploadMsPerFrame(),
+                    controller.getDecodeCpuCores(), controller.getMcediaShare() * 100,
+                    Configs.FRAME_TIME_CONTROL ? "" : " (已关闭帧时间控制)"));
+
+            var players = PlayerInstanceManagerRegistry.getInstance().getPlayers();
+            for (int i = 0; i < players.size(); i++) {
+                var instance = players.get(i);
+                var player = instance.getPlayer();
+                Utils.msgToPlayer(String.format("#%d 距离 %.1f，档位 %s，降载等级 %d", i, instance.getDistance(), player.getQualityTier(), player.getShedLevel()));
+            }
+            return 1;
+        });
+
+        LiteralArgumentBuilder<FabricClientCommandSource> bandwidthNode = literal("bandwidth").executes(ctx -> {
+            var governor = BandwidthGovernor.getInstance();
+            Utils.msgToPlayer(String.format("下载 %.0fkbps / 上限 %s，%d 个媒体", governor.getTotalUsageKbps(),
+                    Configs.BANDWIDTH_LIMIT_KBPS > 0 ? Configs.BANDWIDTH_LIMIT_KBPS + "kbps" : "不限", governor.getChannelCount()));
+
+            var players = PlayerInstanceManagerRegistry.getInstance().getPlayers();
+            for (int i = 0; i < players.size(); i++) {
+                var instance = players.get(i);
+                var media = instance.getPlayer().getMedia();
+                if (media == null) {
+                    continue;
+                }
+                var channel = media.getBandwidthChannel();
+                Utils.msgToPlayer(String.format("#%d 距离 %.1f，档位 %s，下载 %.0fkbps，分配 %s", i, instance.getDistance(), instance.getPlayer().getQualityTier(),
+                        channel.getUsageKbps(), channel.getRateKbps() < 0 ? "不限" : String.format("%.0fkbps", channel.getRateKbps())));
+            }
+            return 1;
+        });
+
+        LiteralArgumentBuilder<FabricClientCommandSource> openNode = literal("open").executes(ctx -> {
+            Utils.msgToPlayer("打开耗时（从开始解析计）:");
+            for (var phase : OpenTimeline.Phase.values()) {
+                Utils.msgToPlayer(phase.label + ": " + OpenTimeline.getLatency(phase));
+            }
+
+            var registry = PlayerInstanceManagerRegistry.getInstance();
+            var players = registry.getPlayers();
+            for (int i = 0; i < players.size(); i++) {
+                var instance = players.get(i);
+                var timeline = instance.getPlayer().getOpenTimeline();
+                if (timeline != null) {
+                    Utils.msgToPlayer(String.format("#%d 距离 %.1f，%s", i, instance.getDistance(), timeline));
+                }
+            }
+
+            // 正在注视的播放器列出每个 HTTP 请求
+            var targeting = registry.getTargetingPlayer();
+            var timeline = targeting == null ? null : targeting.getPlayer().getOpenTimeline();
+            if (timeline != null && timeline.getHttpCount() > 0) {
+                Utils.msgToPlayer("注视的播放器的 HTTP 请求:");
+                timeline.describeHttp().lines().forEach(Utils::msgToPlayer);
+            }
+            return 1;
+        });
+
+        LiteralArgumentBuilder<FabricClientCommandSource> exportNode = literal("export").executes(ctx -> {
+            MetricsRegistry.getInstance().exportNow();
+            Utils.msgToPlayer("已导出运行指标到 " + Configs.METRICS_EXPORT_PATH);
+            return 1;
+        });
+
+        LiteralArgumentBuilder<FabricClientCommandSource> jfrNode = literal("jfr")
+                .then(literal("start").executes(ctx -> {
+                    try {
+                        if (JfrRecorder.getInstance().start()) {
+                            Utils.msgToPlayer("已开始 JFR 录制，事件按媒体 id 区分，可用 /mcedia stats 查看各播放器的媒体 id");
+                        } else {
+                            Utils.msgToPlayer("JFR 录制已在进行中");
+                        }
+                    } catch (Exception e) {
+                        Utils.msgToPlayer("开始 JFR 录制失败: " + e.getMessage());
+                    }
+                    return 1;
+                }))
+                .then(literal("stop").executes(ctx -> {
+                    try {
+                        var path = JfrRecorder.getInstance().stop();
+                        Utils.msgToPlayer(path != null ? "JFR 录制已写入 " + path : "没有正在进行的 JFR 录制");
+                    } catch (Exception e) {
+                        Utils.msgToPlayer("写入 JFR 录制失败: " + e.getMessage());
+                    }
+                    return 1;
+                }));
+
+        var statsNode = literal("stats").executes(ctx -> {
+            var gauges = MetricsRegistry.getInstance().getGauges();
+            Utils.msgToPlayer(String.format("帧时间 %.1fms，下载 %.0fkbps，视频帧内存 %.1fMB，javacpp 内存 %.1fMB，进程内存 %.1fMB",
+                    gauges.getOrDefault("render.frame_time_ms", 0.0), gauges.getOrDefault("net.download_kbps", 0.0),
+                    MetricsRegistry.getInstance().frameBytes.sum() / 1024.0 / 1024.0,
+                    gauges.getOrDefault("memory.javacpp_bytes", 0.0) / 1024 / 1024, gauges.getOrDefault("memory.physical_bytes", 0.0) / 1024 / 1024));
+
+            var players = PlayerInstanceManagerRegistry.getInstance().getPlayers();
+            for (int i = 0; i < players.size(); i++) {
+                var instance = players.get(i);
+                var media = instance.getPlayer().getMedia();
+                if (media != null) {
+                    Utils.msgToPlayer(String.format("#%d 距离 %.1f，媒体 id %d，%s", i, instance.getDistance(), media.getMetrics().id, media.getMetrics()));
+                }
+            }
+            return 1;
+        });
+        statsNode.then(frameTimeNode);
+        statsNode.then(bandwidthNode);
+        statsNode.then(openNode);
+        statsNode.then(exportNode);
+        statsNode.then(jfrNode);
+
+        dispatcher.register(literal("mcedia").then(statsNode));
+    }
+}
@@ -8,10 +8,20 @@ import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.client.renderer.entity.EntityRenderer;
 import net.minecraft.client.renderer.entity.EntityRendererProvider;
 import net.minecraft.client.renderer.state.CameraRenderState;
+import net.minecraft.world.level.ClipContext;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.HitResult;
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.phys.shapes.CollisionContext;
 import org.jetbrains.annotations.NotNull;
 import top.tobyprime.mcedia.entities.MediaPlayerAgentEntity;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MediaPlayerAgentEntityRenderer extends EntityRenderer<MediaPlayerAgentEntity, MediaPlayerScreenEntityRendererStatus> {
+    private static final long OCCLUSION_CHECK_INTERVAL_MS = 250;
 
     public MediaPlayerAgentEntityRenderer(EntityRendererProvider.Context context) {
         super(context);
@@ -34,7 +44,85 @@ public class MediaPlayerAgentEntityRenderer extends EntityRenderer<MediaPlayerAg
 
     @Override
     public boolean shouldRender(MediaPlayerAgentEntity entity, Frustum frustum, double d, double e, double f) {
-        return true;
+        boolean visible = isScreenVisible(entity, frustum, d, e, f);
+        // 只在可见性变化时报告，持续不可见后的降级由播放器每 tick 推进
+        if (entity.reportedVisible == null || entity.reportedVisible != visible) {
+            entity.reportedVisible = visible;
+            entity.getPlayer().reportVisibility(visible);
+        }
+        return visible;
+    }
+
+    private boolean isScreenVisible(MediaPlayerAgentEntity entity, Frustum frustum, double cameraX, double cameraY, double cameraZ) {
+        updateVisibilitySamples(entity);
+        var samples = entity.visibilitySamples;
+        if (samples == null || entity.visibilityBounds == null) return false;
+        if (!frustum.isVisible(entity.visibilityBounds)) {
+            return false;
+        }
+
+        // 射线检测开销较大，定期更新
+        long now = System.currentTimeMillis();
+        if (now - entity.lastOcclusionCheck > OCCLUSION_CHECK_INTERVAL_MS) {
+            entity.lastOcclusionCheck = now;
+            var camera = new Vec3(cameraX, cameraY, cameraZ);
+            boolean occluded = true;
+            for (var sample : samples) {
+                if (isUnobstructed(entity.level(), camera, sample)) {
+                    occluded = false;
+                    break;
+                }
+            }
+            entity.occluded = occluded;
+        }
+        return !entity.occluded;
+    }
+
+    /**
+     * 屏幕四角与中心的采样点及其包围盒，只在实体位置、朝向、画面比例、屏幕增减或屏幕大小与偏移变化后重新计算
+     */
+    private static void updateVisibilitySamples(MediaPlayerAgentEntity entity) {
+        var position = entity.position();
+        float aspect = entity.getPlayer().getAspectRatio();
+        if (entity.visibilitySamples != null && position.equals(entity.visibilitySamplesPosition)
+                && entity.rotation.equals(entity.visibilitySamplesRotation) && aspect == entity.visibilitySamplesAspect) {
+            return;
+        }
+
+        List<Vec3> samples = new ArrayList<>();
+        for (var screen : entity.screens) {
+            if (screen == null) continue;
+            for (var point : screen.getVisibilitySamples(entity.getPlayer())) {
+                point.rotate(entity.rotation);
+                samples.add(position.add(point.x, point.y, point.z));
+            }
+        }
+        entity.visibilitySamples = samples.toArray(Vec3[]::new);
+        entity.visibilitySamplesPosition = position;
+        entity.visibilitySamplesRotation.set(entity.rotation);
+        entity.visibilitySamplesAspect = aspect;
+        if (samples.isEmpty()) {
+            entity.visibilityBounds = null;
+            return;
+        }
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+        for (var sample : samples) {
+            minX = Math.min(minX, sample.x);
+            minY = Math.min(minY, sample.y);
+            minZ = Math.min(minZ, sample.z);
+            maxX = Math.max(maxX, sample.x);
+            maxY = Math.max(maxY, sample.y);
+            maxZ = Math.max(maxZ, sample.z);
+        }
+        entity.visibilityBounds = new AABB(minX, minY, minZ, maxX, maxY, maxZ).inflate(0.1);
+    }
+
+    private static boolean isUnobstructed(Level level, Vec3 from, Vec3 to) {
+        var hit = level.clip(new ClipContext(from, to, ClipContext.Block.VISUAL, ClipContext.Fluid.NONE, CollisionContext.empty()));
+        // 屏幕通常贴着方块放置，忽略目标点附近的命中
+        return hit.getType() == HitResult.Type.MISS || hit.getLocation().distanceToSqr(to) < 0.25;
     }
 
     @Override
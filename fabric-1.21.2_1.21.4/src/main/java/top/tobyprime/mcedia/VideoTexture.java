@@ -132,6 +132,14 @@ public class VideoTexture extends AbstractTexture implements ITexture {
         frame.close();
     }
 
+    /**
+     * 播放器休眠时缩小到 1x1 释放显存与 PBO，下次上传时按帧尺寸重新分配
+     */
+    @Override
+    public void release() {
+        Minecraft.getInstance().execute(() -> setSize(1, 1));
+    }
+
     public void releasePbo() {
         // 删除 PBO
         if (pboInitialized) {
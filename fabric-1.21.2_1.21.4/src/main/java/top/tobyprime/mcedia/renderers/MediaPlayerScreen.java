@@ -183,4 +183,18 @@ public class MediaPlayerScreen implements IMediaPlayerScreenRenderer {
 
         poseStack.popPose();
     }
+
+    @Override
+    public Vector3f[] getVisibilitySamples(MediaPlayer player) {
+        float w = player.getAspectRatio();
+        if (w == 0) w = 1.777f;
+
+        return new Vector3f[]{
+                new Vector3f(offset),
+                new Vector3f(-w, -1, 0).mul(Height).add(offset),
+                new Vector3f(w, -1, 0).mul(Height).add(offset),
+                new Vector3f(w, 1, 0).mul(Height).add(offset),
+                new Vector3f(-w, 1, 0).mul(Height).add(offset)
+        };
+    }
 }
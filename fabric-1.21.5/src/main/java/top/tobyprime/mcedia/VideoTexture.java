@@ -50,6 +50,9 @@ public class VideoTexture extends AbstractTexture implements ITexture {
 
         GpuDevice gpuDevice = RenderSystem.getDevice();
 
+        if (this.texture != null) {
+            this.texture.close();
+        }
         this.texture = gpuDevice.createTexture(this.resourceLocation::toString, TextureFormat.RGBA8, width, height, 1);
         this.setClamp(true);
         this.setFilter(true, false);
@@ -131,6 +134,14 @@ public class VideoTexture extends AbstractTexture implements ITexture {
         frame.close();
     }
 
+    /**
+     * 播放器休眠时缩小到 1x1 释放显存与 PBO，下次上传时按帧尺寸重新分配
+     */
+    @Override
+    public void release() {
+        Minecraft.getInstance().execute(() -> setSize(1, 1));
+    }
+
     public void releasePbo() {
         // 删除 PBO
         if (pboInitialized) {
@@ -15,8 +15,11 @@ import top.tobyprime.mcedia.commands.CommandBilibili;
 import top.tobyprime.mcedia.commands.CommandOption;
 import top.tobyprime.mcedia.commands.CommandControl;
 import top.tobyprime.mcedia.commands.CommandDanmakuOption;
+import top.tobyprime.mcedia.commands.CommandStats;
 import top.tobyprime.mcedia.compat.SoundPhysicsRemasteredCompat;
+import top.tobyprime.mcedia.core.FrameTimeController;
 import top.tobyprime.mcedia.core.PlayerInstanceManagerRegistry;
+import top.tobyprime.mcedia.decoders.ffmpeg.CodecBenchmark;
 import top.tobyprime.mcedia.entities.MediaPlayerAgentEntity;
 import top.tobyprime.mcedia.player_instance_managers.ArmorStandPlayerManager;
 import top.tobyprime.mcedia.renderers.MediaPlayerAgentEntityRenderer;
@@ -65,13 +68,17 @@ public class McediaClient implements ClientModInitializer {
 
         EntityRendererRegistry.register(MediaPlayerAgentEntity.TYPE, MediaPlayerAgentEntityRenderer::new);
 
-        ClientTickEvents.END_CLIENT_TICK.register(client -> PlayerInstanceManagerRegistry.getInstance().update());
+        ClientTickEvents.END_CLIENT_TICK.register(client -> {
+            FrameTimeController.getInstance().reportFrameRate(client.getFps(), client.options.framerateLimit().get());
+            PlayerInstanceManagerRegistry.getInstance().update();
+        });
 
         ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> {
             CommandBilibili.register(dispatcher);
             CommandOption.register(dispatcher);
             CommandDanmakuOption.register(dispatcher);
             CommandControl.register(dispatcher);
+            CommandStats.register(dispatcher);
         });
 
 
@@ -101,6 +108,8 @@ public class McediaClient implements ClientModInitializer {
                 }
             }
 
+            CodecBenchmark.getInstance().startAsync();
+
 
         });
         ClientLifecycleEvents.CLIENT_STOPPING.register((client) -> SaveConfig());
@@ -111,6 +111,29 @@ public class CommandOption {
             }
             return 1;
         }));
+        LiteralArgumentBuilder<FabricClientCommandSource> frameTimeControlNode = literal("frame_time_control").then(literal("toggle").executes(ctx -> {
+            Configs.FRAME_TIME_CONTROL = !Configs.FRAME_TIME_CONTROL;
+
+            McediaClient.SaveConfig();
+
+            if (Configs.FRAME_TIME_CONTROL) {
+                Utils.msgToPlayer("启用帧时间控制，帧率不足时自动降低播放器开销");
+            } else {
+                Utils.msgToPlayer("关闭帧时间控制");
+            }
+            return 1;
+        }));
+        LiteralArgumentBuilder<FabricClientCommandSource> bandwidthNode = literal("bandwidth").then(argument("kbps", IntegerArgumentType.integer(0)).executes(ctx -> {
+            Configs.BANDWIDTH_LIMIT_KBPS = IntegerArgumentType.getInteger(ctx, "kbps");
+            McediaClient.SaveConfig();
+            if (Configs.BANDWIDTH_LIMIT_KBPS > 0) {
+                Utils.msgToPlayer("已设置下载带宽上限为:" + Configs.BANDWIDTH_LIMIT_KBPS + "kbps");
+            } else {
+                Utils.msgToPlayer("已取消下载带宽上限");
+            }
+
+            return 1;
+        }));
         var optionNode = literal("option");
 
         optionNode.then(qualityNode);
@@ -121,6 +144,8 @@ public class CommandOption {
         optionNode.then(volumeNode);
         optionNode.then(loadInfoNode);
         optionNode.then(pyhsicsNode);
+        optionNode.then(frameTimeControlNode);
+        optionNode.then(bandwidthNode);
 
         dispatcher.register(literal("mcedia").then(optionNode));
     }
@@ -2,9 +2,15 @@ package top.tobyprime.mcedia.interfaces;
 
 import com.mojang.blaze3d.vertex.PoseStack;
 import net.minecraft.client.renderer.MultiBufferSource;
+import org.joml.Vector3f;
 import top.tobyprime.mcedia.VideoTexture;
 import top.tobyprime.mcedia.core.MediaPlayer;
 
 public interface IMediaPlayerScreenRenderer {
     void render(VideoTexture texture, MediaPlayer player, PoseStack poseStack, MultiBufferSource bufferSource, int i);
+
+    /**
+     * 用于可见性检测的采样点（中心与四角），相对于播放器实体且未旋转
+     */
+    Vector3f[] getVisibilitySamples(MediaPlayer player);
 }
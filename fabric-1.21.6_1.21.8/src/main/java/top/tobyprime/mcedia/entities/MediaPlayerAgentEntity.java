@@ -14,6 +14,8 @@ import net.minecraft.world.entity.MobCategory;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.storage.ValueInput;
 import net.minecraft.world.level.storage.ValueOutput;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
@@ -36,6 +38,17 @@ public class MediaPlayerAgentEntity extends Entity {
     public final ArrayList<AudioSourceInstance> audioSources = new ArrayList<>();
     public VideoTexture texture = new VideoTexture(ResourceLocation.fromNamespaceAndPath("mcedia", "player_agent" + this.stringUUID));
     public Quaternionf rotation = new Quaternionf();
+    // 屏幕是否被方块遮挡，由渲染器定期更新
+    public boolean occluded = false;
+    public long lastOcclusionCheck = 0;
+    // 遮挡检测的采样点与包围盒，由渲染器在位置、朝向、画面比例或屏幕变化时重新计算
+    public @Nullable Vec3[] visibilitySamples = null;
+    public @Nullable AABB visibilityBounds = null;
+    public @Nullable Vec3 visibilitySamplesPosition = null;
+    public final Quaternionf visibilitySamplesRotation = new Quaternionf();
+    public float visibilitySamplesAspect = 0;
+    // 最近一次报告给播放器的可见性
+    public @Nullable Boolean reportedVisible = null;
 
     public MediaPlayerAgentEntity(EntityType<?> entityType, Level level) {
         super(entityType, level);
@@ -45,6 +58,7 @@ public class MediaPlayerAgentEntity extends Entity {
 
     public void addScreen(@Nullable IMediaPlayerScreenRenderer screen) {
         this.screens.add(screen);
+        this.visibilitySamples = null;
     }
 
     public void addAudioSource(AudioSourceInstance audioSource) {
@@ -64,6 +78,14 @@ public class MediaPlayerAgentEntity extends Entity {
 
     public void clearScreens() {
         screens.clear();
+        visibilitySamples = null;
+    }
+
+    /**
+     * 屏幕的大小或偏移在原处修改后调用，渲染器会重新计算遮挡检测的采样点
+     */
+    public void invalidateVisibilitySamples() {
+        visibilitySamples = null;
     }
 
     @Override
@@ -16,8 +16,6 @@ import top.tobyprime.mcedia.player_instances.ArmorStandPlayerAgentWrapper;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 
-import static top.tobyprime.mcedia.Configs.MAX_PLAYER_COUNT;
-
 public class ArmorStandPlayerManager implements IPlayerInstanceManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(ArmorStandPlayerManager.class);
     private static final ArmorStandPlayerManager INSTANCE = new ArmorStandPlayerManager();
@@ -29,7 +27,8 @@ public class ArmorStandPlayerManager implements IPlayerInstanceManager {
 
 
     private void addPlayer(ArmorStand entity) {
-        if (McediaPlayerStatus.players.get() >= MAX_PLAYER_COUNT) {
+        // 超出同时播放数量的播放器由调度器休眠
+        if (McediaPlayerStatus.players.get() >= Configs.MAX_PLAYER_COUNT + Configs.MAX_HIBERNATED_PLAYER_COUNT) {
             return;
         }
         entityToPlayer.put(entity, new ArmorStandPlayerAgentWrapper(entity));
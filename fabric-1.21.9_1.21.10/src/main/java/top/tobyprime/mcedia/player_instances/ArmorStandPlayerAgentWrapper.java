@@ -251,13 +251,15 @@ public class ArmorStandPlayerAgentWrapper implements IMediaPlayerInstance {
 
         } catch (Exception ignored) {
         }
-        screen.Height = armorStand.getScale() * scale;
-
-        screen.offset.x = offsetX;
-
+        float height = armorStand.getScale() * scale;
         /// 确保底部在默认状态下与地面平行
-        screen.offset.y = (float) (offsetY + 1.02 * screen.Height);
-        screen.offset.z = offsetZ;
+        float screenOffsetY = (float) (offsetY + 1.02 * height);
+        if (height != screen.Height || offsetX != screen.offset.x || screenOffsetY != screen.offset.y || offsetZ != screen.offset.z) {
+            screen.Height = height;
+            screen.offset.set(offsetX, screenOffsetY, offsetZ);
+            // 屏幕大小或偏移变化后重新计算遮挡检测的采样点
+            playerAgent.invalidateVisibilitySamples();
+        }
 
         var volumeFactor = 1 - rotationToFactor(armorStand.getLeftArmPose().x());
         var speedFactor = rotationToFactor(armorStand.getRightArmPose().y());
@@ -292,14 +294,14 @@ public class ArmorStandPlayerAgentWrapper implements IMediaPlayerInstance {
             return;
         }
 
-        long duration = getDuration();
-
         var name = armorStand.getMainHandItem().getDisplayName().getString().substring(1);
         var poster = name.contains(":") ? Arrays.stream(armorStand.getMainHandItem().getDisplayName().getString().substring(1).split(":")).findFirst().orElse("未知") : "未知";
 
         LOGGER.info("准备播放 {}", mediaUrl);
 
+        // 在媒体真正打开时再计算同步位置，休眠期间解析完成的媒体会延迟到唤醒时打开
         var mediaPlay = player.getMediaPlayAndOpen(mediaUrl, (media) -> {
+            long duration = getDuration();
             player.play();
             media.seek(duration % media.getLength());
             if (Configs.SHOW_LOAD_INFO)
@@ -343,6 +345,11 @@ public class ArmorStandPlayerAgentWrapper implements IMediaPlayerInstance {
         return -1;
     }
 
+    @Override
+    public double getScreenSize() {
+        return screen.Height;
+    }
+
     @Override
     public void remove() {
         ArmorStandPlayerManager.getInstance().removePlayer(this.armorStand);